@@ -0,0 +1,86 @@
+package com.example.smarttrash;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The whole backend started against an H2 database for one benchmark trial. The relay URL points at a closed
+ * port with a long backoff, and the journal, blob and archive directories live in a temporary directory
+ * (under {@code -Dbench.dir}, default {@code java.io.tmpdir}) that is deleted on close.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final Path workDir;
+
+    private BenchmarkContext(ConfigurableApplicationContext context, Path workDir) {
+        this.context = context;
+        this.workDir = workDir;
+    }
+
+    public static String inMemoryDatabase(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * File database kept between runs, so a large seeded table is only built once.
+     */
+    public static String fileDatabase(String name) {
+        return "jdbc:h2:file:" + baseDir().resolve("db").resolve(name).toAbsolutePath();
+    }
+
+    public static BenchmarkContext start(String jdbcUrl) throws IOException {
+        Path workDir = Files.createTempDirectory(Files.createDirectories(baseDir()), "backend-");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "update");
+        properties.put("server.port", "0");
+        properties.put("logging.level.root", "WARN");
+        properties.put("app.websocket.default-url", "ws://127.0.0.1:9/ws");
+        properties.put("app.websocket.backoff-initial-ms", "3600000");
+        properties.put("app.websocket.backoff-max-ms", "3600000");
+        properties.put("app.retention.initial-delay-ms", "86400000");
+        properties.put("app.journal.dir", workDir.resolve("journal").toString());
+        properties.put("app.blob.dir", workDir.resolve("blobs").toString());
+        properties.put("app.retention.archive-dir", workDir.resolve("archive").toString());
+        // application.properties reads the required token secret from this placeholder
+        properties.put("AUTH_TOKEN_SECRET", "benchmark-token-secret-" + workDir.getFileName());
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SmartTrashApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .properties(properties)
+                .run();
+        return new BenchmarkContext(context, workDir);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static Path baseDir() {
+        return Path.of(System.getProperty("bench.dir", System.getProperty("java.io.tmpdir")), "smart-trash-bench");
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.BenchmarkContext;
+import com.example.smarttrash.model.DashboardOverview;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DashboardService#getOverview} against {@code classification_logs} seeded with {@code rows} rows spread over
+ * 20 devices and the last 365 days. Each size is seeded once into a file database under {@code bench.dir}
+ * and reused while its row count matches; delete it to re-seed (e.g. so "today" has rows again).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DashboardOverviewBenchmark {
+
+    private static final int DEVICES = 20;
+    private static final long SEED_BATCH = 1_000_000L;
+    private static final long WINDOW_MS = 365L * 24 * 3600 * 1000;
+
+    @Param({"1000000", "10000000", "50000000"})
+    public long rows;
+
+    private BenchmarkContext context;
+    private DashboardService dashboardService;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = BenchmarkContext.start(BenchmarkContext.fileDatabase("overview-" + rows));
+        dashboardService = context.bean(DashboardService.class);
+        if (seed(context.bean(JdbcTemplate.class))) {
+            // The hot window was loaded at startup, before these rows existed
+            context.bean(HotWindow.class).warm();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public DashboardOverview overview() {
+        return dashboardService.getOverview("bin-07");
+    }
+
+    private boolean seed(JdbcTemplate jdbc) {
+        Long existing = jdbc.queryForObject("SELECT COUNT(*) FROM classification_logs", Long.class);
+        if (existing != null && existing == rows) {
+            return false;
+        }
+        jdbc.execute("TRUNCATE TABLE classification_logs");
+        long stepMs = Math.max(1, WINDOW_MS / rows);
+        for (long from = 1; from <= rows; from += SEED_BATCH) {
+            long to = Math.min(rows, from + SEED_BATCH - 1);
+            // Newest first: row X is X * stepMs old
+            jdbc.update("INSERT INTO classification_logs (device_id, timestamp, type, confidence, status) "
+                            + "SELECT 'bin-' || LPAD(CAST(MOD(X, ?) AS VARCHAR), 2, '0'), "
+                            + "DATEADD('MILLISECOND', -X * ?, LOCALTIMESTAMP), "
+                            + "CASE WHEN MOD(X, 3) = 0 THEN 'Vô cơ' ELSE 'Hữu cơ' END, "
+                            + "0.5 + RAND() / 2, "
+                            + "CASE WHEN MOD(X, 50) = 0 THEN 'error' ELSE 'success' END "
+                            + "FROM SYSTEM_RANGE(?, ?)",
+                    DEVICES, stepMs, from, to);
+            System.out.printf("Seeded %,d of %,d classification_logs rows%n", to, rows);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.smarttrash.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching an image to the closest rotation event of its device. {@code rotations} events are recorded one per
+ * {@code spacingMs}; images are looked up inside the window (hit) and after it (fallback to the current type).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindTrashTypeBenchmark {
+
+    // DeviceState keeps the latest 100
+    @Param({"10", "100"})
+    public int rotations;
+
+    @Param({"500", "5000"})
+    public long spacingMs;
+
+    private SocketSubscriberService.DeviceState device;
+    private long lastRotationAt;
+
+    @Setup(Level.Trial)
+    public void record() {
+        device = new SocketSubscriberService.DeviceState();
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < rotations; i++) {
+            lastRotationAt = start + i * spacingMs;
+            device.recordRotation(lastRotationAt, i % 2 == 0 ? "organic" : "inorganic");
+        }
+    }
+
+    @Benchmark
+    public String imageAfterRotation() {
+        return SocketSubscriberService.findTrashTypeForImage(device, lastRotationAt + 300);
+    }
+
+    @Benchmark
+    public String imageWithoutRotation() {
+        return SocketSubscriberService.findTrashTypeForImage(device, lastRotationAt + 60_000);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.BenchmarkContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LiveDataService#updateFromSocket} for a data-only snapshot, a repeated image (kept, not copied) and a
+ * new image (copied out of the pooled buffer).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiveDataServiceBenchmark {
+
+    private static final String DEVICE_ID = "bench-01";
+
+    @Param({"20", "50", "200"})
+    public int imageKb;
+
+    private BenchmarkContext context;
+    private LiveDataService liveDataService;
+    private ImageBufferPool.Buffer image;
+    private ObjectNode dataRoot;
+    private ObjectNode imageRoot;
+    private ObjectNode imageNode;
+    private long receivedAt = System.currentTimeMillis();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = BenchmarkContext.start(BenchmarkContext.inMemoryDatabase("live"));
+        liveDataService = context.bean(LiveDataService.class);
+        ObjectMapper objectMapper = context.bean(ObjectMapper.class);
+
+        image = context.bean(ImageBufferPool.class).acquire();
+        image.write(Payloads.jpeg(imageKb * 1024, imageKb));
+
+        dataRoot = objectMapper.createObjectNode();
+        dataRoot.putObject("latestEsp32Data")
+                .put("data", "ROTATE_CW")
+                .put("binType", "INORGANIC")
+                .put("receivedAt", receivedAt);
+        dataRoot.put("activeConnections", 2).put("status", "online").put("timestamp", receivedAt);
+
+        imageRoot = dataRoot.deepCopy();
+        imageNode = imageRoot.putObject("latestEsp32Image")
+                .put("filename", "esp32cam_bench.jpg")
+                .put("contentType", "image/jpeg")
+                .put("size", image.size())
+                .put("receivedAt", receivedAt);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        image.release();
+        context.close();
+    }
+
+    @Benchmark
+    public void dataOnly() {
+        liveDataService.updateFromSocket(DEVICE_ID, dataRoot, null);
+    }
+
+    @Benchmark
+    public void sameImage() {
+        liveDataService.updateFromSocket(DEVICE_ID, imageRoot, image);
+    }
+
+    @Benchmark
+    public void newImage() {
+        imageNode.put("receivedAt", ++receivedAt);
+        liveDataService.updateFromSocket(DEVICE_ID, imageRoot, image);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.smarttrash.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Relay messages shaped like production traffic: classifier rotations and bin status relayed as
+ * {@code server:data}, and relay snapshots carrying an ESP32-CAM JPEG (VGA at quality 10 is 20-60KB).
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * Random bytes framed as a JPEG; compressed image data is close to random, so base64 and hashing cost the same.
+     */
+    static byte[] jpeg(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        bytes[size - 2] = (byte) 0xFF;
+        bytes[size - 1] = (byte) 0xD9;
+        return bytes;
+    }
+
+    static byte[] base64(byte[] bytes) {
+        return Base64.getEncoder().encode(bytes);
+    }
+
+    /**
+     * {@code n}-th {@code server:data} message of a device: even messages are classifier rotations
+     * ({@code ROTATE_CW}/{@code ROTATE_CCW}, see ws_client.py), odd ones bin status with levels,
+     * a classification and device info.
+     */
+    static InputStream serverData(String deviceId, long n, long receivedAt, Random random) {
+        String data;
+        if (n % 2 == 0) {
+            data = random.nextBoolean() ? "\"ROTATE_CW\"" : "\"ROTATE_CCW\"";
+        } else {
+            data = String.format(Locale.ROOT, "{\"binType\":\"%s\",\"organicLevel\":%.1f,\"inorganicLevel\":%.1f,"
+                            + "\"classification\":{\"type\":\"%s\",\"confidence\":%.3f,\"status\":\"success\"},"
+                            + "\"device\":{\"model\":\"ESP32-CAM\",\"firmware\":\"v1.2.3\",\"ipAddress\":\"192.168.1.%d\","
+                            + "\"uptime\":\"%ds\"},\"receivedAt\":%d}",
+                    random.nextBoolean() ? "ORGANIC" : "INORGANIC", random.nextDouble() * 100, random.nextDouble() * 100,
+                    random.nextBoolean() ? "organic" : "inorganic", 0.5 + random.nextDouble() / 2,
+                    random.nextInt(254) + 1, n, receivedAt / 1000);
+        }
+        String message = "{\"type\":\"server:data\",\"seq\":" + n + ",\"payload\":{\"deviceId\":\"" + deviceId
+                + "\",\"data\":" + data + ",\"receivedAt\":" + receivedAt + "}}";
+        return new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Relay snapshot with a new image: the decoded image is three bytes of {@code n} followed by the JPEG, so every
+     * frame has its own blob key while the large base64 body is shared between messages.
+     */
+    static InputStream snapshot(String deviceId, long n, long receivedAt, int jpegSize, byte[] jpegBase64) {
+        byte[] counter = {(byte) (n >> 16), (byte) (n >> 8), (byte) n};
+        String head = "{\"latestEsp32Data\":{\"deviceId\":\"" + deviceId + "\",\"binType\":\"ORGANIC\",\"receivedAt\":"
+                + receivedAt + "},\"latestEsp32Image\":{\"deviceId\":\"" + deviceId + "\",\"filename\":\"esp32cam_"
+                + receivedAt / 1000 + "_" + n + ".jpg\",\"contentType\":\"image/jpeg\",\"size\":" + (jpegSize + 3)
+                + ",\"receivedAt\":" + receivedAt + ",\"data\":\"" + Base64.getEncoder().encodeToString(counter);
+        String tail = "\"},\"activeConnections\":2,\"status\":\"online\",\"timestamp\":" + receivedAt + "}";
+        return new SequenceInputStream(
+                new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)),
+                new SequenceInputStream(
+                        new ByteArrayInputStream(jpegBase64),
+                        new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8))));
+    }
+}
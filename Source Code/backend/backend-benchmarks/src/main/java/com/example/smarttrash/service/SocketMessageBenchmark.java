@@ -0,0 +1,88 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.BenchmarkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One relay message through {@link SocketSubscriberService}: streaming parse, device state, live snapshot,
+ * blob store and journal appends (each forced to disk, so the result depends on the disk under {@code bench.dir}).
+ * The journal applier writes to H2 in the background as it does to MySQL in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SocketMessageBenchmark {
+
+    private static final String DEVICE_ID = "bench-01";
+
+    @State(Scope.Benchmark)
+    public static class Backend {
+        BenchmarkContext context;
+        SocketSubscriberService subscriber;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            context = BenchmarkContext.start(BenchmarkContext.inMemoryDatabase("ingest"));
+            subscriber = context.bean(SocketSubscriberService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DataMessages {
+        private final Random random = new Random(42);
+        private long n;
+        private long receivedAt = System.currentTimeMillis();
+    }
+
+    @State(Scope.Thread)
+    public static class ImageMessages {
+        @Param({"20", "50", "200"})
+        public int imageKb;
+
+        private byte[] jpegBase64;
+        private long n;
+        private long receivedAt = System.currentTimeMillis();
+
+        @Setup(Level.Trial)
+        public void encode() {
+            jpegBase64 = Payloads.base64(Payloads.jpeg(imageKb * 1024, imageKb));
+        }
+    }
+
+    @Benchmark
+    public void serverData(Backend backend, DataMessages messages) throws IOException {
+        messages.receivedAt += 250;
+        backend.subscriber.handleMessageNow(
+                Payloads.serverData(DEVICE_ID, messages.n++, messages.receivedAt, messages.random));
+    }
+
+    @Benchmark
+    public void latestEsp32ImageSnapshot(Backend backend, ImageMessages messages) throws IOException {
+        messages.receivedAt += 1000;
+        backend.subscriber.handleMessageNow(Payloads.snapshot(DEVICE_ID, messages.n++, messages.receivedAt,
+                messages.imageKb * 1024, messages.jpegBase64));
+    }
+}
@@ -2,8 +2,10 @@ package com.example.smarttrash;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SmartTrashApplication {
     public static void main(String[] args) {
         SpringApplication.run(SmartTrashApplication.class, args);
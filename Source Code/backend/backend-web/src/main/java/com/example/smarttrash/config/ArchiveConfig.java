@@ -0,0 +1,23 @@
+package com.example.smarttrash.config;
+
+import com.example.smarttrash.storage.ArchiveStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class ArchiveConfig {
+
+    /**
+     * Rows past their retention period are moved here (compressed, per day) and stay readable by the history APIs.
+     */
+    @Bean
+    public ArchiveStore archiveStore(@Value("${app.retention.archive-dir:data/archive}") String directory,
+                                     ObjectMapper objectMapper) throws IOException {
+        return new ArchiveStore(Path.of(directory), objectMapper);
+    }
+}
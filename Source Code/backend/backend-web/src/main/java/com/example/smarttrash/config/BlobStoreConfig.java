@@ -0,0 +1,25 @@
+package com.example.smarttrash.config;
+
+import com.example.smarttrash.storage.BlobStore;
+import com.example.smarttrash.storage.LocalSegmentBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class BlobStoreConfig {
+
+    /**
+     * Image bytes live on local disk in append-only segment files; MySQL only keeps the blob key.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.blob.store", havingValue = "local", matchIfMissing = true)
+    public BlobStore localBlobStore(@Value("${app.blob.dir:data/blobs}") String directory,
+                                    @Value("${app.blob.segment-size-mb:256}") long segmentSizeMb) throws IOException {
+        return new LocalSegmentBlobStore(Path.of(directory), segmentSizeMb * 1024 * 1024);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.smarttrash.config;
+
+import com.example.smarttrash.service.PasswordHashingService;
+import com.example.smarttrash.service.PrincipalCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Username/password authentication (HTTP Basic and /api/login) backed by {@link PrincipalCache}.
+ *
+ * The user row comes from the cache and BCrypt only runs when the password differs from the last one
+ * that was verified; it then runs on the bounded {@link PasswordHashingService} pool. A saturated pool
+ * surfaces as an {@link AuthenticationServiceException} caused by {@link RejectedExecutionException}.
+ */
+@Component
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final PrincipalCache principalCache;
+    private final PasswordHashingService passwordHashingService;
+
+    public CachingAuthenticationProvider(PrincipalCache principalCache,
+                                         PasswordHashingService passwordHashingService) {
+        this.principalCache = principalCache;
+        this.passwordHashingService = passwordHashingService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        String password = authentication.getCredentials() != null ? authentication.getCredentials().toString() : "";
+
+        UserDetails user;
+        try {
+            user = principalCache.get(username);
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+
+        if (!principalCache.credentialsMatch(username, password)) {
+            boolean matches;
+            try {
+                matches = passwordHashingService.matches(password, user.getPassword());
+            } catch (RejectedExecutionException e) {
+                throw new AuthenticationServiceException("Password verification is busy", e);
+            }
+            if (!matches) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            principalCache.rememberCredentials(username, password);
+        }
+
+        // The principal is the username only, so credential erasure never touches the cached user
+        return UsernamePasswordAuthenticationToken.authenticated(username, null, user.getAuthorities());
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.smarttrash.config;
+
+import com.example.smarttrash.storage.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class JournalConfig {
+
+    /**
+     * Incoming logs, events and image rows are journaled here before they are applied to MySQL.
+     */
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog ingestWriteAheadLog(@Value("${app.journal.dir:data/journal}") String directory,
+                                             @Value("${app.journal.segment-size-mb:64}") long segmentSizeMb) throws IOException {
+        return new WriteAheadLog(Path.of(directory), segmentSizeMb * 1024 * 1024);
+    }
+}
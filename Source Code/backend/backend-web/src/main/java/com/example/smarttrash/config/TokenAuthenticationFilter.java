@@ -0,0 +1,54 @@
+package com.example.smarttrash.config;
+
+import com.example.smarttrash.service.AuthTokenService;
+import com.example.smarttrash.service.PrincipalCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates {@code Authorization: Bearer <token>} requests from a token issued by /api/login.
+ * Requests without a valid token continue unauthenticated and fall through to HTTP Basic.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "Bearer ";
+
+    private final AuthTokenService authTokenService;
+    private final PrincipalCache principalCache;
+
+    public TokenAuthenticationFilter(AuthTokenService authTokenService, PrincipalCache principalCache) {
+        this.authTokenService = authTokenService;
+        this.principalCache = principalCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            authTokenService.verify(header.substring(PREFIX.length()).trim()).ifPresent(username -> {
+                try {
+                    UserDetails user = principalCache.get(username);
+                    SecurityContext context = SecurityContextHolder.createEmptyContext();
+                    context.setAuthentication(
+                            UsernamePasswordAuthenticationToken.authenticated(username, null, user.getAuthorities()));
+                    SecurityContextHolder.setContext(context);
+                } catch (UsernameNotFoundException e) {
+                    // user deleted since the token was issued
+                }
+            });
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.smarttrash.controller;
+
+import com.example.smarttrash.model.Alert;
+import com.example.smarttrash.model.AlertHistoryEntity;
+import com.example.smarttrash.model.Devices;
+import com.example.smarttrash.repository.AlertHistoryRepository;
+import com.example.smarttrash.service.AlertEngine;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Alerts from {@link AlertEngine}: the ones firing now (kept in memory) and the last 100 state changes, optionally
+ * for one {@code deviceId}. Changes are also pushed as {@code alert} events on {@code /api/live/stream}.
+ */
+@RestController
+@RequestMapping("/api/alerts")
+@CrossOrigin(origins = "http://localhost:5173")
+public class AlertController {
+
+    private final AlertEngine alertEngine;
+    private final AlertHistoryRepository alertHistoryRepository;
+
+    public AlertController(AlertEngine alertEngine, AlertHistoryRepository alertHistoryRepository) {
+        this.alertEngine = alertEngine;
+        this.alertHistoryRepository = alertHistoryRepository;
+    }
+
+    @GetMapping
+    public List<Alert> getActive(@RequestParam(required = false) String deviceId) {
+        return StringUtils.hasText(deviceId)
+                ? alertEngine.active(Devices.normalize(deviceId))
+                : alertEngine.active();
+    }
+
+    @GetMapping("/history")
+    public List<AlertHistoryEntity> getHistory(@RequestParam(required = false) String deviceId) {
+        return StringUtils.hasText(deviceId)
+                ? alertHistoryRepository.findTop100ByDeviceIdOrderByChangedAtDescIdDesc(Devices.normalize(deviceId))
+                : alertHistoryRepository.findTop100ByOrderByChangedAtDescIdDesc();
+    }
+}
@@ -1,25 +1,110 @@
 package com.example.smarttrash.controller;
 
+import com.example.smarttrash.config.CachingAuthenticationProvider;
 import com.example.smarttrash.model.UserEntity;
 import com.example.smarttrash.repository.UserRepository;
+import com.example.smarttrash.service.AuthTokenService;
+import com.example.smarttrash.service.PasswordHashingService;
+import com.example.smarttrash.service.PrincipalCache;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api")
 public class AuthController {
 
-    private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private static final String BEARER = "Bearer ";
 
-    public AuthController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    private final UserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final CachingAuthenticationProvider authenticationProvider;
+    private final AuthTokenService authTokenService;
+    private final PrincipalCache principalCache;
+
+    public AuthController(UserRepository userRepository,
+                          PasswordHashingService passwordHashingService,
+                          CachingAuthenticationProvider authenticationProvider,
+                          AuthTokenService authTokenService,
+                          PrincipalCache principalCache) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.authenticationProvider = authenticationProvider;
+        this.authTokenService = authTokenService;
+        this.principalCache = principalCache;
+    }
+
+    /**
+     * Verifies the password once and returns a bearer token to use instead of HTTP Basic on later requests.
+     */
+    @PostMapping("/login")
+    public ResponseEntity<?> login(@RequestBody RegisterRequest request) {
+        if (request.getUsername() == null || request.getPassword() == null) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Thiếu tên đăng nhập hoặc mật khẩu"));
+        }
+
+        Authentication authentication;
+        try {
+            authentication = authenticationProvider.authenticate(
+                    UsernamePasswordAuthenticationToken.unauthenticated(request.getUsername(), request.getPassword()));
+        } catch (AuthenticationServiceException e) {
+            return busy();
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(createErrorResponse("Sai tài khoản hoặc mật khẩu"));
+        }
+
+        AuthTokenService.IssuedToken issued = authTokenService.issue(authentication.getName());
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", issued.token());
+        response.put("tokenType", "Bearer");
+        response.put("expiresAt", issued.expiresAt());
+        response.put("username", authentication.getName());
+        response.put("roles", authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Exchanges a valid bearer token for a fresh one; the dashboard calls this before its token expires.
+     */
+    @PostMapping("/token/refresh")
+    public ResponseEntity<?> refresh(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        String token = authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())
+                ? authorization.substring(BEARER.length()).trim()
+                : "";
+        return authTokenService.refresh(token)
+                .<ResponseEntity<?>>map(issued -> {
+                    Map<String, Object> response = new LinkedHashMap<>();
+                    response.put("token", issued.token());
+                    response.put("tokenType", "Bearer");
+                    response.put("expiresAt", issued.expiresAt());
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(createErrorResponse("Phiên đăng nhập đã hết hạn")));
+    }
+
+    /**
+     * Revokes all tokens issued to the current user so far and closes their live streams.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(Principal principal) {
+        if (principal != null) {
+            principalCache.invalidate(principal.getName());
+        }
+        return ResponseEntity.noContent().build();
     }
 
     @PostMapping("/register")
@@ -46,7 +131,11 @@ public class AuthController {
         // Create new user
         UserEntity newUser = new UserEntity();
         newUser.setUsername(request.getUsername());
-        newUser.setPassword(passwordEncoder.encode(request.getPassword()));
+        try {
+            newUser.setPassword(passwordHashingService.encode(request.getPassword()));
+        } catch (RejectedExecutionException e) {
+            return busy();
+        }
         newUser.setRole("ROLE_USER"); // Default role
 
         try {
@@ -59,6 +148,12 @@ public class AuthController {
         }
     }
 
+    private ResponseEntity<?> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(createErrorResponse("Hệ thống đang bận, vui lòng thử lại"));
+    }
+
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> response = new HashMap<>();
         response.put("error", message);
@@ -71,7 +166,7 @@ public class AuthController {
         return response;
     }
 
-    // DTO for register request
+    // DTO for register and login requests
     public static class RegisterRequest {
         private String username;
         private String password;
@@ -0,0 +1,57 @@
+package com.example.smarttrash.controller;
+
+import com.example.smarttrash.model.ConfidenceBin;
+import com.example.smarttrash.model.ConfidenceSummary;
+import com.example.smarttrash.model.Devices;
+import com.example.smarttrash.service.ConfidenceSketches;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Classification confidence distribution from {@link ConfidenceSketches}, optionally for one {@code deviceId} and
+ * {@code type} ("Hữu cơ"/"Vô cơ"). {@code from}/{@code to} are epoch milliseconds ({@code to} exclusive) at hour
+ * granularity; without them the whole kept range ({@code app.sketch.retention-hours}) is used.
+ */
+@RestController
+@RequestMapping("/api/confidence")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ConfidenceController {
+
+    private final ConfidenceSketches confidenceSketches;
+
+    public ConfidenceController(ConfidenceSketches confidenceSketches) {
+        this.confidenceSketches = confidenceSketches;
+    }
+
+    @GetMapping("/summary")
+    public ConfidenceSummary getSummary(@RequestParam(required = false) String deviceId,
+                                        @RequestParam(required = false) String type,
+                                        @RequestParam(required = false) Long from,
+                                        @RequestParam(required = false) Long to) {
+        return confidenceSketches.summary(deviceOrNull(deviceId), textOrNull(type), from, to);
+    }
+
+    @GetMapping("/histogram")
+    public List<ConfidenceBin> getHistogram(@RequestParam(required = false) String deviceId,
+                                            @RequestParam(required = false) String type,
+                                            @RequestParam(required = false) Long from,
+                                            @RequestParam(required = false) Long to,
+                                            @RequestParam(defaultValue = "20") int bins) {
+        return confidenceSketches.histogram(deviceOrNull(deviceId), textOrNull(type), from, to, bins);
+    }
+
+    // Sketches are keyed by the normalized id the ingest path stores
+    private static String deviceOrNull(String deviceId) {
+        return StringUtils.hasText(deviceId) ? Devices.normalize(deviceId) : null;
+    }
+
+    private static String textOrNull(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+}
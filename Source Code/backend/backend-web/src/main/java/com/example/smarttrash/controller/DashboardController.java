@@ -1,63 +1,113 @@
 package com.example.smarttrash.controller;
 
-import com.example.smarttrash.model.DashboardOverview;
-import com.example.smarttrash.model.DeviceInfo;
-import com.example.smarttrash.model.LogEntry;
-import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.Devices;
 import com.example.smarttrash.model.Settings;
+import com.example.smarttrash.repository.BinStatusRepository;
 import com.example.smarttrash.service.DashboardService;
+import com.example.smarttrash.service.HotWindow;
 import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.service.LiveDataService;
+import com.example.smarttrash.service.ResponseCache;
+import com.example.smarttrash.service.StateCacheService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Dashboard endpoints. The unscoped paths serve the {@value Devices#DEFAULT} device,
+ * {@code /devices/{deviceId}/...} serves one bin.
+ * GET responses come from {@link ResponseCache}, so any number of polling dashboards share one computation.
+ */
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = "ETag")
 public class DashboardController {
 
     private final DashboardService dashboardService;
     private final Esp32EventLogRepository esp32EventLogRepository;
+    private final BinStatusRepository binStatusRepository;
+    private final StateCacheService stateCache;
+    private final LiveDataService liveDataService;
+    private final ResponseCache responseCache;
+    private final HotWindow hotWindow;
 
     public DashboardController(DashboardService dashboardService,
-                               Esp32EventLogRepository esp32EventLogRepository) {
+                               Esp32EventLogRepository esp32EventLogRepository,
+                               BinStatusRepository binStatusRepository,
+                               StateCacheService stateCache,
+                               LiveDataService liveDataService,
+                               ResponseCache responseCache,
+                               HotWindow hotWindow) {
         this.dashboardService = dashboardService;
         this.esp32EventLogRepository = esp32EventLogRepository;
+        this.binStatusRepository = binStatusRepository;
+        this.stateCache = stateCache;
+        this.liveDataService = liveDataService;
+        this.responseCache = responseCache;
+        this.hotWindow = hotWindow;
     }
 
-    @GetMapping("/overview")
-    public DashboardOverview getOverview() {
-        return dashboardService.getOverview();
+    /**
+     * Ids of all known devices: persisted bins plus devices seen since startup.
+     */
+    @GetMapping("/devices")
+    public ResponseEntity<byte[]> getDevices(WebRequest request) {
+        return responseCache.respond("devices", ResponseCache.GLOBAL, () -> {
+            Set<String> ids = new TreeSet<>(binStatusRepository.findAllDeviceIds());
+            ids.addAll(stateCache.cachedDeviceIds());
+            ids.addAll(liveDataService.deviceIds());
+            ids.add(Devices.DEFAULT);
+            return ids;
+        }, request);
     }
 
-    @GetMapping("/logs")
-    public List<LogEntry> getLogs() {
-        return dashboardService.getRecentLogs();
+    @GetMapping({"/overview", "/devices/{deviceId}/overview"})
+    public ResponseEntity<byte[]> getOverview(@PathVariable(required = false) String deviceId, WebRequest request) {
+        String id = Devices.normalize(deviceId);
+        return responseCache.respond("overview", id, () -> dashboardService.getOverview(id), request);
+    }
+
+    @GetMapping({"/logs", "/devices/{deviceId}/logs"})
+    public ResponseEntity<byte[]> getLogs(@PathVariable(required = false) String deviceId, WebRequest request) {
+        String id = Devices.normalize(deviceId);
+        return responseCache.respond("logs", id, () -> dashboardService.getRecentLogs(id), request);
     }
 
     @GetMapping("/settings")
-    public Settings getSettings() {
-        return dashboardService.getSettings();
+    public ResponseEntity<byte[]> getSettings(WebRequest request) {
+        return responseCache.respond("settings", ResponseCache.GLOBAL, dashboardService::getSettings, request);
     }
 
     @PutMapping("/settings")
     public Settings updateSettings(@RequestBody Settings updated) {
-        return dashboardService.updateSettings(updated);
+        Settings saved = dashboardService.updateSettings(updated);
+        // Settings can change any device's responses
+        responseCache.invalidateAll();
+        return saved;
     }
 
-    @GetMapping("/device")
-    public DeviceInfo getDeviceInfo() {
-        return dashboardService.getDeviceInfo();
+    @GetMapping({"/device", "/devices/{deviceId}/device"})
+    public ResponseEntity<byte[]> getDeviceInfo(@PathVariable(required = false) String deviceId, WebRequest request) {
+        String id = Devices.normalize(deviceId);
+        return responseCache.respond("device", id, () -> dashboardService.getDeviceInfo(id), request);
     }
 
-    @GetMapping("/events")
-    public List<Esp32EventLog> getEvents() {
-        return esp32EventLogRepository.findTop50ByFilenameNotNullOrderByReceivedAtDesc();
+    @GetMapping({"/events", "/devices/{deviceId}/events"})
+    public ResponseEntity<byte[]> getEvents(@PathVariable(required = false) String deviceId, WebRequest request) {
+        String id = Devices.normalize(deviceId);
+        return responseCache.respond("events", id,
+                () -> hotWindow.events(id, null, null, null, null, true, null, null, 50)
+                        .orElseGet(() -> esp32EventLogRepository.findTop50ByDeviceIdAndFilenameIsNotNullOrderByReceivedAtDesc(id)),
+                request);
     }
 }
 
@@ -0,0 +1,72 @@
+package com.example.smarttrash.controller;
+
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.Esp32ImageMeta;
+import com.example.smarttrash.model.HistoryLogEntry;
+import com.example.smarttrash.model.HistoryPage;
+import com.example.smarttrash.service.HistoryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Paged history browsing, optionally for one {@code deviceId}. {@code from}/{@code to} are epoch milliseconds
+ * ({@code to} exclusive); pass the {@code nextCursor} of a page as {@code cursor} to get the following (older) page.
+ */
+@RestController
+@RequestMapping("/api/history")
+@CrossOrigin(origins = "http://localhost:5173")
+public class HistoryController {
+
+    private final HistoryService historyService;
+
+    public HistoryController(HistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @GetMapping("/logs")
+    public ResponseEntity<HistoryPage<HistoryLogEntry>> getLogs(@RequestParam(required = false) String deviceId,
+                                                                @RequestParam(required = false) Long from,
+                                                                @RequestParam(required = false) Long to,
+                                                                @RequestParam(required = false) String type,
+                                                                @RequestParam(required = false) String status,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(historyService.logs(deviceId, from, to, type, status, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/events")
+    public ResponseEntity<HistoryPage<Esp32EventLog>> getEvents(@RequestParam(required = false) String deviceId,
+                                                                @RequestParam(required = false) Long from,
+                                                                @RequestParam(required = false) Long to,
+                                                                @RequestParam(required = false) String eventType,
+                                                                @RequestParam(required = false) String trashType,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(historyService.events(deviceId, from, to, eventType, trashType, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/images")
+    public ResponseEntity<HistoryPage<Esp32ImageMeta>> getImages(@RequestParam(required = false) String deviceId,
+                                                                 @RequestParam(required = false) Long from,
+                                                                 @RequestParam(required = false) Long to,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(historyService.images(deviceId, from, to, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
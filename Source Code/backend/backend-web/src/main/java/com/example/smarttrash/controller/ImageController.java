@@ -0,0 +1,134 @@
+package com.example.smarttrash.controller;
+
+import com.example.smarttrash.model.Esp32ImageMeta;
+import com.example.smarttrash.repository.Esp32ImageRepository;
+import com.example.smarttrash.service.HistoryService;
+import com.example.smarttrash.service.ImageVariantService;
+import com.example.smarttrash.storage.BlobResource;
+import com.example.smarttrash.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves stored ESP32 images as raw bytes.
+ *
+ * The blob key is a content hash, so it doubles as a strong ETag and responses can be cached for a long time.
+ * Byte ranges are handled by Spring MVC from the {@link Resource} body. {@code ?w=} selects a size variant,
+ * rounded up to the nearest configured width.
+ */
+@RestController
+@RequestMapping("/api/images")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = {"ETag", "Accept-Ranges", "Content-Range"})
+public class ImageController {
+
+    private final Esp32ImageRepository esp32ImageRepository;
+    private final BlobStore blobStore;
+    private final ImageVariantService imageVariantService;
+    private final HistoryService historyService;
+    private final int[] variantWidths;
+
+    public ImageController(Esp32ImageRepository esp32ImageRepository,
+                           BlobStore blobStore,
+                           ImageVariantService imageVariantService,
+                           HistoryService historyService,
+                           @Value("${app.images.variant-widths:160,320,640}") int[] variantWidths) {
+        this.esp32ImageRepository = esp32ImageRepository;
+        this.blobStore = blobStore;
+        this.imageVariantService = imageVariantService;
+        this.historyService = historyService;
+        this.variantWidths = Arrays.stream(variantWidths).sorted().toArray();
+    }
+
+    /**
+     * Metadata of the 50 most recent images; no image bytes are loaded.
+     */
+    @GetMapping
+    public List<Esp32ImageMeta> listImages() {
+        return esp32ImageRepository.findTop50MetaByOrderByReceivedAtDesc();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Resource> getImage(@PathVariable Long id,
+                                             @RequestParam(required = false) Integer w,
+                                             WebRequest request) throws IOException {
+        // Rows past retention live in the archive, but their bytes are still in the BlobStore
+        Esp32ImageMeta image = esp32ImageRepository.findMetaById(id)
+                .or(() -> historyService.findArchivedImage(id))
+                .orElse(null);
+        return serve(image, w, request, CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable());
+    }
+
+    /**
+     * Latest image; the body is still addressed by content hash, but the mapping to "latest" changes.
+     */
+    @GetMapping("/latest")
+    public ResponseEntity<Resource> getLatestImage(@RequestParam(required = false) Integer w,
+                                                   WebRequest request) throws IOException {
+        Esp32ImageMeta image = esp32ImageRepository.findFirstMetaByOrderByReceivedAtDesc().orElse(null);
+        return serve(image, w, request, CacheControl.noCache().cachePrivate());
+    }
+
+    private ResponseEntity<Resource> serve(Esp32ImageMeta image, Integer width, WebRequest request,
+                                           CacheControl cacheControl) throws IOException {
+        if (image == null || !StringUtils.hasText(image.blobKey()) || !blobStore.contains(image.blobKey())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String key = image.blobKey();
+        MediaType contentType = MediaType.parseMediaType(image.contentType());
+        if (width != null) {
+            try {
+                String variant = imageVariantService.variantKey(key, normalizeWidth(width));
+                if (!variant.equals(key)) {
+                    contentType = MediaType.IMAGE_JPEG;
+                }
+                key = variant;
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "1")
+                        .build();
+            }
+        }
+
+        String etag = "\"" + key + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        long length = blobStore.size(key).orElse(0L);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .header("Accept-Ranges", "bytes")
+                .contentType(contentType)
+                .contentLength(length)
+                .body(new BlobResource(blobStore, key, length));
+    }
+
+    private int normalizeWidth(int requested) {
+        for (int width : variantWidths) {
+            if (width >= requested) {
+                return width;
+            }
+        }
+        return variantWidths[variantWidths.length - 1];
+    }
+}
@@ -1,26 +1,133 @@
 package com.example.smarttrash.controller;
 
-import com.example.smarttrash.model.LiveSnapshot;
+import com.example.smarttrash.model.Devices;
+import com.example.smarttrash.model.LiveEsp32Image;
+import com.example.smarttrash.model.VersionedLiveSnapshot;
+import com.example.smarttrash.service.DashboardService;
 import com.example.smarttrash.service.LiveDataService;
+import com.example.smarttrash.service.LiveStreamService;
+import com.example.smarttrash.service.ResponseCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = "ETag")
 public class LiveController {
 
     private final LiveDataService liveDataService;
+    private final LiveStreamService liveStreamService;
+    private final DashboardService dashboardService;
+    private final ResponseCache responseCache;
 
-    public LiveController(LiveDataService liveDataService) {
+    public LiveController(LiveDataService liveDataService,
+                          LiveStreamService liveStreamService,
+                          DashboardService dashboardService,
+                          ResponseCache responseCache) {
         this.liveDataService = liveDataService;
+        this.liveStreamService = liveStreamService;
+        this.dashboardService = dashboardService;
+        this.responseCache = responseCache;
     }
 
-    @GetMapping("/live")
-    public LiveSnapshot getLiveSnapshot() {
-        return liveDataService.getSnapshot();
+    /**
+     * Current live snapshot.
+     *
+     * {@code view=full} (default) embeds the base64 image as before; {@code view=slim} references it by id.
+     * {@code since=<version>} returns only the parts changed after that version (implies slim); versions start at
+     * the process start time, so one from before a restart gets every part.
+     * Responses carry an ETag so an unchanged snapshot is answered with 304; full and slim views are serialized
+     * once per version for all clients (see {@link ResponseCache}).
+     * {@code /live} serves the default device, {@code /devices/{deviceId}/live} a specific one.
+     */
+    @GetMapping({"/live", "/devices/{deviceId}/live"})
+    public ResponseEntity<?> getLiveSnapshot(@PathVariable(required = false) String deviceId,
+                                             @RequestParam(defaultValue = "full") String view,
+                                             @RequestParam(required = false) Long since,
+                                             WebRequest request) {
+        deviceId = Devices.normalize(deviceId);
+        VersionedLiveSnapshot current = liveDataService.getVersionedSnapshot(deviceId);
+        if (since != null && since > current.version()) {
+            // Not a version this process handed out (e.g. from before a restart): every part, not a stale 304
+            since = 0L;
+        }
+        if (since != null && since == current.version()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        boolean slim = since != null || "slim".equalsIgnoreCase(view);
+        String etag = "\"live-" + deviceId + "-" + current.version() + (slim ? "-slim" : "-full")
+                + (since != null ? "-" + since : "") + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache());
+        if (since != null) {
+            // Deltas depend on the client's version and are small; not worth caching
+            return response.body(liveDataService.view(deviceId, current, since));
+        }
+        String id = deviceId;
+        ResponseCache.Entry entry = responseCache.get("live|" + deviceId + "|" + (slim ? "slim" : "full"),
+                current.version(), () -> slim ? liveDataService.view(id, current, null) : current.snapshot());
+        return response.contentType(MediaType.APPLICATION_JSON).body(entry.body());
     }
-}
 
+    /**
+     * Raw bytes of the live image referenced by a slim snapshot. Ids are immutable, so the response is cacheable.
+     */
+    @GetMapping({"/live/images/{id}", "/devices/{deviceId}/live/images/{id}"})
+    public ResponseEntity<byte[]> getLiveImage(@PathVariable(required = false) String deviceId,
+                                               @PathVariable long id,
+                                               WebRequest request) {
+        deviceId = Devices.normalize(deviceId);
+        VersionedLiveSnapshot current = liveDataService.getVersionedSnapshot(deviceId);
+        LiveEsp32Image image = current.snapshot().latestEsp32Image();
+        if (image == null || image.data() == null || current.imageVersion() != id) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"live-img-" + deviceId + "-" + id + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate().immutable())
+                .contentType(image.contentType() != null
+                        ? MediaType.parseMediaType(image.contentType())
+                        : MediaType.IMAGE_JPEG)
+                .body(image.data());
+    }
+
+    /**
+     * Server-Sent Events stream of snapshot, overview, log, event and alert updates.
+     * The current snapshot and overview are sent first so the client does not need an initial poll.
+     * Only updates of the requested device (default device for {@code /live/stream}) are delivered.
+     */
+    @GetMapping(path = {"/live/stream", "/devices/{deviceId}/live/stream"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable(required = false) String deviceId, Principal principal) {
+        String id = Devices.normalize(deviceId);
+        VersionedLiveSnapshot current = liveDataService.getVersionedSnapshot(id);
+        return liveStreamService.subscribe(id, principal != null ? principal.getName() : null, List.of(
+                liveStreamService.encode(LiveStreamService.EVENT_SNAPSHOT, id, liveDataService.view(id, current, null)),
+                liveStreamService.encode(LiveStreamService.EVENT_OVERVIEW, id, dashboardService.getOverview(id))
+        ));
+    }
+}
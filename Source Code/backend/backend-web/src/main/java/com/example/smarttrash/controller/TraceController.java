@@ -0,0 +1,56 @@
+package com.example.smarttrash.controller;
+
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.StageLatency;
+import com.example.smarttrash.model.TraceDetail;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.service.TraceRecorder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pipeline latency from the relay's traces (see {@link TraceRecorder}): per-hop histograms since startup, and the
+ * stages and persisted rows of a single trace.
+ */
+@RestController
+@RequestMapping("/api/traces")
+@CrossOrigin(origins = "http://localhost:5173")
+public class TraceController {
+
+    private final TraceRecorder traceRecorder;
+    private final ClassificationLogRepository classificationLogRepository;
+    private final Esp32EventLogRepository esp32EventLogRepository;
+
+    public TraceController(TraceRecorder traceRecorder,
+                           ClassificationLogRepository classificationLogRepository,
+                           Esp32EventLogRepository esp32EventLogRepository) {
+        this.traceRecorder = traceRecorder;
+        this.classificationLogRepository = classificationLogRepository;
+        this.esp32EventLogRepository = esp32EventLogRepository;
+    }
+
+    @GetMapping("/stages")
+    public List<StageLatency> getStageLatencies() {
+        return traceRecorder.latencies();
+    }
+
+    @GetMapping("/{traceId}")
+    public ResponseEntity<TraceDetail> getTrace(@PathVariable String traceId) {
+        Map<String, Long> stages = traceRecorder.trace(traceId).orElse(Map.of());
+        List<ClassificationLog> logs = classificationLogRepository.findByTraceIdOrderByIdAsc(traceId);
+        List<Esp32EventLog> events = esp32EventLogRepository.findByTraceIdOrderByIdAsc(traceId);
+        if (stages.isEmpty() && logs.isEmpty() && events.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new TraceDetail(traceId, stages, logs, events));
+    }
+}
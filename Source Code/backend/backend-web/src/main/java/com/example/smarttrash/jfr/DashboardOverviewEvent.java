@@ -0,0 +1,24 @@
+package com.example.smarttrash.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One {@code DashboardService.getOverview} computation.
+ */
+@Name("com.example.smarttrash.DashboardOverview")
+@Label("Dashboard Overview")
+@Category({"Smart Trash", "API"})
+@Description("Computation of one dashboard overview")
+@Enabled(false)
+@StackTrace(false)
+public class DashboardOverviewEvent extends Event {
+
+    @Label("Device")
+    public String deviceId;
+}
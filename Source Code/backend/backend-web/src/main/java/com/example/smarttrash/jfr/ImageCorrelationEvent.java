@@ -0,0 +1,30 @@
+package com.example.smarttrash.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lookup of the rotation event that classified an image ({@code findRotationForImage}).
+ */
+@Name("com.example.smarttrash.ImageCorrelation")
+@Label("Image Correlation")
+@Category({"Smart Trash", "Ingest"})
+@Description("Lookup of the rotation that belongs to an image")
+@Enabled(false)
+@StackTrace(false)
+public class ImageCorrelationEvent extends Event {
+
+    @Label("Device")
+    public String deviceId;
+
+    @Label("Matched")
+    public boolean matched;
+
+    @Label("Rotations Kept")
+    public int rotations;
+}
@@ -0,0 +1,32 @@
+package com.example.smarttrash.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Handling of one relay message on its device's {@code IngestPipeline} stripe.
+ */
+@Name("com.example.smarttrash.Ingest")
+@Label("Ingest")
+@Category({"Smart Trash", "Ingest"})
+@Description("Handling of one relay message on its ingest stripe")
+@Enabled(false)
+@StackTrace(false)
+public class IngestEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Device")
+    public String deviceId;
+
+    @Label("Image Size")
+    @DataAmount
+    public long imageBytes;
+}
@@ -0,0 +1,36 @@
+package com.example.smarttrash.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One relay message read by a relay connection's lane in {@code SocketSubscriberService}. Disabled unless turned
+ * on in the recording settings (see jfr/smarttrash.jfc).
+ */
+@Name("com.example.smarttrash.RelayMessage")
+@Label("Relay Message")
+@Category({"Smart Trash", "Ingest"})
+@Description("Parsing, sequence check and dispatch of one relay message on its connection lane")
+@Enabled(false)
+@StackTrace(false)
+public class RelayMessageEvent extends Event {
+
+    @Label("Relay")
+    public String relay;
+
+    @Label("Type")
+    public String type;
+
+    @Label("Sequence")
+    public long seq;
+
+    @Label("Image Size")
+    @DataAmount
+    public long imageBytes;
+}
@@ -0,0 +1,32 @@
+package com.example.smarttrash.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One repository save by the {@code IngestJournal} applier.
+ */
+@Name("com.example.smarttrash.RepositorySave")
+@Label("Repository Save")
+@Category({"Smart Trash", "Persistence"})
+@Description("One row saved by the ingest journal applier")
+@Enabled(false)
+@StackTrace(false)
+public class RepositorySaveEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Device")
+    public String deviceId;
+
+    @Label("Journal Record Size")
+    @DataAmount
+    public long recordBytes;
+}
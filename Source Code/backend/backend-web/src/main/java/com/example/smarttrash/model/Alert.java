@@ -0,0 +1,12 @@
+package com.example.smarttrash.model;
+
+public record Alert(
+        String deviceId,
+        String rule,       // bin-full-organic | bin-full-inorganic | low-confidence | error-rate | device-silent
+        String state,      // "firing" or "resolved"
+        String message,
+        double value,      // what the rule measured when the alert changed state
+        double threshold,
+        long changedAt     // epoch millis; for an active alert, since when it fires
+) {
+}
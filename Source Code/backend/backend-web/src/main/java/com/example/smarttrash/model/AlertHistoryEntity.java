@@ -0,0 +1,100 @@
+package com.example.smarttrash.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "alert_history", indexes = {
+        @Index(name = "idx_alert_changed_id", columnList = "changed_at, id"),
+        @Index(name = "idx_alert_device_changed_id", columnList = "device_id, changed_at, id")
+})
+public class AlertHistoryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    private String deviceId;
+
+    @Column(nullable = false, length = 32)
+    private String rule;
+
+    @Column(nullable = false, length = 10)
+    private String state; // firing | resolved
+
+    @Column(nullable = false, length = 100)
+    private String message;
+
+    @Column(nullable = false)
+    private double value;
+
+    @Column(nullable = false)
+    private double threshold;
+
+    @Column(nullable = false)
+    private long changedAt; // epoch millis
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public long getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(long changedAt) {
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.smarttrash.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Count and confidence sum of one device's classification logs moved to the archive, see RetentionService.
+ */
+@Entity
+@Table(name = "archived_log_totals",
+        uniqueConstraints = @UniqueConstraint(name = "uk_archived_totals_device", columnNames = "device_id"))
+public class ArchivedLogTotalsEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    private String deviceId;
+
+    @Column(nullable = false)
+    private long count;
+
+    @Column(nullable = false)
+    private double confidenceSum;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getConfidenceSum() {
+        return confidenceSum;
+    }
+
+    public void setConfidenceSum(double confidenceSum) {
+        this.confidenceSum = confidenceSum;
+    }
+}
@@ -1,17 +1,26 @@
 package com.example.smarttrash.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bin_status")
-public class BinStatus {
+@Table(name = "bin_status", uniqueConstraints = @UniqueConstraint(name = "uk_bin_status_device", columnNames = "device_id"))
+public class BinStatus implements VersionedRow<BinStatus> {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    @ColumnDefault("'" + Devices.DEFAULT + "'")
+    private String deviceId = Devices.DEFAULT;
+
     @Column(nullable = false)
     private double organicLevel;
 
@@ -21,14 +30,34 @@ public class BinStatus {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    @Override
     public Long getId() {
         return id;
     }
 
+    @Override
     public void setId(Long id) {
         this.id = id;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
     public double getOrganicLevel() {
         return organicLevel;
     }
@@ -52,6 +81,19 @@ public class BinStatus {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
-
 
+    /**
+     * Detached copy used by the state cache so cached instances are never mutated in place.
+     */
+    @Override
+    public BinStatus copy() {
+        BinStatus copy = new BinStatus();
+        copy.id = id;
+        copy.version = version;
+        copy.deviceId = deviceId;
+        copy.organicLevel = organicLevel;
+        copy.inorganicLevel = inorganicLevel;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
+}
@@ -1,17 +1,31 @@
 package com.example.smarttrash.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "classification_logs")
+@Table(name = "classification_logs", indexes = {
+        // Keyset paging: (timestamp, id) descending, optionally narrowed by type or status
+        @Index(name = "idx_log_ts_id", columnList = "timestamp, id"),
+        @Index(name = "idx_log_type_ts_id", columnList = "type, timestamp, id"),
+        @Index(name = "idx_log_status_ts_id", columnList = "status, timestamp, id"),
+        @Index(name = "idx_log_device_ts_id", columnList = "device_id, timestamp, id"),
+        @Index(name = "idx_log_trace", columnList = "trace_id"),
+        @Index(name = "uk_log_journal_seq", columnList = "journal_seq", unique = true)
+})
 public class ClassificationLog {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    @ColumnDefault("'" + Devices.DEFAULT + "'")
+    private String deviceId = Devices.DEFAULT;
+
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
@@ -24,6 +38,12 @@ public class ClassificationLog {
     @Column(nullable = false, length = 20)
     private String status; // "success", "error", etc.
 
+    @Column(length = 32)
+    private String traceId; // pipeline trace from the relay, see TraceRecorder
+
+    @JsonIgnore
+    private Long journalSeq; // IngestJournal record this row was applied from; null when saved directly
+
     public Long getId() {
         return id;
     }
@@ -32,6 +52,14 @@ public class ClassificationLog {
         this.id = id;
     }
 
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -63,6 +91,20 @@ public class ClassificationLog {
     public void setStatus(String status) {
         this.status = status;
     }
-}
 
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setTraceId(String traceId) {
+        this.traceId = traceId;
+    }
 
+    public Long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public void setJournalSeq(Long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+}
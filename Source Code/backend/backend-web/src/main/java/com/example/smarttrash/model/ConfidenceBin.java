@@ -0,0 +1,8 @@
+package com.example.smarttrash.model;
+
+public record ConfidenceBin(
+        double from,   // inclusive, fraction 0..1
+        double to,     // exclusive, except 1.0 for the last bin
+        long count
+) {
+}
@@ -0,0 +1,113 @@
+package com.example.smarttrash.model;
+
+import jakarta.persistence.*;
+
+/**
+ * One hour of one device's classification confidences of one type, see ConfidenceSketches.
+ */
+@Entity
+@Table(name = "confidence_sketches",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sketch_device_type_bucket", columnNames = {"device_id", "type", "bucket_start"}),
+        indexes = @Index(name = "idx_sketch_bucket", columnList = "bucket_start"))
+public class ConfidenceSketchEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    private String deviceId;
+
+    @Column(nullable = false, length = 20)
+    private String type; // "Hữu cơ" or "Vô cơ"
+
+    @Column(nullable = false)
+    private long bucketStart; // epoch millis, start of the hour
+
+    @Column(nullable = false)
+    private long count;
+
+    @Column(nullable = false)
+    private double sum;
+
+    @Column(nullable = false)
+    private double min;
+
+    @Column(nullable = false)
+    private double max;
+
+    @Column(nullable = false, length = 800)
+    private byte[] bins; // per-bin counts as big-endian longs
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public void setSum(double sum) {
+        this.sum = sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public byte[] getBins() {
+        return bins;
+    }
+
+    public void setBins(byte[] bins) {
+        this.bins = bins;
+    }
+}
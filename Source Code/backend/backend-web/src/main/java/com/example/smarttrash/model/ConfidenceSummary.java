@@ -0,0 +1,14 @@
+package com.example.smarttrash.model;
+
+public record ConfidenceSummary(
+        long count,
+        double mean,              // confidences are fractions 0..1
+        double min,
+        double max,
+        double p50,               // percentiles are bin upper bounds (0.01 wide), see ConfidenceSketches
+        double p90,
+        double p99,
+        int minConfidencePercent, // Settings threshold the next field is counted against
+        long belowMinConfidence
+) {
+}
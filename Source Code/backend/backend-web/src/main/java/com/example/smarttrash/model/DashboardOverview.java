@@ -3,6 +3,7 @@ package com.example.smarttrash.model;
 import java.time.LocalDateTime;
 
 public record DashboardOverview(
+        String deviceId,
         long totalClassifications,
         double averageAccuracy,
         int todayCount,
@@ -1,15 +1,24 @@
 package com.example.smarttrash.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "device_info")
-public class DeviceInfoEntity {
+@Table(name = "device_info", uniqueConstraints = @UniqueConstraint(name = "uk_device_info_device", columnNames = "device_id"))
+public class DeviceInfoEntity implements VersionedRow<DeviceInfoEntity> {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    @ColumnDefault("'" + Devices.DEFAULT + "'")
+    private String deviceId = Devices.DEFAULT;
+
     @Column(nullable = false, length = 100)
     private String model;
 
@@ -22,14 +31,34 @@ public class DeviceInfoEntity {
     @Column(nullable = false, length = 50)
     private String uptime;
 
+    @Override
     public Long getId() {
         return id;
     }
 
+    @Override
     public void setId(Long id) {
         this.id = id;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
     public String getModel() {
         return model;
     }
@@ -61,6 +90,20 @@ public class DeviceInfoEntity {
     public void setUptime(String uptime) {
         this.uptime = uptime;
     }
-}
-
 
+    /**
+     * Detached copy used by the state cache so cached instances are never mutated in place.
+     */
+    @Override
+    public DeviceInfoEntity copy() {
+        DeviceInfoEntity copy = new DeviceInfoEntity();
+        copy.id = id;
+        copy.version = version;
+        copy.deviceId = deviceId;
+        copy.model = model;
+        copy.firmware = firmware;
+        copy.ipAddress = ipAddress;
+        copy.uptime = uptime;
+        return copy;
+    }
+}
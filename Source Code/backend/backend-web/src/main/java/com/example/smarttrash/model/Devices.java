@@ -0,0 +1,29 @@
+package com.example.smarttrash.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * Device (bin) identifiers. Messages without a device id, and all rows written before devices existed,
+ * belong to {@link #DEFAULT}.
+ */
+public final class Devices {
+
+    public static final String DEFAULT = "default";
+    public static final int MAX_LENGTH = 64;
+
+    private static final Pattern INVALID = Pattern.compile("[^A-Za-z0-9_.-]");
+
+    private Devices() {
+    }
+
+    /**
+     * Device id safe for use as a map key, column value and URL path segment.
+     */
+    public static String normalize(String deviceId) {
+        if (deviceId == null || deviceId.isBlank()) {
+            return DEFAULT;
+        }
+        String cleaned = INVALID.matcher(deviceId.trim()).replaceAll("_");
+        return cleaned.length() > MAX_LENGTH ? cleaned.substring(0, MAX_LENGTH) : cleaned;
+    }
+}
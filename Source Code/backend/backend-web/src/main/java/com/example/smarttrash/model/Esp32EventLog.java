@@ -1,15 +1,29 @@
 package com.example.smarttrash.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "esp32_event_logs")
+@Table(name = "esp32_event_logs", indexes = {
+        // Keyset paging: (received_at, id) descending, optionally narrowed by event or trash type
+        @Index(name = "idx_event_received_id", columnList = "received_at, id"),
+        @Index(name = "idx_event_type_received_id", columnList = "event_type, received_at, id"),
+        @Index(name = "idx_event_trash_received_id", columnList = "trash_type, received_at, id"),
+        @Index(name = "idx_event_device_received_id", columnList = "device_id, received_at, id"),
+        @Index(name = "idx_event_trace", columnList = "trace_id"),
+        @Index(name = "uk_event_journal_seq", columnList = "journal_seq", unique = true)
+})
 public class Esp32EventLog {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    @ColumnDefault("'" + Devices.DEFAULT + "'")
+    private String deviceId = Devices.DEFAULT;
+
     @Column(length = 20, nullable = false)
     private String eventType; // IMAGE | DATA
 
@@ -22,6 +36,12 @@ public class Esp32EventLog {
     @Column(nullable = false)
     private Long receivedAt;
 
+    @Column(length = 32)
+    private String traceId; // pipeline trace from the relay, see TraceRecorder
+
+    @JsonIgnore
+    private Long journalSeq; // IngestJournal record this row was applied from; null when saved directly
+
     public Long getId() {
         return id;
     }
@@ -30,6 +50,14 @@ public class Esp32EventLog {
         this.id = id;
     }
 
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
     public String getEventType() {
         return eventType;
     }
@@ -61,5 +89,20 @@ public class Esp32EventLog {
     public void setFilename(String filename) {
         this.filename = filename;
     }
-}
 
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setTraceId(String traceId) {
+        this.traceId = traceId;
+    }
+
+    public Long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public void setJournalSeq(Long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+}
@@ -1,24 +1,33 @@
 package com.example.smarttrash.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "esp32_images")
+@Table(name = "esp32_images", indexes = {
+        @Index(name = "idx_image_received_id", columnList = "received_at, id"),
+        @Index(name = "idx_image_device_received_id", columnList = "device_id, received_at, id"),
+        @Index(name = "uk_image_journal_seq", columnList = "journal_seq", unique = true)
+})
 public class Esp32ImageEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(length = Devices.MAX_LENGTH, nullable = false)
+    @ColumnDefault("'" + Devices.DEFAULT + "'")
+    private String deviceId = Devices.DEFAULT;
+
     @Column(length = 255, nullable = false)
     private String filename;
 
     @Column(length = 100, nullable = false)
     private String contentType;
 
-    @Lob
-    @Column(columnDefinition = "LONGTEXT", nullable = false)
-    private String data; // Base64 encoded
+    @Column(length = 64, nullable = false)
+    private String blobKey; // SHA-256 of the image bytes in the BlobStore
 
     @Column(nullable = false)
     private Integer size;
@@ -26,6 +35,9 @@ public class Esp32ImageEntity {
     @Column(nullable = false)
     private Long receivedAt;
 
+    @JsonIgnore
+    private Long journalSeq; // IngestJournal record this row was applied from; null when saved directly
+
     public Long getId() {
         return id;
     }
@@ -34,6 +46,14 @@ public class Esp32ImageEntity {
         this.id = id;
     }
 
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
     public String getFilename() {
         return filename;
     }
@@ -50,12 +70,12 @@ public class Esp32ImageEntity {
         this.contentType = contentType;
     }
 
-    public String getData() {
-        return data;
+    public String getBlobKey() {
+        return blobKey;
     }
 
-    public void setData(String data) {
-        this.data = data;
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
     }
 
     public Integer getSize() {
@@ -73,5 +93,12 @@ public class Esp32ImageEntity {
     public void setReceivedAt(Long receivedAt) {
         this.receivedAt = receivedAt;
     }
-}
 
+    public Long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public void setJournalSeq(Long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+}
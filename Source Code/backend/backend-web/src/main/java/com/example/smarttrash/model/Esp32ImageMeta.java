@@ -0,0 +1,24 @@
+package com.example.smarttrash.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Metadata-only view of an {@code esp32_images} row for listings; the bytes stay in the BlobStore
+ * and are fetched through {@link #url()}.
+ */
+public record Esp32ImageMeta(
+        Long id,
+        String deviceId,
+        String filename,
+        String contentType,
+        Integer size,
+        Long receivedAt,
+        @JsonIgnore String blobKey
+) {
+
+    @JsonProperty("url")
+    public String url() {
+        return "/api/images/" + id;
+    }
+}
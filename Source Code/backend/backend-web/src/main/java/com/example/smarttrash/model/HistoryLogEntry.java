@@ -0,0 +1,13 @@
+package com.example.smarttrash.model;
+
+import java.time.LocalDateTime;
+
+public record HistoryLogEntry(
+        Long id,
+        String deviceId,
+        LocalDateTime timestamp,
+        String type,       // "Hữu cơ" or "Vô cơ"
+        double confidence,
+        String status      // "success", "error", etc.
+) {
+}
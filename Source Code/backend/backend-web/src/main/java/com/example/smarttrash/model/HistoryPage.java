@@ -0,0 +1,9 @@
+package com.example.smarttrash.model;
+
+import java.util.List;
+
+public record HistoryPage<T>(
+        List<T> items,
+        String nextCursor     // opaque; null when there are no older rows
+) {
+}
@@ -1,11 +1,14 @@
 package com.example.smarttrash.model;
 
+/**
+ * Latest image of a device. {@code data} holds the decoded bytes and is serialized as base64 as before.
+ */
 public record LiveEsp32Image(
         String filename,
         Integer size,
         Long receivedAt,
         String contentType,
-        String data
+        byte[] data
 ) {
 }
 
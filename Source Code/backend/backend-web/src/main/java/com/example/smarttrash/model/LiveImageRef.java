@@ -0,0 +1,11 @@
+package com.example.smarttrash.model;
+
+public record LiveImageRef(
+        String id,            // image version; stable for as long as the frame is current
+        String filename,
+        Integer size,
+        Long receivedAt,
+        String contentType,
+        String url            // where to fetch the raw bytes
+) {
+}
@@ -0,0 +1,25 @@
+package com.example.smarttrash.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Slim live snapshot: the image is referenced instead of embedded.
+ * In delta mode ({@code since} set) only the parts listed in {@code changed} are meaningful.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LiveSnapshotView(
+        String deviceId,
+        long version,
+        Long since,
+        List<String> changed,
+        LiveImageRef latestEsp32Image,
+        LiveEsp32Data latestEsp32Data,
+        Integer activeConnections,
+        String status,
+        Long timestamp,
+        String trashType,
+        String binType
+) {
+}
@@ -4,12 +4,16 @@ import jakarta.persistence.*;
 
 @Entity
 @Table(name = "settings")
-public class SettingsEntity {
+public class SettingsEntity implements VersionedRow<SettingsEntity> {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @Column(nullable = false)
     private int fullThresholdPercent;
 
@@ -22,14 +26,26 @@ public class SettingsEntity {
     @Column(nullable = false)
     private boolean autoEmptyEnabled;
 
+    @Override
     public Long getId() {
         return id;
     }
 
+    @Override
     public void setId(Long id) {
         this.id = id;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public int getFullThresholdPercent() {
         return fullThresholdPercent;
     }
@@ -61,6 +77,19 @@ public class SettingsEntity {
     public void setAutoEmptyEnabled(boolean autoEmptyEnabled) {
         this.autoEmptyEnabled = autoEmptyEnabled;
     }
-}
-
 
+    /**
+     * Detached copy used by the state cache so cached instances are never mutated in place.
+     */
+    @Override
+    public SettingsEntity copy() {
+        SettingsEntity copy = new SettingsEntity();
+        copy.id = id;
+        copy.version = version;
+        copy.fullThresholdPercent = fullThresholdPercent;
+        copy.minConfidencePercent = minConfidencePercent;
+        copy.websocketUrl = websocketUrl;
+        copy.autoEmptyEnabled = autoEmptyEnabled;
+        return copy;
+    }
+}
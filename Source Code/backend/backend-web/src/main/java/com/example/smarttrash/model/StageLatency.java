@@ -0,0 +1,12 @@
+package com.example.smarttrash.model;
+
+public record StageLatency(
+        String hop,           // "<from stage>-><to stage>"
+        long count,
+        double meanMs,
+        long p50Ms,           // percentiles are bucket upper bounds, see TraceRecorder
+        long p90Ms,
+        long p99Ms,
+        long maxMs
+) {
+}
@@ -0,0 +1,8 @@
+package com.example.smarttrash.model;
+
+/**
+ * Published by {@code PrincipalCache.invalidate}: every token issued to {@code username} up to {@code revokedAt}
+ * (epoch millis) is no longer valid.
+ */
+public record TokensRevoked(String username, long revokedAt) {
+}
@@ -0,0 +1,12 @@
+package com.example.smarttrash.model;
+
+import java.util.List;
+import java.util.Map;
+
+public record TraceDetail(
+        String traceId,
+        Map<String, Long> stages,             // stage -> epoch millis; empty once the trace left the recent ring
+        List<ClassificationLog> classifications,
+        List<Esp32EventLog> events
+) {
+}
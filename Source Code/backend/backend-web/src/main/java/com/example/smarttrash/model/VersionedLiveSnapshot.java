@@ -0,0 +1,13 @@
+package com.example.smarttrash.model;
+
+/**
+ * Live snapshot plus the sequence numbers at which each part last changed.
+ */
+public record VersionedLiveSnapshot(
+        LiveSnapshot snapshot,
+        long version,
+        long imageVersion,
+        long dataVersion,
+        long stateVersion
+) {
+}
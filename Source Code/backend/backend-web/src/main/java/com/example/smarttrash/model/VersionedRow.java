@@ -0,0 +1,17 @@
+package com.example.smarttrash.model;
+
+/**
+ * Single-row entity with an optimistic-lock version that can be copied detached.
+ */
+public interface VersionedRow<T> {
+
+    Long getId();
+
+    void setId(Long id);
+
+    long getVersion();
+
+    void setVersion(long version);
+
+    T copy();
+}
@@ -0,0 +1,13 @@
+package com.example.smarttrash.repository;
+
+import com.example.smarttrash.model.AlertHistoryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface AlertHistoryRepository extends JpaRepository<AlertHistoryEntity, Long> {
+
+    List<AlertHistoryEntity> findTop100ByOrderByChangedAtDescIdDesc();
+
+    List<AlertHistoryEntity> findTop100ByDeviceIdOrderByChangedAtDescIdDesc(String deviceId);
+}
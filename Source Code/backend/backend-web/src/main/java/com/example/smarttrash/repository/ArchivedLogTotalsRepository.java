@@ -0,0 +1,11 @@
+package com.example.smarttrash.repository;
+
+import com.example.smarttrash.model.ArchivedLogTotalsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ArchivedLogTotalsRepository extends JpaRepository<ArchivedLogTotalsEntity, Long> {
+
+    Optional<ArchivedLogTotalsEntity> findByDeviceId(String deviceId);
+}
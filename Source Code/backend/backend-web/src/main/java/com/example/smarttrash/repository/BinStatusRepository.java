@@ -2,8 +2,15 @@ package com.example.smarttrash.repository;
 
 import com.example.smarttrash.model.BinStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface BinStatusRepository extends JpaRepository<BinStatus, Long> {
-}
+    Optional<BinStatus> findByDeviceId(String deviceId);
 
+    @Query("select b.deviceId from BinStatus b")
+    List<String> findAllDeviceIds();
+}
 
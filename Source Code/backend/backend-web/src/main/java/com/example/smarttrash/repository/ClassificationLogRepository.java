@@ -2,19 +2,30 @@ package com.example.smarttrash.repository;
 
 import com.example.smarttrash.model.ClassificationLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface ClassificationLogRepository extends JpaRepository<ClassificationLog, Long> {
+public interface ClassificationLogRepository extends JpaRepository<ClassificationLog, Long>, JpaSpecificationExecutor<ClassificationLog> {
 
-    List<ClassificationLog> findTop20ByOrderByTimestampDesc();
+    List<ClassificationLog> findTop20ByDeviceIdOrderByTimestampDesc(String deviceId);
 
-    long countByTimestampAfter(LocalDateTime after);
+    long countByDeviceId(String deviceId);
 
-    @Query("select avg(c.confidence) from ClassificationLog c")
-    Double findAverageConfidence();
+    long countByDeviceIdAndTimestampAfter(String deviceId, LocalDateTime after);
+
+    @Query("select avg(c.confidence) from ClassificationLog c where c.deviceId = :deviceId")
+    Double findAverageConfidenceByDeviceId(String deviceId);
+
+    // Rows of (deviceId, count, sum of confidence)
+    @Query("select c.deviceId, count(c), sum(c.confidence) from ClassificationLog c group by c.deviceId")
+    List<Object[]> countAndConfidenceSumByDeviceId();
+
+    List<ClassificationLog> findByTraceIdOrderByIdAsc(String traceId);
+
+    boolean existsByJournalSeq(Long journalSeq);
 }
 
 
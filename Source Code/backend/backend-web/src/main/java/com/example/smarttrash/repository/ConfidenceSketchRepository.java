@@ -0,0 +1,13 @@
+package com.example.smarttrash.repository;
+
+import com.example.smarttrash.model.ConfidenceSketchEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ConfidenceSketchRepository extends JpaRepository<ConfidenceSketchEntity, Long> {
+
+    List<ConfidenceSketchEntity> findByBucketStartGreaterThanEqual(long bucketStart);
+
+    List<ConfidenceSketchEntity> findByBucketStartLessThan(long bucketStart);
+}
@@ -3,7 +3,9 @@ package com.example.smarttrash.repository;
 import com.example.smarttrash.model.DeviceInfoEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Optional;
+
 public interface DeviceInfoRepository extends JpaRepository<DeviceInfoEntity, Long> {
+    Optional<DeviceInfoEntity> findByDeviceId(String deviceId);
 }
 
-
@@ -2,14 +2,20 @@ package com.example.smarttrash.repository;
 
 import com.example.smarttrash.model.Esp32EventLog;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 import java.util.List;
 
-public interface Esp32EventLogRepository extends JpaRepository<Esp32EventLog, Long> {
+public interface Esp32EventLogRepository extends JpaRepository<Esp32EventLog, Long>, JpaSpecificationExecutor<Esp32EventLog> {
     List<Esp32EventLog> findTop50ByOrderByReceivedAtDesc();
-    
-    @Query(value = "SELECT * FROM esp32_event_logs WHERE filename IS NOT NULL ORDER BY received_at DESC LIMIT 50", nativeQuery = true)
-    List<Esp32EventLog> findTop50ByFilenameNotNullOrderByReceivedAtDesc();
+
+    List<Esp32EventLog> findTop50ByDeviceIdAndFilenameIsNotNullOrderByReceivedAtDesc(String deviceId);
+
+    boolean existsByDeviceIdAndEventTypeAndFilenameAndReceivedAt(String deviceId, String eventType,
+                                                                 String filename, Long receivedAt);
+
+    List<Esp32EventLog> findByTraceIdOrderByIdAsc(String traceId);
+
+    boolean existsByJournalSeq(Long journalSeq);
 }
 
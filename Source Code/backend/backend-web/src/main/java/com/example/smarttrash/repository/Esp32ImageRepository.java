@@ -1,10 +1,22 @@
 package com.example.smarttrash.repository;
 
 import com.example.smarttrash.model.Esp32ImageEntity;
+import com.example.smarttrash.model.Esp32ImageMeta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
-public interface Esp32ImageRepository extends JpaRepository<Esp32ImageEntity, Long> {
+import java.util.List;
+import java.util.Optional;
 
-    Esp32ImageEntity findTopByOrderByReceivedAtDesc();
-}
+public interface Esp32ImageRepository extends JpaRepository<Esp32ImageEntity, Long>, JpaSpecificationExecutor<Esp32ImageEntity> {
+
+    // Metadata projections: select only the listed columns, never a managed entity
+
+    Optional<Esp32ImageMeta> findMetaById(Long id);
 
+    Optional<Esp32ImageMeta> findFirstMetaByOrderByReceivedAtDesc();
+
+    List<Esp32ImageMeta> findTop50MetaByOrderByReceivedAtDesc();
+
+    boolean existsByJournalSeq(Long journalSeq);
+}
@@ -0,0 +1,337 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.Alert;
+import com.example.smarttrash.model.AlertHistoryEntity;
+import com.example.smarttrash.model.SettingsEntity;
+import com.example.smarttrash.repository.AlertHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alert rules evaluated on the ingest path, per incoming message, against in-memory state only.
+ *
+ * <ul>
+ *   <li>{@code bin-full-organic} / {@code bin-full-inorganic}: level at or above {@code Settings.fullThresholdPercent};
+ *   resolves below it minus {@code app.alerts.fill-hysteresis-percent}</li>
+ *   <li>{@code low-confidence}: moving average of classifier confidence (last ~{@code app.alerts.window} logs) below
+ *   {@code Settings.minConfidencePercent}; resolves at it plus {@code app.alerts.confidence-hysteresis-percent}</li>
+ *   <li>{@code error-rate}: moving share of classification logs with status {@code error} at or above
+ *   {@code app.alerts.error-rate}; resolves below {@code app.alerts.error-rate-clear}</li>
+ *   <li>{@code device-silent}: no message for {@code app.alerts.silence-ms}, checked every
+ *   {@code app.alerts.check-interval-ms}; resolves with the next message</li>
+ * </ul>
+ * Between the two thresholds nothing changes (hysteresis), and a rule only fires or resolves once its condition has
+ * held for {@code app.alerts.debounce-ms} (debounce; a pending change is also completed by the periodic check).
+ * Each message updates at most the rules it carries data for. State changes are published as {@link Alert}
+ * application events, which {@link LiveStreamService} pushes to subscribers, and saved to {@code alert_history} by a
+ * background writer with a bounded queue ({@code app.alerts.history-queue}), so the ingest thread never waits on MySQL.
+ */
+@Slf4j
+@Service
+public class AlertEngine {
+
+    public static final String BIN_FULL_ORGANIC = "bin-full-organic";
+    public static final String BIN_FULL_INORGANIC = "bin-full-inorganic";
+    public static final String LOW_CONFIDENCE = "low-confidence";
+    public static final String ERROR_RATE = "error-rate";
+    public static final String DEVICE_SILENT = "device-silent";
+
+    // Same defaults as DashboardService.getSettings() when no settings row exists
+    private static final int DEFAULT_FULL_THRESHOLD_PERCENT = 75;
+    private static final int DEFAULT_MIN_CONFIDENCE_PERCENT = 85;
+
+    private final StateCacheService stateCache;
+    private final AlertHistoryRepository alertHistoryRepository;
+    private final ResponseCache responseCache;
+    private final ApplicationEventPublisher events;
+    private final Map<String, DeviceAlerts> devices = new ConcurrentHashMap<>();
+    private final ExecutorService historyWriter;
+
+    @Value("${app.alerts.debounce-ms:10000}")
+    private long debounceMs;
+
+    @Value("${app.alerts.fill-hysteresis-percent:10}")
+    private double fillHysteresis;
+
+    @Value("${app.alerts.confidence-hysteresis-percent:5}")
+    private double confidenceHysteresis;
+
+    @Value("${app.alerts.window:20}")
+    private int window;
+
+    @Value("${app.alerts.error-rate:0.2}")
+    private double errorRate;
+
+    @Value("${app.alerts.error-rate-clear:0.1}")
+    private double errorRateClear;
+
+    @Value("${app.alerts.silence-ms:300000}")
+    private long silenceMs;
+
+    public AlertEngine(StateCacheService stateCache,
+                       AlertHistoryRepository alertHistoryRepository,
+                       ResponseCache responseCache,
+                       ApplicationEventPublisher events,
+                       @Value("${app.alerts.history-queue:1000}") int historyQueue) {
+        this.stateCache = stateCache;
+        this.alertHistoryRepository = alertHistoryRepository;
+        this.responseCache = responseCache;
+        this.events = events;
+        this.historyWriter = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, historyQueue)), r -> {
+                    Thread t = new Thread(r, "alert-history");
+                    t.setDaemon(true);
+                    return t;
+                }, (task, executor) -> log.warn("Alert history queue full or writer stopped, not saving an alert state change"));
+    }
+
+    /**
+     * Any message from the device; resolves {@code device-silent}.
+     */
+    public void seen(String deviceId) {
+        long now = System.currentTimeMillis();
+        DeviceAlerts device = device(deviceId);
+        List<Alert> changed = new ArrayList<>(1);
+        synchronized (device) {
+            device.lastSeen = now;
+            device.rule(DEVICE_SILENT).evaluate(false, true, 0, silenceMs / 1000.0, 0, now, changed);
+        }
+        publish(changed);
+    }
+
+    /**
+     * Bin levels in percent; either may be null when the message only carries the other.
+     */
+    public void levels(String deviceId, Double organic, Double inorganic) {
+        long now = System.currentTimeMillis();
+        double full = settings().map(SettingsEntity::getFullThresholdPercent).orElse(DEFAULT_FULL_THRESHOLD_PERCENT);
+        DeviceAlerts device = device(deviceId);
+        List<Alert> changed = new ArrayList<>(2);
+        synchronized (device) {
+            if (organic != null) {
+                device.rule(BIN_FULL_ORGANIC).evaluate(organic >= full, organic < full - fillHysteresis,
+                        organic, full, debounceMs, now, changed);
+            }
+            if (inorganic != null) {
+                device.rule(BIN_FULL_INORGANIC).evaluate(inorganic >= full, inorganic < full - fillHysteresis,
+                        inorganic, full, debounceMs, now, changed);
+            }
+        }
+        publish(changed);
+    }
+
+    /**
+     * One classification result; {@code confidence} is a fraction or a percentage, null when the classifier sent none.
+     */
+    public void classification(String deviceId, Double confidence, String status) {
+        long now = System.currentTimeMillis();
+        double minConfidence = settings().map(SettingsEntity::getMinConfidencePercent)
+                .orElse(DEFAULT_MIN_CONFIDENCE_PERCENT);
+        double alpha = 2.0 / (Math.max(1, window) + 1);
+        DeviceAlerts device = device(deviceId);
+        List<Alert> changed = new ArrayList<>(2);
+        synchronized (device) {
+            boolean error = "error".equalsIgnoreCase(status);
+            // Starts at 0, so a single early error does not read as a 100% error rate
+            device.errorRate += alpha * ((error ? 1 : 0) - device.errorRate);
+            device.rule(ERROR_RATE).evaluate(device.errorRate >= errorRate, device.errorRate < errorRateClear,
+                    device.errorRate, errorRate, debounceMs, now, changed);
+            if (confidence != null && !error) {
+                double percent = confidence <= 1.0 ? confidence * 100 : confidence;
+                device.confidence = Double.isNaN(device.confidence)
+                        ? percent
+                        : device.confidence + alpha * (percent - device.confidence);
+                device.rule(LOW_CONFIDENCE).evaluate(device.confidence < minConfidence,
+                        device.confidence >= minConfidence + confidenceHysteresis,
+                        device.confidence, minConfidence, debounceMs, now, changed);
+            }
+        }
+        publish(changed);
+    }
+
+    /**
+     * Fires {@code device-silent} and completes debounced changes whose condition still holds without new messages.
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.check-interval-ms:10000}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        List<Alert> changed = new ArrayList<>();
+        devices.forEach((deviceId, device) -> {
+            synchronized (device) {
+                long silent = now - device.lastSeen;
+                device.rule(DEVICE_SILENT).evaluate(silent >= silenceMs, false, silent / 1000.0, silenceMs / 1000.0,
+                        0, now, changed);
+                device.rules.forEach((name, rule) -> {
+                    if (!DEVICE_SILENT.equals(name)) {
+                        rule.advance(now, debounceMs, changed);
+                    }
+                });
+            }
+        });
+        publish(changed);
+    }
+
+    /**
+     * Firing alerts of a device, oldest first.
+     */
+    public List<Alert> active(String deviceId) {
+        DeviceAlerts device = devices.get(deviceId);
+        if (device == null) {
+            return List.of();
+        }
+        synchronized (device) {
+            return device.rules.values().stream()
+                    .filter(rule -> rule.active)
+                    .map(rule -> rule.alert("firing", rule.since))
+                    .sorted(Comparator.comparingLong(Alert::changedAt))
+                    .toList();
+        }
+    }
+
+    public List<Alert> active() {
+        return devices.keySet().stream()
+                .flatMap(deviceId -> active(deviceId).stream())
+                .sorted(Comparator.comparingLong(Alert::changedAt))
+                .toList();
+    }
+
+    private void publish(List<Alert> changed) {
+        for (Alert alert : changed) {
+            log.info("Alert {} {} for {}: {} (value {}, threshold {})", alert.rule(), alert.state(), alert.deviceId(),
+                    alert.message(), alert.value(), alert.threshold());
+            historyWriter.execute(() -> saveHistory(alert));
+            responseCache.invalidate(alert.deviceId());
+            events.publishEvent(alert);
+        }
+    }
+
+    private void saveHistory(Alert alert) {
+        try {
+            AlertHistoryEntity entity = new AlertHistoryEntity();
+            entity.setDeviceId(alert.deviceId());
+            entity.setRule(alert.rule());
+            entity.setState(alert.state());
+            entity.setMessage(alert.message());
+            entity.setValue(alert.value());
+            entity.setThreshold(alert.threshold());
+            entity.setChangedAt(alert.changedAt());
+            alertHistoryRepository.save(entity);
+            // Again once saved, so a history response cached in between is not kept
+            responseCache.invalidate(alert.deviceId());
+        } catch (Exception e) {
+            log.warn("Failed to save alert history for {}: {}", alert.deviceId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        historyWriter.shutdown();
+        if (!historyWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Alert history writer did not finish, {} changes not saved", historyWriter.shutdownNow().size());
+        }
+    }
+
+    private Optional<SettingsEntity> settings() {
+        // Cached in memory after the first load, see SingletonRowCache
+        return stateCache.getSettings();
+    }
+
+    private DeviceAlerts device(String deviceId) {
+        return devices.computeIfAbsent(deviceId, DeviceAlerts::new);
+    }
+
+    private static String message(String rule) {
+        return switch (rule) {
+            case BIN_FULL_ORGANIC -> "Ngăn hữu cơ đầy";
+            case BIN_FULL_INORGANIC -> "Ngăn vô cơ đầy";
+            case LOW_CONFIDENCE -> "Độ tin cậy phân loại thấp";
+            case ERROR_RATE -> "Tỉ lệ lỗi phân loại cao";
+            case DEVICE_SILENT -> "Thiết bị mất kết nối";
+            default -> rule;
+        };
+    }
+
+    /**
+     * Per-device rule states and moving averages; guarded by the instance's monitor.
+     */
+    private static final class DeviceAlerts {
+        private final String deviceId;
+        private final Map<String, RuleState> rules = new ConcurrentHashMap<>();
+        private long lastSeen = System.currentTimeMillis();
+        private double errorRate;
+        private double confidence = Double.NaN;
+
+        DeviceAlerts(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        RuleState rule(String name) {
+            return rules.computeIfAbsent(name, n -> new RuleState(deviceId, n));
+        }
+    }
+
+    private static final class RuleState {
+        private final String deviceId;
+        private final String rule;
+        private boolean active;
+        private long since;
+        // When the condition for the opposite state was first seen in the current run; -1 while it is not met
+        private long pendingSince = -1;
+        private double value;
+        private double threshold;
+
+        RuleState(String deviceId, String rule) {
+            this.deviceId = deviceId;
+            this.rule = rule;
+        }
+
+        /**
+         * @param breach condition to fire; {@code clear} condition to resolve (stricter, for hysteresis)
+         */
+        void evaluate(boolean breach, boolean clear, double value, double threshold, long debounceMs, long now,
+                      List<Alert> changed) {
+            this.value = value;
+            this.threshold = threshold;
+            boolean toggle = active ? clear : breach;
+            if (!toggle) {
+                pendingSince = -1;
+                return;
+            }
+            if (pendingSince < 0) {
+                pendingSince = now;
+            }
+            advance(now, debounceMs, changed);
+        }
+
+        void advance(long now, long debounceMs, List<Alert> changed) {
+            if (pendingSince < 0 || now - pendingSince < debounceMs) {
+                return;
+            }
+            active = !active;
+            pendingSince = -1;
+            if (active) {
+                since = now;
+            }
+            changed.add(alert(active ? "firing" : "resolved", now));
+        }
+
+        Alert alert(String state, long at) {
+            return new Alert(deviceId, rule, state, message(rule), value, threshold, at);
+        }
+    }
+}
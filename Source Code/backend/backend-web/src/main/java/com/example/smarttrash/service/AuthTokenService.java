@@ -0,0 +1,113 @@
+package com.example.smarttrash.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies short-lived bearer tokens signed with HMAC-SHA256.
+ *
+ * Token format: {@code base64url(username).issuedAtMillis.expiresAtMillis.base64url(signature)}.
+ * Verification is a single HMAC over a few dozen bytes, so it replaces a BCrypt check on every request.
+ * {@code app.auth.token-secret} is required (at least 32 bytes); startup fails without it. A valid token can be
+ * exchanged for a fresh one ({@link #refresh}), so an active client keeps its session while idle tokens expire.
+ */
+@Service
+public class AuthTokenService {
+
+    // HMAC-SHA256 key size; a shorter secret is easier to brute-force from a captured token
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final PrincipalCache principalCache;
+    private final ThreadLocal<Mac> macs;
+
+    public AuthTokenService(@Value("${app.auth.token-secret:}") String secret,
+                            @Value("${app.auth.token-ttl-minutes:60}") long ttlMinutes,
+                            PrincipalCache principalCache) {
+        if (!StringUtils.hasText(secret)) {
+            throw new IllegalStateException("app.auth.token-secret must be set (AUTH_TOKEN_SECRET)");
+        }
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("app.auth.token-secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.principalCache = principalCache;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+    }
+
+    public IssuedToken issue(String username) {
+        long issuedAt = System.currentTimeMillis();
+        long expiresAt = issuedAt + ttl.toMillis();
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + '.' + issuedAt + '.' + expiresAt;
+        return new IssuedToken(payload + '.' + ENCODER.encodeToString(sign(payload)), expiresAt);
+    }
+
+    /**
+     * A new token for the user of {@code token}, if that one is still valid; the old token stays valid until it
+     * expires or is revoked.
+     */
+    public Optional<IssuedToken> refresh(String token) {
+        return verify(token).map(this::issue);
+    }
+
+    /**
+     * Username of a valid, unexpired and unrevoked token.
+     */
+    public Optional<String> verify(String token) {
+        int sigStart = token.lastIndexOf('.');
+        if (sigStart <= 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, sigStart);
+        try {
+            byte[] signature = DECODER.decode(token.substring(sigStart + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return Optional.empty();
+            }
+            String[] parts = payload.split("\\.");
+            if (parts.length != 3) {
+                return Optional.empty();
+            }
+            String username = new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8);
+            long issuedAt = Long.parseLong(parts[1]);
+            long expiresAt = Long.parseLong(parts[2]);
+            if (expiresAt < System.currentTimeMillis() || principalCache.isRevoked(username, issuedAt)) {
+                return Optional.empty();
+            }
+            return Optional.of(username);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public record IssuedToken(String token, long expiresAt) {
+    }
+}
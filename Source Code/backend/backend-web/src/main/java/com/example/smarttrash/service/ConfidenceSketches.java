@@ -0,0 +1,279 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.ConfidenceBin;
+import com.example.smarttrash.model.ConfidenceSketchEntity;
+import com.example.smarttrash.model.ConfidenceSummary;
+import com.example.smarttrash.model.SettingsEntity;
+import com.example.smarttrash.repository.ConfidenceSketchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distribution of classification confidence per device, type and hour, for model-quality monitoring.
+ *
+ * Each (device, type, hour) has a sketch: counts in 100 fixed bins of width 0.01 over [0, 1] plus count, sum, min
+ * and max. Recording a log is O(1); sketches merge by adding bins, so a summary over any devices, types and hours is
+ * exact to one bin (and exact for the whole-percent {@code minConfidencePercent} threshold) and never reads the logs.
+ * Confidences above 1 are taken as percentages; rotation logs (status {@code ws}, no confidence) are skipped.
+ * Changed sketches are written to {@code confidence_sketches} every {@code app.sketch.flush-interval-ms} and on
+ * shutdown, so a crash loses at most that interval; the last {@code app.sketch.retention-hours} are loaded at startup
+ * and older ones dropped.
+ */
+@Slf4j
+@Service
+public class ConfidenceSketches {
+
+    public static final int BINS = 100;
+
+    private static final long HOUR_MS = Duration.ofHours(1).toMillis();
+    private static final int DEFAULT_MIN_CONFIDENCE_PERCENT = 85;
+
+    private final ConfidenceSketchRepository repository;
+    private final StateCacheService stateCache;
+    private final Map<Key, Sketch> sketches = new ConcurrentHashMap<>();
+    private final Set<Key> dirty = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.sketch.retention-hours:168}")
+    private int retentionHours;
+
+    public ConfidenceSketches(ConfidenceSketchRepository repository, StateCacheService stateCache) {
+        this.repository = repository;
+        this.stateCache = stateCache;
+    }
+
+    @PostConstruct
+    public void load() {
+        try {
+            for (ConfidenceSketchEntity entity : repository.findByBucketStartGreaterThanEqual(cutoff())) {
+                Sketch sketch = Sketch.decode(entity);
+                sketches.put(new Key(entity.getDeviceId(), entity.getType(), entity.getBucketStart()), sketch);
+            }
+            log.info("Loaded {} confidence sketches", sketches.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not load confidence sketches, starting empty: {}", e.getMessage());
+        }
+    }
+
+    public void record(ClassificationLog entry) {
+        // Rotations from the classifier carry no confidence; they are logged as 0.0 with status "ws"
+        if ("ws".equals(entry.getStatus())) {
+            return;
+        }
+        double value = normalize(entry.getConfidence());
+        if (Double.isNaN(value) || entry.getTimestamp() == null) {
+            return;
+        }
+        long time = RetentionService.logTime(entry);
+        Key key = new Key(entry.getDeviceId(), entry.getType(), time - Math.floorMod(time, HOUR_MS));
+        sketches.computeIfAbsent(key, k -> new Sketch()).add(value);
+        dirty.add(key);
+    }
+
+    /**
+     * Merged distribution of the hours overlapping {@code [from, to)} (epoch millis); null arguments match everything.
+     */
+    public ConfidenceSummary summary(String deviceId, String type, Long from, Long to) {
+        Sketch merged = merge(deviceId, type, from, to);
+        int threshold = stateCache.getSettings()
+                .map(SettingsEntity::getMinConfidencePercent)
+                .orElse(DEFAULT_MIN_CONFIDENCE_PERCENT);
+        return merged.summary(threshold);
+    }
+
+    /**
+     * Merged counts in {@code bins} equal bins over [0, 1]; {@code bins} is rounded to a divisor of {@value #BINS}.
+     */
+    public List<ConfidenceBin> histogram(String deviceId, String type, Long from, Long to, int bins) {
+        return merge(deviceId, type, from, to).histogram(bins);
+    }
+
+    private Sketch merge(String deviceId, String type, Long from, Long to) {
+        long fromBucket = from != null ? from - Math.floorMod(from, HOUR_MS) : Long.MIN_VALUE;
+        long toMs = to != null ? to : Long.MAX_VALUE;
+        Sketch merged = new Sketch();
+        sketches.forEach((key, sketch) -> {
+            if ((deviceId == null || deviceId.equals(key.deviceId()))
+                    && (type == null || type.equals(key.type()))
+                    && key.bucketStart() >= fromBucket && key.bucketStart() < toMs) {
+                merged.merge(sketch);
+            }
+        });
+        return merged;
+    }
+
+    @Scheduled(initialDelayString = "${app.sketch.flush-interval-ms:60000}",
+            fixedDelayString = "${app.sketch.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        for (Key key : dirty) {
+            dirty.remove(key);
+            Sketch sketch = sketches.get(key);
+            if (sketch == null) {
+                continue;
+            }
+            try {
+                ConfidenceSketchEntity entity = sketch.encode();
+                entity.setDeviceId(key.deviceId());
+                entity.setType(key.type());
+                entity.setBucketStart(key.bucketStart());
+                sketch.rowId = repository.save(entity).getId();
+            } catch (RuntimeException e) {
+                dirty.add(key);
+                log.warn("Failed to save confidence sketch {}: {}", key, e.getMessage());
+            }
+        }
+        long cutoff = cutoff();
+        sketches.keySet().removeIf(key -> key.bucketStart() < cutoff && !dirty.contains(key));
+        try {
+            List<ConfidenceSketchEntity> expired = repository.findByBucketStartLessThan(cutoff);
+            if (!expired.isEmpty()) {
+                repository.deleteAllInBatch(expired);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete expired confidence sketches: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private long cutoff() {
+        long now = System.currentTimeMillis();
+        return now - Math.floorMod(now, HOUR_MS) - retentionHours * HOUR_MS;
+    }
+
+    private static double normalize(double confidence) {
+        if (Double.isNaN(confidence) || confidence < 0) {
+            return Double.NaN;
+        }
+        return Math.min(1.0, confidence > 1.0 ? confidence / 100.0 : confidence);
+    }
+
+    private record Key(String deviceId, String type, long bucketStart) {
+    }
+
+    /**
+     * Fixed-bin histogram of values in [0, 1]; bin {@code i} holds {@code [i/BINS, (i+1)/BINS)}, the last also 1.0.
+     */
+    static final class Sketch {
+        private final long[] bins = new long[BINS];
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        // Row in confidence_sketches once saved; written by the flush only
+        private volatile Long rowId;
+
+        synchronized void add(double value) {
+            // The epsilon keeps e.g. 0.29 (28.999... after scaling) in its own bin
+            bins[Math.min(BINS - 1, (int) (value * BINS + 1e-9))]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        void merge(Sketch other) {
+            synchronized (other) {
+                for (int i = 0; i < BINS; i++) {
+                    bins[i] += other.bins[i];
+                }
+                count += other.count;
+                sum += other.sum;
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+            }
+        }
+
+        ConfidenceSummary summary(int thresholdPercent) {
+            if (count == 0) {
+                return new ConfidenceSummary(0, 0, 0, 0, 0, 0, 0, thresholdPercent, 0);
+            }
+            long below = 0;
+            for (int i = 0; i < Math.min(BINS, Math.max(0, thresholdPercent * BINS / 100)); i++) {
+                below += bins[i];
+            }
+            return new ConfidenceSummary(count, sum / count, min, max,
+                    quantile(0.50), quantile(0.90), quantile(0.99), thresholdPercent, below);
+        }
+
+        List<ConfidenceBin> histogram(int requested) {
+            int width = BINS / divisor(requested);
+            List<ConfidenceBin> result = new ArrayList<>(BINS / width);
+            for (int start = 0; start < BINS; start += width) {
+                long binCount = 0;
+                for (int i = start; i < start + width; i++) {
+                    binCount += bins[i];
+                }
+                result.add(new ConfidenceBin((double) start / BINS, (double) (start + width) / BINS, binCount));
+            }
+            return result;
+        }
+
+        private double quantile(double q) {
+            long rank = (long) Math.ceil(count * q);
+            long seen = 0;
+            for (int i = 0; i < BINS; i++) {
+                seen += bins[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.max(min, Math.min(max, (double) (i + 1) / BINS));
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Largest divisor of {@value #BINS} not above {@code requested}, so grouped bins stay equally wide.
+         */
+        private static int divisor(int requested) {
+            int bins = Math.max(1, Math.min(BINS, requested));
+            while (BINS % bins != 0) {
+                bins--;
+            }
+            return bins;
+        }
+
+        synchronized ConfidenceSketchEntity encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(BINS * Long.BYTES);
+            for (long bin : bins) {
+                buffer.putLong(bin);
+            }
+            ConfidenceSketchEntity entity = new ConfidenceSketchEntity();
+            entity.setId(rowId);
+            entity.setCount(count);
+            entity.setSum(sum);
+            entity.setMin(min);
+            entity.setMax(max);
+            entity.setBins(buffer.array());
+            return entity;
+        }
+
+        static Sketch decode(ConfidenceSketchEntity entity) {
+            Sketch sketch = new Sketch();
+            ByteBuffer buffer = ByteBuffer.wrap(entity.getBins());
+            for (int i = 0; i < BINS && buffer.remaining() >= Long.BYTES; i++) {
+                sketch.bins[i] = buffer.getLong();
+            }
+            sketch.count = entity.getCount();
+            sketch.sum = entity.getSum();
+            sketch.min = entity.getMin();
+            sketch.max = entity.getMax();
+            sketch.rowId = entity.getId();
+            return sketch;
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package com.example.smarttrash.service;
 
+import com.example.smarttrash.jfr.DashboardOverviewEvent;
 import com.example.smarttrash.model.*;
-import com.example.smarttrash.repository.BinStatusRepository;
+import com.example.smarttrash.repository.ArchivedLogTotalsRepository;
 import com.example.smarttrash.repository.ClassificationLogRepository;
-import com.example.smarttrash.repository.DeviceInfoRepository;
-import com.example.smarttrash.repository.SettingsRepository;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -16,30 +15,67 @@ import java.util.List;
 public class DashboardService {
 
     private final ClassificationLogRepository classificationLogRepository;
-    private final BinStatusRepository binStatusRepository;
-    private final SettingsRepository settingsRepository;
-    private final DeviceInfoRepository deviceInfoRepository;
+    private final ArchivedLogTotalsRepository archivedLogTotalsRepository;
+    private final StateCacheService stateCache;
+    private final IngestMetrics ingestMetrics;
+    private final HotWindow hotWindow;
+    private final AlertEngine alertEngine;
 
     public DashboardService(ClassificationLogRepository classificationLogRepository,
-                            BinStatusRepository binStatusRepository,
-                            SettingsRepository settingsRepository,
-                            DeviceInfoRepository deviceInfoRepository) {
+                            ArchivedLogTotalsRepository archivedLogTotalsRepository,
+                            StateCacheService stateCache,
+                            IngestMetrics ingestMetrics,
+                            HotWindow hotWindow,
+                            AlertEngine alertEngine) {
         this.classificationLogRepository = classificationLogRepository;
-        this.binStatusRepository = binStatusRepository;
-        this.settingsRepository = settingsRepository;
-        this.deviceInfoRepository = deviceInfoRepository;
+        this.archivedLogTotalsRepository = archivedLogTotalsRepository;
+        this.stateCache = stateCache;
+        this.ingestMetrics = ingestMetrics;
+        this.hotWindow = hotWindow;
+        this.alertEngine = alertEngine;
     }
 
-    public DashboardOverview getOverview() {
-        long totalCount = classificationLogRepository.count();
-        Double avgConf = classificationLogRepository.findAverageConfidence();
-        long todayCount = classificationLogRepository.countByTimestampAfter(LocalDate.now().atStartOfDay());
+    public DashboardOverview getOverview(String deviceId) {
+        DashboardOverviewEvent event = new DashboardOverviewEvent();
+        event.begin();
+        DashboardOverview overview = ingestMetrics.deviceTimer("smarttrash.dashboard.overview", deviceId)
+                .record(() -> overview(deviceId));
+        if (event.shouldCommit()) {
+            event.deviceId = deviceId;
+            event.commit();
+        }
+        return overview;
+    }
+
+    /**
+     * All-time totals from MySQL: rows still in {@code classification_logs} plus those moved to the archive.
+     */
+    private HotWindow.LogTotals databaseTotals(String deviceId) {
+        long count = classificationLogRepository.countByDeviceId(deviceId);
+        Double average = classificationLogRepository.findAverageConfidenceByDeviceId(deviceId);
+        double sum = average != null ? average * count : 0.0;
+        ArchivedLogTotalsEntity archived = archivedLogTotalsRepository.findByDeviceId(deviceId).orElse(null);
+        if (archived != null) {
+            count += archived.getCount();
+            sum += archived.getConfidenceSum();
+        }
+        return new HotWindow.LogTotals(count, count > 0 ? sum / count : null);
+    }
 
-        BinStatus binStatus = binStatusRepository.findAll().stream().findFirst().orElse(null);
+    private DashboardOverview overview(String deviceId) {
+        // Counts and the latest logs come from the hot window; the database only when it does not reach back far enough
+        HotWindow.LogTotals totals = hotWindow.totals(deviceId).orElseGet(() -> databaseTotals(deviceId));
+        long totalCount = totals.count();
+        Double avgConf = totals.averageConfidence();
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        long todayCount = hotWindow.countLogs(deviceId, startOfDay)
+                .orElseGet(() -> classificationLogRepository.countByDeviceIdAndTimestampAfter(deviceId, startOfDay));
+
+        BinStatus binStatus = stateCache.getBinStatus(deviceId).orElse(null);
         double organicLevel = binStatus != null ? binStatus.getOrganicLevel() : 0.0;
         double inorganicLevel = binStatus != null ? binStatus.getInorganicLevel() : 0.0;
 
-        List<ClassificationLog> latestLogs = classificationLogRepository.findTop20ByOrderByTimestampDesc();
+        List<ClassificationLog> latestLogs = latestLogs(deviceId, 1);
         ClassificationLog lastLog = latestLogs.isEmpty() ? null : latestLogs.get(0);
 
         LastClassification lastClassification = lastLog != null
@@ -50,13 +86,16 @@ public class DashboardService {
         )
                 : new LastClassification("organic", 0, "-");
 
-        String alertMessage = organicLevel > 90 || inorganicLevel > 90
-                ? "Ngăn đầy"
-                : "Ổn định";
+        // Evaluated on ingest against the Settings thresholds, see AlertEngine
+        List<Alert> alerts = alertEngine.active(deviceId);
+        String alertMessage = alerts.isEmpty()
+                ? "Ổn định"
+                : alerts.get(alerts.size() - 1).message();
 
-        int alertCount = (organicLevel > 90 || inorganicLevel > 90) ? 2 : 0;
+        int alertCount = alerts.size();
 
         return new DashboardOverview(
+                deviceId,
                 totalCount,
                 avgConf != null ? Math.round(avgConf * 10.0) / 10.0 : 0.0,
                 (int) todayCount,
@@ -69,15 +108,23 @@ public class DashboardService {
         );
     }
 
-    public List<LogEntry> getRecentLogs() {
-        List<ClassificationLog> logs = classificationLogRepository.findTop20ByOrderByTimestampDesc();
+    public List<LogEntry> getRecentLogs(String deviceId) {
+        List<ClassificationLog> logs = latestLogs(deviceId, 20);
         return logs.stream()
                 .map(l -> new LogEntry(l.getTimestamp(), l.getType(), l.getConfidence(), l.getStatus()))
                 .toList();
     }
 
+    private List<ClassificationLog> latestLogs(String deviceId, int limit) {
+        return hotWindow.logs(deviceId, null, null, null, null, null, null, limit)
+                .orElseGet(() -> {
+                    List<ClassificationLog> logs = classificationLogRepository.findTop20ByDeviceIdOrderByTimestampDesc(deviceId);
+                    return logs.subList(0, Math.min(limit, logs.size()));
+                });
+    }
+
     public Settings getSettings() {
-        SettingsEntity entity = settingsRepository.findAll().stream().findFirst().orElse(null);
+        SettingsEntity entity = stateCache.getSettings().orElse(null);
         if (entity == null) {
             return new Settings(75, 85, "wss://ntdung.systems/ws\n", false);
         }
@@ -90,20 +137,17 @@ public class DashboardService {
     }
 
     public Settings updateSettings(Settings updated) {
-        SettingsEntity entity = settingsRepository.findAll().stream().findFirst().orElse(null);
-        if (entity == null) {
-            entity = new SettingsEntity();
-        }
-        entity.setFullThresholdPercent(updated.fullThresholdPercent());
-        entity.setMinConfidencePercent(updated.minConfidencePercent());
-        entity.setWebsocketUrl(updated.websocketUrl());
-        entity.setAutoEmptyEnabled(updated.autoEmptyEnabled());
-        settingsRepository.save(entity);
+        stateCache.updateSettings(entity -> {
+            entity.setFullThresholdPercent(updated.fullThresholdPercent());
+            entity.setMinConfidencePercent(updated.minConfidencePercent());
+            entity.setWebsocketUrl(updated.websocketUrl());
+            entity.setAutoEmptyEnabled(updated.autoEmptyEnabled());
+        });
         return updated;
     }
 
-    public DeviceInfo getDeviceInfo() {
-        DeviceInfoEntity entity = deviceInfoRepository.findAll().stream().findFirst().orElse(null);
+    public DeviceInfo getDeviceInfo(String deviceId) {
+        DeviceInfoEntity entity = stateCache.getDeviceInfo(deviceId).orElse(null);
         if (entity == null) {
             return new DeviceInfo(
                     "ESP32-CAM",
@@ -0,0 +1,362 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.Esp32ImageEntity;
+import com.example.smarttrash.model.Esp32ImageMeta;
+import com.example.smarttrash.model.HistoryLogEntry;
+import com.example.smarttrash.model.HistoryPage;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.repository.Esp32ImageRepository;
+import com.example.smarttrash.storage.ArchiveStore;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Filterable history of classification logs, ESP32 events and images, newest first.
+ *
+ * Paging is keyset-based: a cursor holds the (time, id) of the last row returned and the next page
+ * starts strictly below it, so every page is an index range scan of the same cost regardless of depth.
+ * Time range bounds are epoch milliseconds for all three tables; {@code deviceId} (optional) narrows to one bin.
+ *
+ * Rows moved out of MySQL by {@link RetentionService} are still found: when a page reaches back
+ * into the archived time range, matching rows are read from the {@link ArchiveStore} and merged in.
+ * Log and event pages the {@link HotWindow} can answer completely (typically the last few days) skip MySQL.
+ */
+@Slf4j
+@Service
+public class HistoryService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private final ArchiveStore archiveStore;
+    private final HotWindow hotWindow;
+    private final Table<ClassificationLog> logs;
+    private final Table<Esp32EventLog> events;
+    private final Table<Esp32ImageEntity> images;
+
+    public HistoryService(ClassificationLogRepository classificationLogRepository,
+                          Esp32EventLogRepository esp32EventLogRepository,
+                          Esp32ImageRepository esp32ImageRepository,
+                          ArchiveStore archiveStore,
+                          HotWindow hotWindow) {
+        this.archiveStore = archiveStore;
+        this.hotWindow = hotWindow;
+        this.logs = new Table<>(RetentionService.LOGS, ClassificationLog.class, classificationLogRepository,
+                "timestamp", RetentionService::logTime, ClassificationLog::getId,
+                Comparator.comparing(ClassificationLog::getTimestamp).thenComparing(ClassificationLog::getId).reversed(),
+                l -> new Cursor(l.getTimestamp().toString(), l.getId()),
+                key -> toMillis(LocalDateTime.parse(key)));
+        this.events = new Table<>(RetentionService.EVENTS, Esp32EventLog.class, esp32EventLogRepository,
+                "receivedAt", Esp32EventLog::getReceivedAt, Esp32EventLog::getId,
+                Comparator.comparing(Esp32EventLog::getReceivedAt).thenComparing(Esp32EventLog::getId).reversed(),
+                e -> new Cursor(e.getReceivedAt().toString(), e.getId()),
+                Long::parseLong);
+        this.images = new Table<>(RetentionService.IMAGES, Esp32ImageEntity.class, esp32ImageRepository,
+                "receivedAt", Esp32ImageEntity::getReceivedAt, Esp32ImageEntity::getId,
+                Comparator.comparing(Esp32ImageEntity::getReceivedAt).thenComparing(Esp32ImageEntity::getId).reversed(),
+                i -> new Cursor(i.getReceivedAt().toString(), i.getId()),
+                Long::parseLong);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor is malformed
+     */
+    public HistoryPage<HistoryLogEntry> logs(String deviceId, Long from, Long to, String type, String status,
+                                             String cursor, Integer limit) {
+        Cursor after = Cursor.decode(cursor);
+        LocalDateTime afterTs = after != null ? after.key(LocalDateTime::parse) : null;
+        Function<ClassificationLog, HistoryLogEntry> toEntry = l ->
+                new HistoryLogEntry(l.getId(), l.getDeviceId(), l.getTimestamp(), l.getType(), l.getConfidence(), l.getStatus());
+        Optional<List<ClassificationLog>> hot = hotWindow.logs(textOrNull(deviceId),
+                from != null ? toLocal(from) : null, to != null ? toLocal(to) : null,
+                textOrNull(type), textOrNull(status), afterTs, after != null ? after.id() : null, clamp(limit) + 1);
+        if (hot.isPresent()) {
+            return page(logs, hot.get(), clamp(limit), toEntry);
+        }
+        Specification<ClassificationLog> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (StringUtils.hasText(deviceId)) {
+                predicates.add(cb.equal(root.get("deviceId"), deviceId));
+            }
+            Path<LocalDateTime> ts = root.get("timestamp");
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(ts, toLocal(from)));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThan(ts, toLocal(to)));
+            }
+            if (StringUtils.hasText(type)) {
+                predicates.add(cb.equal(root.get("type"), type));
+            }
+            if (StringUtils.hasText(status)) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            if (after != null) {
+                predicates.add(before(cb, ts, root.get("id"), afterTs, after.id()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+        java.util.function.Predicate<ClassificationLog> archived = l ->
+                (!StringUtils.hasText(deviceId) || deviceId.equals(l.getDeviceId()))
+                        && (from == null || !l.getTimestamp().isBefore(toLocal(from)))
+                        && (to == null || l.getTimestamp().isBefore(toLocal(to)))
+                        && (!StringUtils.hasText(type) || type.equals(l.getType()))
+                        && (!StringUtils.hasText(status) || status.equals(l.getStatus()))
+                        && (after == null || isBefore(l.getTimestamp(), l.getId(), afterTs, after.id()));
+
+        return query(logs, spec, archived, from, to, after, limit, toEntry);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor is malformed
+     */
+    public HistoryPage<Esp32EventLog> events(String deviceId, Long from, Long to, String eventType, String trashType,
+                                             String cursor, Integer limit) {
+        Cursor after = Cursor.decode(cursor);
+        Long afterTs = after != null ? after.key(Long::valueOf) : null;
+        Optional<List<Esp32EventLog>> hot = hotWindow.events(textOrNull(deviceId), from, to,
+                textOrNull(eventType), textOrNull(trashType), false, afterTs, after != null ? after.id() : null, clamp(limit) + 1);
+        if (hot.isPresent()) {
+            return page(events, hot.get(), clamp(limit), Function.identity());
+        }
+        Specification<Esp32EventLog> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (StringUtils.hasText(deviceId)) {
+                predicates.add(cb.equal(root.get("deviceId"), deviceId));
+            }
+            Path<Long> receivedAt = root.get("receivedAt");
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(receivedAt, from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThan(receivedAt, to));
+            }
+            if (StringUtils.hasText(eventType)) {
+                predicates.add(cb.equal(root.get("eventType"), eventType));
+            }
+            if (StringUtils.hasText(trashType)) {
+                predicates.add(cb.equal(root.get("trashType"), trashType));
+            }
+            if (after != null) {
+                predicates.add(before(cb, receivedAt, root.get("id"), afterTs, after.id()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+        java.util.function.Predicate<Esp32EventLog> archived = e ->
+                (!StringUtils.hasText(deviceId) || deviceId.equals(e.getDeviceId()))
+                        && inRange(e.getReceivedAt(), from, to)
+                        && (!StringUtils.hasText(eventType) || eventType.equals(e.getEventType()))
+                        && (!StringUtils.hasText(trashType) || trashType.equals(e.getTrashType()))
+                        && (after == null || isBefore(e.getReceivedAt(), e.getId(), afterTs, after.id()));
+
+        return query(events, spec, archived, from, to, after, limit, Function.identity());
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor is malformed
+     */
+    public HistoryPage<Esp32ImageMeta> images(String deviceId, Long from, Long to, String cursor, Integer limit) {
+        Cursor after = Cursor.decode(cursor);
+        Long afterTs = after != null ? after.key(Long::valueOf) : null;
+        Specification<Esp32ImageEntity> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (StringUtils.hasText(deviceId)) {
+                predicates.add(cb.equal(root.get("deviceId"), deviceId));
+            }
+            Path<Long> receivedAt = root.get("receivedAt");
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(receivedAt, from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThan(receivedAt, to));
+            }
+            if (after != null) {
+                predicates.add(before(cb, receivedAt, root.get("id"), afterTs, after.id()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+        java.util.function.Predicate<Esp32ImageEntity> archived = i ->
+                (!StringUtils.hasText(deviceId) || deviceId.equals(i.getDeviceId()))
+                        && inRange(i.getReceivedAt(), from, to)
+                        && (after == null || isBefore(i.getReceivedAt(), i.getId(), afterTs, after.id()));
+
+        // Image rows only hold metadata and a blob key, so loading them never touches image bytes
+        return query(images, spec, archived, from, to, after, limit, HistoryService::toMeta);
+    }
+
+    /**
+     * Metadata of an image that has been moved to the archive; the bytes are still in the BlobStore.
+     */
+    public Optional<Esp32ImageMeta> findArchivedImage(long id) {
+        try {
+            return archiveStore.findById(RetentionService.IMAGES, Esp32ImageEntity.class, id, Esp32ImageEntity::getId)
+                    .map(HistoryService::toMeta);
+        } catch (IOException e) {
+            log.warn("Could not read archived image {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private <E, T> HistoryPage<T> query(Table<E> table, Specification<E> spec,
+                                        java.util.function.Predicate<E> archivedFilter,
+                                        Long from, Long to, Cursor after, Integer limit, Function<E, T> mapper) {
+        int size = clamp(limit);
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, table.timeProperty(), "id");
+        List<E> rows = table.repository().findBy(spec, q -> q.sortBy(newestFirst).limit(size + 1).all());
+
+        // The archive only matters if it holds rows at least as new as the oldest row this page could include
+        long floor = rows.size() > size ? table.timeOf().applyAsLong(rows.get(size)) : Long.MIN_VALUE;
+        if (archiveStore.maxTime(table.name()) >= floor) {
+            rows = mergeArchived(table, rows, archivedFilter, from, to, after, size + 1);
+        }
+
+        return page(table, rows, size, mapper);
+    }
+
+    /**
+     * @param rows up to {@code size + 1} rows, newest first; one more than {@code size} means there is a next page
+     */
+    private static <E, T> HistoryPage<T> page(Table<E> table, List<E> rows, int size, Function<E, T> mapper) {
+        boolean hasMore = rows.size() > size;
+        List<E> items = hasMore ? rows.subList(0, size) : rows;
+        String next = hasMore ? table.cursorOf().apply(items.get(items.size() - 1)).encode() : null;
+        return new HistoryPage<>(items.stream().map(mapper).toList(), next);
+    }
+
+    private <E> List<E> mergeArchived(Table<E> table, List<E> rows, java.util.function.Predicate<E> filter,
+                                      Long from, Long to, Cursor after, int limit) {
+        long fromMs = from != null ? from : Long.MIN_VALUE;
+        long toMs = to != null ? to : Long.MAX_VALUE;
+        if (after != null) {
+            // Millisecond bound only prunes segments; the filter applies the exact (time, id) cursor
+            toMs = Math.min(toMs, after.key(table.cursorTime()::applyAsLong) + 1);
+        }
+        try {
+            List<E> archived = archiveStore.read(table.name(), table.type(), fromMs, toMs, filter,
+                    table.newestFirst(), table.timeOf(), table.idOf(), limit);
+            if (archived.isEmpty()) {
+                return rows;
+            }
+            Map<Long, E> merged = new LinkedHashMap<>();
+            rows.forEach(r -> merged.put(table.idOf().applyAsLong(r), r));
+            archived.forEach(r -> merged.putIfAbsent(table.idOf().applyAsLong(r), r));
+            return merged.values().stream().sorted(table.newestFirst()).limit(limit).toList();
+        } catch (IOException e) {
+            log.warn("Could not read {} archive, returning database rows only: {}", table.name(), e.getMessage());
+            return rows;
+        }
+    }
+
+    /**
+     * {@code (ts, id) < (afterTs, afterId)}, spelled out so the optimizer can use a (ts, id) index range.
+     */
+    private static <T extends Comparable<? super T>> Predicate before(CriteriaBuilder cb, Path<T> ts, Path<Long> id,
+                                                                     T afterTs, long afterId) {
+        return cb.or(
+                cb.lessThan(ts, afterTs),
+                cb.and(cb.equal(ts, afterTs), cb.lessThan(id, afterId)));
+    }
+
+    private static <T extends Comparable<? super T>> boolean isBefore(T ts, long id, T afterTs, long afterId) {
+        int cmp = ts.compareTo(afterTs);
+        return cmp < 0 || (cmp == 0 && id < afterId);
+    }
+
+    private static boolean inRange(long ts, Long from, Long to) {
+        return (from == null || ts >= from) && (to == null || ts < to);
+    }
+
+    private static Esp32ImageMeta toMeta(Esp32ImageEntity i) {
+        return new Esp32ImageMeta(i.getId(), i.getDeviceId(), i.getFilename(), i.getContentType(), i.getSize(),
+                i.getReceivedAt(), i.getBlobKey());
+    }
+
+    private static String textOrNull(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+
+    private static int clamp(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    private static LocalDateTime toLocal(long epochMillis) {
+        // classification_logs.timestamp is written with LocalDateTime.now(), i.e. server local time
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * How to page one table: repository, sort property and order, and how to read time/id/cursor off a row.
+     */
+    private record Table<E>(String name, Class<E> type, JpaSpecificationExecutor<E> repository,
+                            String timeProperty, ToLongFunction<E> timeOf, ToLongFunction<E> idOf,
+                            Comparator<E> newestFirst, Function<E, Cursor> cursorOf,
+                            ToLongFunction<String> cursorTime) {
+    }
+
+    /**
+     * Position of the last row of a page: its sort key (as text) and id, encoded as URL-safe base64.
+     */
+    private record Cursor(String key, long id) {
+
+        <T> T key(Function<String, T> parser) {
+            try {
+                return parser.apply(key);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        String encode() {
+            String raw = key + '|' + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (!StringUtils.hasText(cursor)) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.lastIndexOf('|');
+                if (sep <= 0) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new Cursor(raw.substring(0, sep), Long.parseLong(raw.substring(sep + 1)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ArchivedLogTotalsEntity;
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.repository.ArchivedLogTotalsRepository;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * The last {@code app.hotwindow.days} of classification logs and ESP32 events, held in memory column by column so
+ * recent-history queries, filters and aggregates are answered without MySQL.
+ *
+ * Each table is a set of parallel arrays in id order: primitive times (log timestamps as epoch microseconds, the
+ * precision of MySQL's datetime(6); event {@code receivedAt} as stored) and confidences, plus int codes for device,
+ * type, status, event type and trash type, whose few distinct strings ("Hữu cơ", "Vô cơ", ...) are kept once in a
+ * dictionary. The window is loaded from the database at startup and appended by {@link IngestJournal} after each
+ * save; rows that fall out of the window, or past {@code app.hotwindow.max-rows} per table, are dropped from the front.
+ *
+ * A query is answered here only when the window is known to hold every row it could return: its time range starts
+ * inside the window, or it asked for the newest N rows and N were found inside the window. Otherwise the caller
+ * gets {@link Optional#empty()} and asks the database. Per-device log totals (count, confidence sum) are all-time:
+ * loaded at startup from one grouped query plus the rows {@link RetentionService} archived, then kept up to date on
+ * append (archiving moves rows without changing them).
+ */
+@Slf4j
+@Service
+public class HotWindow {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ClassificationLogRepository classificationLogRepository;
+    private final Esp32EventLogRepository esp32EventLogRepository;
+    private final ArchivedLogTotalsRepository archivedLogTotalsRepository;
+    private final TransactionTemplate readTransaction;
+    private final LogColumns logs = new LogColumns();
+    private final EventColumns events = new EventColumns();
+    // Guarded by logs.lock
+    private final Map<String, Totals> totals = new HashMap<>();
+    private boolean totalsLoaded;
+
+    @Value("${app.hotwindow.days:3}")
+    private int days;
+
+    @Value("${app.hotwindow.max-rows:2000000}")
+    private int maxRows;
+
+    @Value("${app.hotwindow.warm-batch:5000}")
+    private int warmBatch;
+
+    public HotWindow(ClassificationLogRepository classificationLogRepository,
+                     Esp32EventLogRepository esp32EventLogRepository,
+                     ArchivedLogTotalsRepository archivedLogTotalsRepository,
+                     PlatformTransactionManager transactionManager,
+                     IngestMetrics ingestMetrics) {
+        this.classificationLogRepository = classificationLogRepository;
+        this.esp32EventLogRepository = esp32EventLogRepository;
+        this.archivedLogTotalsRepository = archivedLogTotalsRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        ingestMetrics.gauge("smarttrash.hotwindow.logs", logs, Columns::rows);
+        ingestMetrics.gauge("smarttrash.hotwindow.events", events, Columns::rows);
+    }
+
+    /**
+     * Runs before {@link IngestJournal} starts applying rows, so nothing saved during the load is missed.
+     */
+    @PostConstruct
+    public void warm() {
+        if (days <= 0) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        LocalDateTime logCutoff = LocalDateTime.now().minusDays(days);
+        long eventCutoff = started - Duration.ofDays(days).toMillis();
+        // Set first so evictions for max-rows during the load can move it forward
+        logs.coveredFrom = micros(logCutoff);
+        events.coveredFrom = eventCutoff;
+        try {
+            warmLogs(logCutoff);
+            reloadTotals();
+        } catch (RuntimeException e) {
+            // Only rows saved from now on are known to be here
+            logs.coveredFrom = Math.max(logs.coveredFrom, micros(LocalDateTime.now()));
+            log.warn("Could not load recent classification logs, history before now stays in the database: {}", e.getMessage());
+        }
+        try {
+            warmEvents(eventCutoff);
+        } catch (RuntimeException e) {
+            events.coveredFrom = Math.max(events.coveredFrom, System.currentTimeMillis());
+            log.warn("Could not load recent events, history before now stays in the database: {}", e.getMessage());
+        }
+        log.info("Hot window holds {} logs and {} events of the last {} days (loaded in {} ms)",
+                logs.rows(), events.rows(), days, System.currentTimeMillis() - started);
+    }
+
+    private void warmLogs(LocalDateTime cutoff) {
+        long afterId = 0;
+        while (true) {
+            long lastId = afterId;
+            Specification<ClassificationLog> page = (root, query, cb) -> cb.and(
+                    cb.greaterThanOrEqualTo(root.get("timestamp"), cutoff),
+                    cb.greaterThan(root.get("id"), lastId));
+            List<ClassificationLog> rows = classificationLogRepository.findBy(page,
+                    q -> q.sortBy(Sort.by("id")).limit(warmBatch).all());
+            rows.forEach(this::append);
+            if (rows.size() < warmBatch) {
+                return;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    private void warmEvents(long cutoff) {
+        long afterId = 0;
+        while (true) {
+            long lastId = afterId;
+            Specification<Esp32EventLog> page = (root, query, cb) -> cb.and(
+                    cb.greaterThanOrEqualTo(root.get("receivedAt"), cutoff),
+                    cb.greaterThan(root.get("id"), lastId));
+            List<Esp32EventLog> rows = esp32EventLogRepository.findBy(page,
+                    q -> q.sortBy(Sort.by("id")).limit(warmBatch).all());
+            rows.forEach(this::append);
+            if (rows.size() < warmBatch) {
+                return;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    private void reloadTotals() {
+        if (days <= 0) {
+            return;
+        }
+        // Appends wait for the query so a row saved meanwhile is neither lost nor counted twice
+        logs.lock.writeLock().lock();
+        try {
+            totals.clear();
+            // One snapshot, so rows archived meanwhile are counted on exactly one side
+            readTransaction.executeWithoutResult(status -> {
+                for (Object[] row : classificationLogRepository.countAndConfidenceSumByDeviceId()) {
+                    Totals deviceTotals = new Totals();
+                    deviceTotals.count = ((Number) row[1]).longValue();
+                    deviceTotals.confidenceSum = row[2] != null ? ((Number) row[2]).doubleValue() : 0.0;
+                    totals.put((String) row[0], deviceTotals);
+                }
+                for (ArchivedLogTotalsEntity archived : archivedLogTotalsRepository.findAll()) {
+                    Totals deviceTotals = totals.computeIfAbsent(archived.getDeviceId(), d -> new Totals());
+                    deviceTotals.count += archived.getCount();
+                    deviceTotals.confidenceSum += archived.getConfidenceSum();
+                }
+            });
+            totalsLoaded = true;
+        } catch (RuntimeException e) {
+            totalsLoaded = false;
+            log.warn("Could not load classification totals, overview counts use the database: {}", e.getMessage());
+        } finally {
+            logs.lock.writeLock().unlock();
+        }
+    }
+
+    public void append(ClassificationLog entry) {
+        if (days <= 0 || entry.getId() == null || entry.getTimestamp() == null) {
+            return;
+        }
+        long time = micros(entry.getTimestamp());
+        logs.lock.writeLock().lock();
+        try {
+            if (entry.getId() <= logs.lastId) {
+                return;
+            }
+            int row = logs.add(entry.getId(), time, entry.getDeviceId());
+            logs.confidences[row] = entry.getConfidence();
+            logs.types[row] = logs.typeDict.encode(entry.getType());
+            logs.statuses[row] = logs.statusDict.encode(entry.getStatus());
+            if (totalsLoaded) {
+                Totals deviceTotals = totals.computeIfAbsent(entry.getDeviceId(), d -> new Totals());
+                deviceTotals.count++;
+                deviceTotals.confidenceSum += entry.getConfidence();
+            }
+            logs.evict(micros(LocalDateTime.now().minusDays(days)), maxRows);
+        } finally {
+            logs.lock.writeLock().unlock();
+        }
+    }
+
+    public void append(Esp32EventLog event) {
+        if (days <= 0 || event.getId() == null || event.getReceivedAt() == null) {
+            return;
+        }
+        events.lock.writeLock().lock();
+        try {
+            if (event.getId() <= events.lastId) {
+                return;
+            }
+            int row = events.add(event.getId(), event.getReceivedAt(), event.getDeviceId());
+            events.eventTypes[row] = events.eventTypeDict.encode(event.getEventType());
+            events.trashTypes[row] = events.trashTypeDict.encode(event.getTrashType());
+            events.filenames[row] = event.getFilename();
+            events.traceIds[row] = event.getTraceId();
+            events.evict(System.currentTimeMillis() - Duration.ofDays(days).toMillis(), maxRows);
+        } finally {
+            events.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Classification logs matching every non-null argument, newest {@code (timestamp, id)} first, strictly below
+     * {@code (afterTs, afterId)} when given; {@code from} inclusive, {@code to} exclusive.
+     *
+     * @return at most {@code limit} rows, or empty when the database may hold rows this result is missing
+     */
+    public Optional<List<ClassificationLog>> logs(String deviceId, LocalDateTime from, LocalDateTime to,
+                                                  String type, String status,
+                                                  LocalDateTime afterTs, Long afterId, int limit) {
+        if (days <= 0) {
+            return Optional.empty();
+        }
+        long fromMicros = from != null ? micros(from) : Long.MIN_VALUE;
+        long toMicros = to != null ? micros(to) : Long.MAX_VALUE;
+        long afterMicros = afterTs != null ? micros(afterTs) : Long.MAX_VALUE;
+        long afterRowId = afterId != null ? afterId : Long.MAX_VALUE;
+        logs.lock.readLock().lock();
+        try {
+            int device = logs.deviceDict.lookup(deviceId);
+            int typeCode = logs.typeDict.lookup(type);
+            int statusCode = logs.statusDict.lookup(status);
+            int[] rows = logs.newest(limit, fromMicros, toMicros, afterMicros, afterRowId,
+                    row -> (deviceId == null || logs.devices[row] == device)
+                            && (type == null || logs.types[row] == typeCode)
+                            && (status == null || logs.statuses[row] == statusCode));
+            if (!logs.complete(rows, limit, fromMicros)) {
+                return Optional.empty();
+            }
+            List<ClassificationLog> result = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                ClassificationLog entry = new ClassificationLog();
+                entry.setId(logs.ids[row]);
+                entry.setDeviceId(logs.deviceDict.decode(logs.devices[row]));
+                entry.setTimestamp(localDateTime(logs.times[row]));
+                entry.setType(logs.typeDict.decode(logs.types[row]));
+                entry.setConfidence(logs.confidences[row]);
+                entry.setStatus(logs.statusDict.decode(logs.statuses[row]));
+                result.add(entry);
+            }
+            return Optional.of(result);
+        } finally {
+            logs.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * ESP32 events matching every non-null argument (and having a filename when {@code withFilename}), newest
+     * {@code (receivedAt, id)} first; same bounds and result as {@link #logs}.
+     */
+    public Optional<List<Esp32EventLog>> events(String deviceId, Long from, Long to, String eventType,
+                                                String trashType, boolean withFilename,
+                                                Long afterTs, Long afterId, int limit) {
+        if (days <= 0) {
+            return Optional.empty();
+        }
+        long fromMs = from != null ? from : Long.MIN_VALUE;
+        events.lock.readLock().lock();
+        try {
+            int device = events.deviceDict.lookup(deviceId);
+            int eventTypeCode = events.eventTypeDict.lookup(eventType);
+            int trashTypeCode = events.trashTypeDict.lookup(trashType);
+            int[] rows = events.newest(limit, fromMs, to != null ? to : Long.MAX_VALUE,
+                    afterTs != null ? afterTs : Long.MAX_VALUE, afterId != null ? afterId : Long.MAX_VALUE,
+                    row -> (deviceId == null || events.devices[row] == device)
+                            && (eventType == null || events.eventTypes[row] == eventTypeCode)
+                            && (trashType == null || events.trashTypes[row] == trashTypeCode)
+                            && (!withFilename || events.filenames[row] != null));
+            if (!events.complete(rows, limit, fromMs)) {
+                return Optional.empty();
+            }
+            List<Esp32EventLog> result = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                Esp32EventLog event = new Esp32EventLog();
+                event.setId(events.ids[row]);
+                event.setDeviceId(events.deviceDict.decode(events.devices[row]));
+                event.setEventType(events.eventTypeDict.decode(events.eventTypes[row]));
+                event.setTrashType(events.trashTypeDict.decode(events.trashTypes[row]));
+                event.setFilename(events.filenames[row]);
+                event.setReceivedAt(events.times[row]);
+                event.setTraceId(events.traceIds[row]);
+                result.add(event);
+            }
+            return Optional.of(result);
+        } finally {
+            events.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of a device's classification logs at or after {@code from}, if the window reaches back that far.
+     */
+    public Optional<Long> countLogs(String deviceId, LocalDateTime from) {
+        long fromMicros = micros(from);
+        if (days <= 0) {
+            return Optional.empty();
+        }
+        logs.lock.readLock().lock();
+        try {
+            if (fromMicros < logs.coveredFrom) {
+                return Optional.empty();
+            }
+            int device = logs.deviceDict.lookup(deviceId);
+            long count = 0;
+            for (int row = logs.head; row < logs.size; row++) {
+                if (logs.devices[row] == device && logs.times[row] >= fromMicros) {
+                    count++;
+                }
+            }
+            return Optional.of(count);
+        } finally {
+            logs.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All-time number of a device's classification logs and their average confidence (null when there are none).
+     */
+    public Optional<LogTotals> totals(String deviceId) {
+        logs.lock.readLock().lock();
+        try {
+            if (days <= 0 || !totalsLoaded) {
+                return Optional.empty();
+            }
+            Totals deviceTotals = totals.get(deviceId);
+            if (deviceTotals == null || deviceTotals.count == 0) {
+                return Optional.of(new LogTotals(0, null));
+            }
+            return Optional.of(new LogTotals(deviceTotals.count, deviceTotals.confidenceSum / deviceTotals.count));
+        } finally {
+            logs.lock.readLock().unlock();
+        }
+    }
+
+    private static long micros(LocalDateTime time) {
+        // classification_logs.timestamp is written with LocalDateTime.now(), i.e. server local time
+        Instant instant = time.atZone(ZoneId.systemDefault()).toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static LocalDateTime localDateTime(long micros) {
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    public record LogTotals(long count, Double averageConfidence) {
+    }
+
+    private static final class Totals {
+        private long count;
+        private double confidenceSum;
+    }
+
+    /**
+     * Distinct strings of one column, coded in order of first appearance; null is a value like any other.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Code of {@code value}, or -1 (which no row has) when it never appeared.
+         */
+        int lookup(String value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+    }
+
+    /**
+     * Row-aligned arrays; live rows are {@code [head, size)}, in append (id) order.
+     */
+    private abstract static class Columns {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final Dictionary deviceDict = new Dictionary();
+        long[] ids = new long[INITIAL_CAPACITY];
+        long[] times = new long[INITIAL_CAPACITY];
+        int[] devices = new int[INITIAL_CAPACITY];
+        int head;
+        int size;
+        long lastId;
+        // Every row of the table with time >= coveredFrom is held here
+        volatile long coveredFrom = Long.MAX_VALUE;
+
+        int rows() {
+            return size - head;
+        }
+
+        int add(long id, long time, String deviceId) {
+            if (size == ids.length) {
+                // Grow, or just slide the live rows down when evictions freed the front half
+                int live = size - head;
+                resize(live * 2 > ids.length ? ids.length * 2 : ids.length);
+            }
+            int row = size++;
+            ids[row] = id;
+            times[row] = time;
+            devices[row] = deviceDict.encode(deviceId);
+            lastId = id;
+            return row;
+        }
+
+        void evict(long cutoff, int maxRows) {
+            while (head < size && (times[head] < cutoff || size - head > maxRows)) {
+                if (times[head] >= cutoff) {
+                    // Dropped for space: the window no longer reaches back to this row
+                    coveredFrom = Math.max(coveredFrom, times[head] + 1);
+                }
+                head++;
+            }
+            coveredFrom = Math.max(coveredFrom, cutoff);
+        }
+
+        /**
+         * Rows with {@code from <= time < to}, below {@code (afterTime, afterId)} and accepted by {@code filter},
+         * newest {@code limit} of them first. Times are only roughly in append order (event times come from the
+         * device), so every live row is scanned.
+         */
+        int[] newest(int limit, long from, long to, long afterTime, long afterId, IntPredicate filter) {
+            PriorityQueue<Integer> oldestFirst = new PriorityQueue<>(limit + 1, (a, b) -> compare(a, b));
+            for (int row = size - 1; row >= head; row--) {
+                long time = times[row];
+                if (time < from || time >= to || time > afterTime || (time == afterTime && ids[row] >= afterId)
+                        || !filter.test(row)) {
+                    continue;
+                }
+                if (oldestFirst.size() < limit) {
+                    oldestFirst.add(row);
+                } else if (compare(row, oldestFirst.peek()) > 0) {
+                    oldestFirst.poll();
+                    oldestFirst.add(row);
+                }
+            }
+            int[] result = new int[oldestFirst.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = oldestFirst.poll();
+            }
+            return result;
+        }
+
+        /**
+         * Whether the database holds no matching row that {@code rows} is missing: the range starts inside the
+         * window, or {@code limit} rows were found and even the oldest of them is inside the window.
+         */
+        boolean complete(int[] rows, int limit, long from) {
+            if (from >= coveredFrom) {
+                return true;
+            }
+            return rows.length == limit && limit > 0 && times[rows[rows.length - 1]] >= coveredFrom;
+        }
+
+        private int compare(int a, int b) {
+            int byTime = Long.compare(times[a], times[b]);
+            return byTime != 0 ? byTime : Long.compare(ids[a], ids[b]);
+        }
+
+        void resize(int capacity) {
+            int live = size - head;
+            ids = Arrays.copyOfRange(ids, head, head + capacity);
+            times = Arrays.copyOfRange(times, head, head + capacity);
+            devices = Arrays.copyOfRange(devices, head, head + capacity);
+            resizeColumns(head, capacity);
+            head = 0;
+            size = live;
+        }
+
+        abstract void resizeColumns(int from, int capacity);
+    }
+
+    private static final class LogColumns extends Columns {
+        final Dictionary typeDict = new Dictionary();
+        final Dictionary statusDict = new Dictionary();
+        double[] confidences = new double[INITIAL_CAPACITY];
+        int[] types = new int[INITIAL_CAPACITY];
+        int[] statuses = new int[INITIAL_CAPACITY];
+
+        @Override
+        void resizeColumns(int from, int capacity) {
+            confidences = Arrays.copyOfRange(confidences, from, from + capacity);
+            types = Arrays.copyOfRange(types, from, from + capacity);
+            statuses = Arrays.copyOfRange(statuses, from, from + capacity);
+        }
+    }
+
+    private static final class EventColumns extends Columns {
+        final Dictionary eventTypeDict = new Dictionary();
+        final Dictionary trashTypeDict = new Dictionary();
+        int[] eventTypes = new int[INITIAL_CAPACITY];
+        int[] trashTypes = new int[INITIAL_CAPACITY];
+        // Filenames and trace ids are unique per row, so they are not dictionary-encoded
+        String[] filenames = new String[INITIAL_CAPACITY];
+        String[] traceIds = new String[INITIAL_CAPACITY];
+
+        @Override
+        void resizeColumns(int from, int capacity) {
+            eventTypes = Arrays.copyOfRange(eventTypes, from, from + capacity);
+            trashTypes = Arrays.copyOfRange(trashTypes, from, from + capacity);
+            filenames = Arrays.copyOfRange(filenames, from, from + capacity);
+            traceIds = Arrays.copyOfRange(traceIds, from, from + capacity);
+        }
+    }
+}
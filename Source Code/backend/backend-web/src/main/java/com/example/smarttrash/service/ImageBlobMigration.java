@@ -0,0 +1,119 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.storage.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-off move of legacy base64 images from the {@code esp32_images.data} LONGTEXT column into the BlobStore.
+ *
+ * Off unless {@code app.blob.migrate-legacy=true}. It then runs in the background on startup: rows are converted
+ * in small batches ({@code blob_key} set, {@code data} cleared); rows whose data does not decode are logged and
+ * left untouched. The column is only dropped with {@code app.blob.drop-legacy-column=true} and once a count finds
+ * no unmigrated row. Hibernate's ddl-auto=update never drops columns, so this is done with plain JDBC.
+ */
+@Slf4j
+@Component
+public class ImageBlobMigration implements ApplicationRunner {
+
+    private static final String UNMIGRATED = "data IS NOT NULL AND (blob_key IS NULL OR blob_key = '')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+
+    @Value("${app.blob.migrate-legacy:false}")
+    private boolean migrateLegacy;
+
+    @Value("${app.blob.drop-legacy-column:false}")
+    private boolean dropLegacyColumn;
+
+    @Value("${app.blob.migration-batch-size:100}")
+    private int batchSize;
+
+    public ImageBlobMigration(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!legacyColumnExists()) {
+            return;
+        }
+        if (!migrateLegacy) {
+            log.warn("esp32_images still has the legacy data column; set app.blob.migrate-legacy=true to move "
+                    + "those images to the blob store (new images need the column to be nullable)");
+            return;
+        }
+        Thread worker = new Thread(this::migrate, "image-blob-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void migrate() {
+        try {
+            // New rows no longer write the column, so it must accept NULL
+            jdbcTemplate.execute("ALTER TABLE esp32_images MODIFY data LONGTEXT NULL");
+
+            long migrated = 0;
+            long skipped = 0;
+            long lastId = 0;
+            while (true) {
+                // Walk by id so rows left behind (undecodable) are not selected again
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        "SELECT id, data FROM esp32_images WHERE " + UNMIGRATED + " AND id > ? ORDER BY id LIMIT ?",
+                        lastId, batchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                for (Map<String, Object> row : rows) {
+                    Number id = (Number) row.get("id");
+                    lastId = id.longValue();
+                    String data = (String) row.get("data");
+                    try {
+                        byte[] bytes = Base64.getMimeDecoder().decode(data);
+                        String key = blobStore.put(bytes);
+                        jdbcTemplate.update("UPDATE esp32_images SET blob_key = ?, data = NULL WHERE id = ?",
+                                key, id.longValue());
+                        migrated++;
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Image {} has invalid base64 data, leaving it in esp32_images.data", id);
+                        skipped++;
+                    }
+                }
+                log.info("Moved {} images to the blob store so far", migrated);
+            }
+            log.info("Image blob migration finished: {} images moved, {} left in place", migrated, skipped);
+
+            if (!dropLegacyColumn) {
+                return;
+            }
+            Long remaining = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM esp32_images WHERE " + UNMIGRATED, Long.class);
+            if (remaining == null || remaining > 0) {
+                log.warn("Keeping esp32_images.data: {} rows are not migrated", remaining);
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE esp32_images DROP COLUMN data");
+            log.info("Dropped esp32_images.data");
+        } catch (Exception e) {
+            log.error("Image blob migration failed, will retry on next start: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean legacyColumnExists() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns "
+                        + "WHERE table_schema = DATABASE() AND table_name = 'esp32_images' AND column_name = 'data'",
+                Integer.class);
+        return count != null && count > 0;
+    }
+}
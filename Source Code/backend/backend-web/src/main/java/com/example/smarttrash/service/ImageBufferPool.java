@@ -0,0 +1,101 @@
+package com.example.smarttrash.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reusable growable byte buffers that incoming images are base64-decoded into, so each frame does not
+ * allocate a fresh multi-megabyte array. At most {@code pool-size} buffers are kept; larger ones are dropped
+ * on release instead of being pinned in the heap.
+ */
+@Service
+public class ImageBufferPool {
+
+    private final BlockingQueue<Buffer> free;
+    private final int initialCapacity;
+    private final int maxImageBytes;
+    private final int maxRetainedBytes;
+
+    public ImageBufferPool(@Value("${app.websocket.image-buffer-pool-size:8}") int poolSize,
+                           @Value("${app.websocket.image-buffer-initial-bytes:262144}") int initialCapacity,
+                           @Value("${app.websocket.max-image-bytes:12582912}") int maxImageBytes) {
+        this.free = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.initialCapacity = initialCapacity;
+        this.maxImageBytes = maxImageBytes;
+        this.maxRetainedBytes = Math.max(initialCapacity, maxImageBytes / 2);
+    }
+
+    public Buffer acquire() {
+        Buffer buffer = free.poll();
+        return buffer != null ? buffer : new Buffer(this, initialCapacity);
+    }
+
+    private void release(Buffer buffer) {
+        if (buffer.bytes.length <= maxRetainedBytes) {
+            buffer.count = 0;
+            free.offer(buffer);
+        }
+    }
+
+    /**
+     * Output stream over a pooled array. Writing past {@code max-image-bytes} fails with an IOException.
+     * Call {@link #release()} once the bytes are no longer needed; the buffer must not be used afterwards.
+     */
+    public static final class Buffer extends OutputStream {
+        private final ImageBufferPool pool;
+        private byte[] bytes;
+        private int count;
+
+        private Buffer(ImageBufferPool pool, int capacity) {
+            this.pool = pool;
+            this.bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        /**
+         * Backing array; only the first {@link #size()} bytes are valid.
+         */
+        public byte[] array() {
+            return bytes;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        public void release() {
+            pool.release(this);
+        }
+
+        private void ensureCapacity(int needed) throws IOException {
+            if (needed > pool.maxImageBytes) {
+                throw new IOException("Image exceeds " + pool.maxImageBytes + " bytes");
+            }
+            if (needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(pool.maxImageBytes, Math.max(needed, 2L * bytes.length)));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.storage.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lazily generated size variants (thumbnails) of stored images.
+ *
+ * Variants are JPEGs stored back into the BlobStore, so they are content-addressed like the originals.
+ * Generation runs on a small bounded pool; concurrent requests for the same variant share one job,
+ * and a full queue is reported to the caller instead of piling up work.
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    private final BlobStore blobStore;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, String> variantKeys;
+
+    @Value("${app.images.variant-timeout-ms:10000}")
+    private long timeoutMs;
+
+    public ImageVariantService(BlobStore blobStore,
+                               @Value("${app.images.variant-threads:2}") int threads,
+                               @Value("${app.images.variant-queue:32}") int queueSize,
+                               @Value("${app.images.variant-cache-size:2048}") int cacheSize) {
+        this.blobStore = blobStore;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread t = new Thread(r, "image-variant-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.variantKeys = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the blob key of {@code sourceKey} scaled to at most {@code width} pixels wide,
+     * generating it if needed. The original key is returned when the image is already small enough.
+     *
+     * @throws RejectedExecutionException when the generation queue is full
+     */
+    public String variantKey(String sourceKey, int width) throws IOException {
+        String cacheKey = sourceKey + ':' + width;
+        String cached = variantKeys.get(cacheKey);
+        if (cached != null && blobStore.contains(cached)) {
+            return cached;
+        }
+
+        CompletableFuture<String> job = inFlight.computeIfAbsent(cacheKey, k -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    future.complete(generate(sourceKey, width));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(k);
+                }
+            });
+            return future;
+        });
+
+        try {
+            String key = job.get(timeoutMs, TimeUnit.MILLISECONDS);
+            variantKeys.put(cacheKey, key);
+            return key;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating image variant", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out generating image variant", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to generate image variant: " + cause.getMessage(), cause);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private String generate(String sourceKey, int width) throws IOException {
+        BufferedImage source;
+        try (InputStream in = blobStore.open(sourceKey)) {
+            source = ImageIO.read(in);
+        }
+        if (source == null) {
+            throw new IOException("Unsupported image format for " + sourceKey);
+        }
+        if (source.getWidth() <= width) {
+            return sourceKey;
+        }
+
+        int height = Math.max(1, (int) Math.round(source.getHeight() * (width / (double) source.getWidth())));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height / 4);
+        ImageIO.write(scaled, "jpg", out);
+        String key = blobStore.put(out.toByteArray());
+        log.debug("Generated {}px variant of {} -> {}", width, sourceKey, key);
+        return key;
+    }
+}
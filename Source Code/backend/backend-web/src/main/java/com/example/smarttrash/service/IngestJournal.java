@@ -0,0 +1,475 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.jfr.RepositorySaveEvent;
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.Esp32ImageEntity;
+import com.example.smarttrash.model.LogEntry;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.repository.Esp32ImageRepository;
+import com.example.smarttrash.storage.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journals ingested rows locally and applies them to MySQL in the background.
+ *
+ * {@code append*} returns once the row is durable in the {@link WriteAheadLog}, so ingest does not wait for
+ * (or fail with) the database. A single applier thread saves the rows in journal order, retrying with backoff
+ * while the database is unavailable, and records its position in a {@code checkpoint} file every
+ * {@code checkpoint-every} rows; on restart it resumes from there. Each row is saved with its journal sequence
+ * number under a unique key, so rows re-applied after a crash between a save and the next checkpoint are
+ * recognised and skipped. A row the database keeps rejecting (constraint violation) for
+ * {@code dead-letter-after-ms}, or a record that cannot be decoded, is written to {@code dead-letter/} in the
+ * journal directory instead of being dropped. When the journal itself cannot be written, rows are handed to the
+ * same applier through a bounded in-memory queue. Live log/event pushes, overview updates and the
+ * {@link HotWindow} append happen after the row is saved.
+ */
+@Slf4j
+@Service
+public class IngestJournal {
+
+    private static final byte TYPE_LOG = 1;
+    private static final byte TYPE_EVENT = 2;
+    private static final byte TYPE_IMAGE = 3;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    private static final int DIRECT_CAPACITY = 1000;
+    private static final long RETRY_INITIAL_MS = 500;
+
+    private final WriteAheadLog journal;
+    private final ClassificationLogRepository classificationLogRepository;
+    private final Esp32EventLogRepository esp32EventLogRepository;
+    private final Esp32ImageRepository esp32ImageRepository;
+    private final LiveStreamService liveStreamService;
+    private final TraceRecorder traceRecorder;
+    private final IngestMetrics ingestMetrics;
+    private final ResponseCache responseCache;
+    private final HotWindow hotWindow;
+    private final ConfidenceSketches confidenceSketches;
+    private final ObjectMapper objectMapper;
+    private final Thread applier;
+    // Rows whose journal append failed; applied by the applier thread between journal records
+    private final BlockingQueue<Direct> direct = new LinkedBlockingQueue<>(DIRECT_CAPACITY);
+
+    @Value("${app.journal.checkpoint-every:100}")
+    private int checkpointEvery;
+
+    @Value("${app.journal.retry-max-ms:30000}")
+    private long retryMaxMs;
+
+    @Value("${app.journal.dead-letter-after-ms:600000}")
+    private long deadLetterAfterMs;
+
+    private volatile boolean running = true;
+    private volatile long appliedSeq;
+    private final AtomicLong appendedSeq = new AtomicLong();
+    // Applier thread only
+    private long retryMs = RETRY_INITIAL_MS;
+    private long rejectedSince;
+
+    public IngestJournal(WriteAheadLog journal,
+                         ClassificationLogRepository classificationLogRepository,
+                         Esp32EventLogRepository esp32EventLogRepository,
+                         Esp32ImageRepository esp32ImageRepository,
+                         LiveStreamService liveStreamService,
+                         TraceRecorder traceRecorder,
+                         IngestMetrics ingestMetrics,
+                         ResponseCache responseCache,
+                         HotWindow hotWindow,
+                         ConfidenceSketches confidenceSketches,
+                         ObjectMapper objectMapper) {
+        this.journal = journal;
+        this.classificationLogRepository = classificationLogRepository;
+        this.esp32EventLogRepository = esp32EventLogRepository;
+        this.esp32ImageRepository = esp32ImageRepository;
+        this.liveStreamService = liveStreamService;
+        this.traceRecorder = traceRecorder;
+        this.ingestMetrics = ingestMetrics;
+        this.responseCache = responseCache;
+        this.hotWindow = hotWindow;
+        this.confidenceSketches = confidenceSketches;
+        this.objectMapper = objectMapper;
+        this.applier = new Thread(this::applyLoop, "journal-applier");
+        applier.setDaemon(true);
+        ingestMetrics.gauge("smarttrash.journal.pending", this, IngestJournal::pending);
+    }
+
+    @PostConstruct
+    public void start() {
+        applier.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        applier.interrupt();
+        applier.join(10_000);
+        if (!direct.isEmpty()) {
+            log.error("{} rows that could not be journaled were not saved before shutdown", direct.size());
+        }
+    }
+
+    public void appendLog(ClassificationLog entry) {
+        append(TYPE_LOG, entry);
+    }
+
+    public void appendEvent(Esp32EventLog event) {
+        append(TYPE_EVENT, event);
+    }
+
+    public void appendImage(Esp32ImageEntity image) {
+        append(TYPE_IMAGE, image);
+    }
+
+    public long appliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * Rows appended since startup that are not applied yet; rows left from before a restart are not counted.
+     */
+    public long pending() {
+        return Math.max(0, appendedSeq.get() - appliedSeq) + direct.size();
+    }
+
+    /**
+     * Hands the row to the applier directly when the journal itself cannot be written (e.g. disk full); such rows
+     * are only in memory until saved. Blocks while {@value #DIRECT_CAPACITY} of them are waiting.
+     */
+    private void append(byte type, Object row) {
+        try {
+            appendedSeq.accumulateAndGet(journal.append(type, objectMapper.writeValueAsBytes(row)), Math::max);
+        } catch (IOException e) {
+            ingestMetrics.failure("journal");
+            log.error("Journal append failed, queueing the {} row for the applier: {}", table(type), e.getMessage());
+            try {
+                direct.put(new Direct(type, row));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                ingestMetrics.persistFailure(table(type), "dropped");
+                log.error("Interrupted while queueing a {} row; it was not saved", table(type));
+            }
+        }
+    }
+
+    private void applyLoop() {
+        WriteAheadLog.Position position = loadCheckpoint();
+        int sinceCheckpoint = 0;
+        while (running) {
+            Direct row = direct.peek();
+            if (row != null) {
+                if (process(row.type(), null, row.row(), null)) {
+                    direct.poll();
+                }
+                continue;
+            }
+
+            Optional<WriteAheadLog.Entry> next;
+            try {
+                next = journal.read(position);
+            } catch (IOException e) {
+                WriteAheadLog.Position skipTo = journal.skipSegment(position).orElse(null);
+                log.error("Unreadable journal record at {} ({}); skipping to {}", position, e.getMessage(), skipTo);
+                if (skipTo == null) {
+                    sleep(retryMaxMs);
+                    continue;
+                }
+                position = skipTo;
+                continue;
+            }
+
+            if (next.isEmpty()) {
+                if (sinceCheckpoint > 0) {
+                    saveCheckpoint(position);
+                    sinceCheckpoint = 0;
+                }
+                try {
+                    journal.awaitData(position, 1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+
+            WriteAheadLog.Entry entry = next.get();
+            boolean done;
+            try {
+                done = process(entry.type(), entry.seq(), decode(entry), entry.payload());
+            } catch (IOException e) {
+                // Retrying cannot fix this one
+                done = deadLetter(entry.type(), entry.seq(), entry.payload(), e);
+            }
+            if (!done) {
+                continue;
+            }
+            position = entry.next();
+            appliedSeq = entry.seq();
+            if (++sinceCheckpoint >= checkpointEvery) {
+                saveCheckpoint(position);
+                sinceCheckpoint = 0;
+            }
+        }
+        if (sinceCheckpoint > 0) {
+            saveCheckpoint(position);
+        }
+    }
+
+    /**
+     * Applies one row; on failure sleeps with backoff and returns false so the caller tries it again.
+     *
+     * @param seq     journal sequence number, null for a row that was not journaled
+     * @param payload the journal record, null for a row that was not journaled
+     * @return true once the row is saved, was saved before, or is dead-lettered
+     */
+    private boolean process(byte type, Long seq, Object row, byte[] payload) {
+        try {
+            apply(type, row, seq, payload != null ? payload.length : 0);
+        } catch (DataIntegrityViolationException e) {
+            return rejected(type, seq, row, payload, e);
+        } catch (RuntimeException e) {
+            return retry(type, seq, e);
+        }
+        retryMs = RETRY_INITIAL_MS;
+        rejectedSince = 0;
+        return true;
+    }
+
+    /**
+     * A constraint violation is either the row's own journal seq (saved before a crash, after the last checkpoint),
+     * or a row the schema does not accept yet (e.g. before a migration ran): retried for a while, then dead-lettered.
+     */
+    private boolean rejected(byte type, Long seq, Object row, byte[] payload, DataIntegrityViolationException e) {
+        try {
+            if (seq != null && savedBefore(type, seq)) {
+                log.info("Journal record {} was saved before the restart, skipping", seq);
+                retryMs = RETRY_INITIAL_MS;
+                rejectedSince = 0;
+                return true;
+            }
+        } catch (RuntimeException lookup) {
+            return retry(type, seq, lookup);
+        }
+        long now = System.currentTimeMillis();
+        if (rejectedSince == 0) {
+            rejectedSince = now;
+        }
+        if (now - rejectedSince < deadLetterAfterMs) {
+            return retry(type, seq, e);
+        }
+        byte[] record = payload;
+        if (record == null) {
+            try {
+                record = objectMapper.writeValueAsBytes(row);
+            } catch (IOException encode) {
+                ingestMetrics.persistFailure(table(type), "dropped");
+                log.error("Rejected {} row cannot be serialized for the dead-letter directory; dropped: {}",
+                        table(type), encode.getMessage());
+                rejectedSince = 0;
+                return true;
+            }
+        }
+        return deadLetter(type, seq, record, e);
+    }
+
+    private boolean savedBefore(byte type, long seq) {
+        return switch (type) {
+            case TYPE_LOG -> classificationLogRepository.existsByJournalSeq(seq);
+            case TYPE_EVENT -> esp32EventLogRepository.existsByJournalSeq(seq);
+            case TYPE_IMAGE -> esp32ImageRepository.existsByJournalSeq(seq);
+            default -> false;
+        };
+    }
+
+    private boolean retry(byte type, Long seq, RuntimeException e) {
+        ingestMetrics.persistFailure(table(type), "retried");
+        log.warn("Applying {} {} failed, retrying in {} ms: {}", table(type), seq != null ? "journal record " + seq : "row",
+                retryMs, e.getMessage());
+        sleep(retryMs);
+        retryMs = Math.min(retryMaxMs, retryMs * 2);
+        return false;
+    }
+
+    /**
+     * Keeps the record as {@code dead-letter/<seq>-<table>.json} (the row's JSON, as journaled) for inspection
+     * and manual replay; re-applying the same record overwrites its file.
+     */
+    private boolean deadLetter(byte type, Long seq, byte[] record, Exception cause) {
+        Path file = journal.directory().resolve(DEAD_LETTER_DIR)
+                .resolve((seq != null ? seq.toString() : "direct-" + System.currentTimeMillis()) + "-" + table(type) + ".json");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, record, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            log.error("Failed to write dead-letter file {}, retrying in {} ms: {}", file, retryMs, e.getMessage());
+            sleep(retryMs);
+            retryMs = Math.min(retryMaxMs, retryMs * 2);
+            return false;
+        }
+        ingestMetrics.persistFailure(table(type), "dead-lettered");
+        log.error("Moved {} to {}: {}", seq != null ? "journal record " + seq : "a " + table(type) + " row", file,
+                cause.getMessage());
+        retryMs = RETRY_INITIAL_MS;
+        rejectedSince = 0;
+        return true;
+    }
+
+    private Object decode(WriteAheadLog.Entry entry) throws IOException {
+        return switch (entry.type()) {
+            case TYPE_LOG -> objectMapper.readValue(entry.payload(), ClassificationLog.class);
+            case TYPE_EVENT -> objectMapper.readValue(entry.payload(), Esp32EventLog.class);
+            case TYPE_IMAGE -> objectMapper.readValue(entry.payload(), Esp32ImageEntity.class);
+            default -> throw new IOException("Unknown journal record type " + entry.type());
+        };
+    }
+
+    private static String table(byte type) {
+        return switch (type) {
+            case TYPE_LOG -> "classification_logs";
+            case TYPE_EVENT -> "esp32_event_logs";
+            case TYPE_IMAGE -> "esp32_images";
+            default -> "unknown";
+        };
+    }
+
+    /**
+     * @param seq         journal sequence number stored with the row, null when it was not journaled
+     * @param recordBytes size of the journal record, for the JFR event
+     */
+    private void apply(byte type, Object row, Long seq, int recordBytes) {
+        RepositorySaveEvent saveEvent = new RepositorySaveEvent();
+        saveEvent.begin();
+        long start = System.nanoTime();
+        switch (type) {
+            case TYPE_LOG -> {
+                ClassificationLog entry = (ClassificationLog) row;
+                entry.setJournalSeq(seq);
+                classificationLogRepository.save(entry);
+                saved(type, start, entry.getDeviceId(), recordBytes, saveEvent);
+                afterSave("hot window", seq, () -> hotWindow.append(entry));
+                afterSave("confidence sketch", seq, () -> confidenceSketches.record(entry));
+                afterSave("trace", seq, () -> traceRecorder.stage(entry.getTraceId(), "backend.persisted"));
+                afterSave("live stream", seq, () -> {
+                    liveStreamService.publish(LiveStreamService.EVENT_LOG, entry.getDeviceId(), new LogEntry(
+                            entry.getTimestamp(), entry.getType(), entry.getConfidence(), entry.getStatus()));
+                    liveStreamService.markOverviewDirty(entry.getDeviceId());
+                });
+                afterSave("response cache", seq, () -> responseCache.invalidate(entry.getDeviceId()));
+            }
+            case TYPE_EVENT -> {
+                Esp32EventLog event = (Esp32EventLog) row;
+                // Kiểm tra xem đã log event này chưa (để tránh duplicate)
+                if ("IMAGE".equals(event.getEventType()) && event.getFilename() != null
+                        && esp32EventLogRepository.existsByDeviceIdAndEventTypeAndFilenameAndReceivedAt(
+                        event.getDeviceId(), event.getEventType(), event.getFilename(), event.getReceivedAt())) {
+                    log.debug("Skipping duplicate IMAGE event for filename: {} at {}", event.getFilename(), event.getReceivedAt());
+                    return;
+                }
+                event.setJournalSeq(seq);
+                esp32EventLogRepository.save(event);
+                saved(type, start, event.getDeviceId(), recordBytes, saveEvent);
+                afterSave("hot window", seq, () -> hotWindow.append(event));
+                afterSave("response cache", seq, () -> responseCache.invalidate(event.getDeviceId()));
+                afterSave("trace", seq, () -> traceRecorder.stage(event.getTraceId(), "backend.persisted"));
+                if (event.getFilename() != null) {
+                    // Dashboard history only lists events with a filename (see /api/events)
+                    afterSave("live stream", seq, () ->
+                            liveStreamService.publish(LiveStreamService.EVENT_EVENT, event.getDeviceId(), event));
+                }
+            }
+            case TYPE_IMAGE -> {
+                Esp32ImageEntity image = (Esp32ImageEntity) row;
+                image.setJournalSeq(seq);
+                esp32ImageRepository.save(image);
+                saved(type, start, image.getDeviceId(), recordBytes, saveEvent);
+                log.info("Stored ESP32 image: {}", image.getFilename());
+            }
+            default -> throw new IllegalArgumentException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Runs one in-memory step that follows a committed save. Each step fails on its own: the row is in the
+     * database, so throwing here would only send it back through {@link #process}, where the unique
+     * {@code journal_seq} marks it done and every later step would be skipped too.
+     */
+    private void afterSave(String step, Long seq, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.warn("Journal record {} saved but the {} update failed: {}", seq, step, e.getMessage(), e);
+        }
+    }
+
+    private void saved(byte type, long start, String deviceId, int recordBytes, RepositorySaveEvent event) {
+        ingestMetrics.saved(table(type), start);
+        if (event.shouldCommit()) {
+            event.table = table(type);
+            event.deviceId = deviceId;
+            event.recordBytes = recordBytes;
+            event.commit();
+        }
+    }
+
+    private WriteAheadLog.Position loadCheckpoint() {
+        Path file = journal.directory().resolve(CHECKPOINT_FILE);
+        if (Files.exists(file)) {
+            try {
+                String[] parts = Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+                WriteAheadLog.Position position = new WriteAheadLog.Position(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                appliedSeq = Long.parseLong(parts[2]);
+                log.info("Resuming journal apply at {} (applied up to seq {})", position, appliedSeq);
+                return position;
+            } catch (IOException | RuntimeException e) {
+                log.error("Unreadable journal checkpoint, re-applying the whole journal: {}", e.getMessage());
+            }
+        }
+        // Segments are named after their first seq
+        appliedSeq = journal.start().segment() - 1;
+        return journal.start();
+    }
+
+    private void saveCheckpoint(WriteAheadLog.Position position) {
+        Path file = journal.directory().resolve(CHECKPOINT_FILE);
+        Path tmp = journal.directory().resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.writeString(tmp, position.segment() + " " + position.offset() + " " + appliedSeq + "\n",
+                    StandardCharsets.US_ASCII);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.deleteBefore(position);
+        } catch (IOException e) {
+            log.warn("Failed to write journal checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private record Direct(byte type, Object row) {
+    }
+}
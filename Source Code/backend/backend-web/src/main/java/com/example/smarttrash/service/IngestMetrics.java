@@ -0,0 +1,127 @@
+package com.example.smarttrash.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the ingest path, published on {@code /actuator/metrics} and {@code /actuator/prometheus}.
+ *
+ * <ul>
+ *   <li>{@code smarttrash.ingest.messages} (type, device): relay messages handed to the pipeline</li>
+ *   <li>{@code smarttrash.ingest.handling} (type, device): time to handle one message</li>
+ *   <li>{@code smarttrash.ingest.lag} (type, device): relay {@code receivedAt} to handled; alert on this</li>
+ *   <li>{@code smarttrash.ingest.failures} (stage): messages or rows lost to an exception</li>
+ *   <li>{@code smarttrash.ingest.image.correlation} (result, device): images matched to a rotation or not</li>
+ *   <li>{@code smarttrash.persist.save} (table): repository save latency in the journal applier</li>
+ *   <li>{@code smarttrash.persist.failures} (table, outcome): journal rows retried, dead-lettered or dropped</li>
+ *   <li>{@code smarttrash.live.update} / {@code smarttrash.dashboard.overview} (device)</li>
+ *   <li>gauges registered by {@link IngestPipeline}, {@link IngestJournal}, {@link RelayConnectionManager} and {@link HotWindow}</li>
+ * </ul>
+ * Timers publish percentile histograms. Device ids come from the messages, so only the first
+ * {@code app.metrics.max-devices} get their own tag value; the rest are tagged {@code other}.
+ */
+@Component
+public class IngestMetrics {
+
+    private final MeterRegistry registry;
+    private final int maxDevices;
+    private final Set<String> taggedDevices = ConcurrentHashMap.newKeySet();
+
+    public IngestMetrics(MeterRegistry registry, @Value("${app.metrics.max-devices:100}") int maxDevices) {
+        this.registry = registry;
+        this.maxDevices = maxDevices;
+    }
+
+    public void message(String type, String deviceId) {
+        Counter.builder("smarttrash.ingest.messages")
+                .tag("type", type)
+                .tag("device", deviceTag(deviceId))
+                .register(registry)
+                .increment();
+    }
+
+    public void handled(String type, String deviceId, long startNanos) {
+        timer("smarttrash.ingest.handling", "type", type, deviceId).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param receivedAtMillis when the relay received the message; ignored when missing
+     */
+    public void lag(String type, String deviceId, Long receivedAtMillis) {
+        if (receivedAtMillis != null && receivedAtMillis > 0) {
+            long lagMs = Math.max(0, System.currentTimeMillis() - receivedAtMillis);
+            timer("smarttrash.ingest.lag", "type", type, deviceId).record(lagMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void failure(String stage) {
+        Counter.builder("smarttrash.ingest.failures").tag("stage", stage).register(registry).increment();
+    }
+
+    public void correlation(String deviceId, boolean matched) {
+        Counter.builder("smarttrash.ingest.image.correlation")
+                .tag("result", matched ? "hit" : "miss")
+                .tag("device", deviceTag(deviceId))
+                .register(registry)
+                .increment();
+    }
+
+    public void saved(String table, long startNanos) {
+        Timer.builder("smarttrash.persist.save")
+                .tag("table", table)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void persistFailure(String table, String outcome) {
+        Counter.builder("smarttrash.persist.failures")
+                .tag("table", table)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public Timer deviceTimer(String name, String deviceId) {
+        return Timer.builder(name)
+                .tag("device", deviceTag(deviceId))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public <T> void gauge(String name, T obj, ToDoubleFunction<T> value) {
+        Gauge.builder(name, obj, value).register(registry);
+    }
+
+    public void bind(MeterBinder binder) {
+        binder.bindTo(registry);
+    }
+
+    private Timer timer(String name, String tag, String value, String deviceId) {
+        return Timer.builder(name)
+                .tag(tag, value)
+                .tag("device", deviceTag(deviceId))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private String deviceTag(String deviceId) {
+        if (taggedDevices.contains(deviceId)) {
+            return deviceId;
+        }
+        if (taggedDevices.size() < maxDevices && taggedDevices.add(deviceId)) {
+            return deviceId;
+        }
+        return taggedDevices.contains(deviceId) ? deviceId : "other";
+    }
+}
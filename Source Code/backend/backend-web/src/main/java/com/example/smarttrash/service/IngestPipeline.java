@@ -0,0 +1,97 @@
+package com.example.smarttrash.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared processing stage behind all relay connections.
+ *
+ * Work is striped over single-threaded executors by device id, so messages of one device are handled in
+ * arrival order while different devices run in parallel. Queues are bounded and a full queue blocks the
+ * submitter, which pushes back through the relay connection's lane to its socket instead of dropping messages.
+ */
+@Slf4j
+@Service
+public class IngestPipeline {
+
+    private final ThreadPoolExecutor[] stripes;
+
+    public IngestPipeline(@Value("${app.ingest.stripes:0}") int stripes,
+                          @Value("${app.ingest.queue-capacity:1024}") int queueCapacity,
+                          IngestMetrics ingestMetrics) {
+        int count = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.stripes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = orderedExecutor("ingest-" + i, queueCapacity);
+        }
+        ingestMetrics.gauge("smarttrash.ingest.queued", this, IngestPipeline::queued);
+    }
+
+    /**
+     * Runs {@code task} after every task previously submitted for the same device. Blocks while that stripe is full.
+     */
+    public void submit(String deviceId, Runnable task) {
+        stripes[Math.floorMod(deviceId.hashCode(), stripes.length)].execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Failed to process message for device {}: {}", deviceId, e.getMessage(), e);
+            }
+        });
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Lets queued messages finish so nothing received is lost on a normal shutdown.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Ingest stripe did not drain in time, {} messages dropped", stripe.shutdownNow().size());
+            }
+        }
+    }
+
+    /**
+     * Single thread, bounded FIFO; when full, {@code execute} waits for space so submission order is kept.
+     */
+    static ThreadPoolExecutor orderedExecutor(String threadName, int queueCapacity) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        }, (r, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(threadName + " is shut down");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for " + threadName, e);
+            }
+        });
+    }
+}
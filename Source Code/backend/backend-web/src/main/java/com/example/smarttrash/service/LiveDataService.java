@@ -2,32 +2,85 @@ package com.example.smarttrash.service;
 
 import com.example.smarttrash.model.LiveEsp32Data;
 import com.example.smarttrash.model.LiveEsp32Image;
+import com.example.smarttrash.model.LiveImageRef;
 import com.example.smarttrash.model.LiveSnapshot;
+import com.example.smarttrash.model.LiveSnapshotView;
+import com.example.smarttrash.model.VersionedLiveSnapshot;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Latest live snapshot of every device, kept in a concurrent map so each device is read and updated
+ * independently with one hash lookup.
+ */
 @Service
 public class LiveDataService {
 
-    private final AtomicReference<LiveSnapshot> snapshotRef =
-            new AtomicReference<>(new LiveSnapshot(null, null, 0, "unknown", null, "unknown", null));
+    public static final String PART_IMAGE = "image";
+    public static final String PART_DATA = "data";
+    public static final String PART_STATE = "state";
 
-    public LiveSnapshot getSnapshot() {
-        return snapshotRef.get();
+    // Versions start at the process start time (ms * 1000), so a client holding a version from before a restart is
+    // always behind the new counter and gets every part again instead of a 304; stays below 2^53 for JS clients
+    private static final long FIRST_VERSION = System.currentTimeMillis() * 1000;
+
+    private static final VersionedLiveSnapshot EMPTY = new VersionedLiveSnapshot(
+            new LiveSnapshot(null, null, 0, "unknown", null, "unknown", null),
+            FIRST_VERSION, FIRST_VERSION, FIRST_VERSION, FIRST_VERSION);
+
+    private final Map<String, AtomicReference<VersionedLiveSnapshot>> snapshots = new ConcurrentHashMap<>();
+    private final LiveStreamService liveStreamService;
+    private final IngestMetrics ingestMetrics;
+
+    public LiveDataService(LiveStreamService liveStreamService, IngestMetrics ingestMetrics) {
+        this.liveStreamService = liveStreamService;
+        this.ingestMetrics = ingestMetrics;
+    }
+
+    public LiveSnapshot getSnapshot(String deviceId) {
+        return getVersionedSnapshot(deviceId).snapshot();
+    }
+
+    public VersionedLiveSnapshot getVersionedSnapshot(String deviceId) {
+        // Reads never create an entry, so unknown ids in URLs do not grow the map
+        AtomicReference<VersionedLiveSnapshot> ref = snapshots.get(deviceId);
+        return ref != null ? ref.get() : EMPTY;
     }
 
-    public void updateFromSocket(JsonNode root) {
+    public Set<String> deviceIds() {
+        return snapshots.keySet();
+    }
+
+    /**
+     * @param imageData decoded bytes of {@code latestEsp32Image}; only copied when the image is new
+     */
+    public void updateFromSocket(String deviceId, JsonNode root, ImageBufferPool.Buffer imageData) {
+        long start = System.nanoTime();
         LiveEsp32Image image = null;
         if (root.hasNonNull("latestEsp32Image")) {
             JsonNode img = root.get("latestEsp32Image");
+            String filename = text(img, "filename");
+            Long receivedAt = longVal(img, "receivedAt");
+            LiveEsp32Image previous = getSnapshot(deviceId).latestEsp32Image();
+            byte[] data = previous != null && Objects.equals(previous.filename(), filename)
+                    && Objects.equals(previous.receivedAt(), receivedAt)
+                    ? previous.data()
+                    : imageData != null ? imageData.toByteArray() : null;
             image = new LiveEsp32Image(
-                    text(img, "filename"),
+                    filename,
                     intVal(img, "size"),
-                    longVal(img, "receivedAt"),
+                    receivedAt,
                     text(img, "contentType"),
-                    text(img, "data")
+                    data
             );
         }
 
@@ -48,19 +101,21 @@ public class LiveDataService {
         Long timestamp = longVal(root, "timestamp");
         String trashType = text(root, "trashType");
 
-        snapshotRef.set(new LiveSnapshot(
+        publish(deviceId, new LiveSnapshot(
                 image,
                 data,
                 activeConnections != null ? activeConnections : 0,
                 status != null ? status : "unknown",
                 timestamp,
-                trashType != null ? trashType : currentTrashType(),
+                trashType != null ? trashType : currentTrashType(deviceId),
                 binType
         ));
+        ingestMetrics.deviceTimer("smarttrash.live.update", deviceId).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    public void updateTrashType(String trashType) {
-        snapshotRef.getAndUpdate(prev -> new LiveSnapshot(
+    public void updateTrashType(String deviceId, String trashType) {
+        LiveSnapshot prev = getSnapshot(deviceId);
+        publish(deviceId, new LiveSnapshot(
                 prev.latestEsp32Image(),
                 prev.latestEsp32Data(),
                 prev.activeConnections(),
@@ -71,8 +126,87 @@ public class LiveDataService {
         ));
     }
 
-    public String currentTrashType() {
-        return snapshotRef.get().trashType();
+    public String currentTrashType(String deviceId) {
+        return getSnapshot(deviceId).trashType();
+    }
+
+    /**
+     * Slim view of a snapshot; with {@code since} set only the parts changed after that version are filled.
+     */
+    public LiveSnapshotView view(String deviceId, VersionedLiveSnapshot current, Long since) {
+        LiveSnapshot s = current.snapshot();
+        boolean delta = since != null;
+        boolean imageChanged = !delta || current.imageVersion() > since;
+        boolean dataChanged = !delta || current.dataVersion() > since;
+        boolean stateChanged = !delta || current.stateVersion() > since;
+
+        List<String> changed = null;
+        if (delta) {
+            changed = new ArrayList<>(3);
+            if (imageChanged) changed.add(PART_IMAGE);
+            if (dataChanged) changed.add(PART_DATA);
+            if (stateChanged) changed.add(PART_STATE);
+        }
+
+        return new LiveSnapshotView(
+                deviceId,
+                current.version(),
+                since,
+                changed,
+                imageChanged ? imageRef(deviceId, current) : null,
+                dataChanged ? s.latestEsp32Data() : null,
+                stateChanged ? s.activeConnections() : null,
+                stateChanged ? s.status() : null,
+                stateChanged ? s.timestamp() : null,
+                stateChanged ? s.trashType() : null,
+                stateChanged ? s.binType() : null
+        );
+    }
+
+    private LiveImageRef imageRef(String deviceId, VersionedLiveSnapshot current) {
+        LiveEsp32Image image = current.snapshot().latestEsp32Image();
+        if (image == null) {
+            return null;
+        }
+        String id = String.valueOf(current.imageVersion());
+        return new LiveImageRef(id, image.filename(), image.size(), image.receivedAt(), image.contentType(),
+                "/api/devices/" + deviceId + "/live/images/" + id);
+    }
+
+    private void publish(String deviceId, LiveSnapshot next) {
+        AtomicReference<VersionedLiveSnapshot> ref = snapshots.computeIfAbsent(deviceId, id -> new AtomicReference<>(EMPTY));
+        VersionedLiveSnapshot updated = ref.updateAndGet(prev -> {
+            LiveSnapshot p = prev.snapshot();
+            boolean imageChanged = !sameImage(p.latestEsp32Image(), next.latestEsp32Image());
+            boolean dataChanged = !Objects.equals(p.latestEsp32Data(), next.latestEsp32Data());
+            boolean stateChanged = !Objects.equals(p.activeConnections(), next.activeConnections())
+                    || !Objects.equals(p.status(), next.status())
+                    || !Objects.equals(p.timestamp(), next.timestamp())
+                    || !Objects.equals(p.trashType(), next.trashType())
+                    || !Objects.equals(p.binType(), next.binType());
+            if (!imageChanged && !dataChanged && !stateChanged) {
+                return prev;
+            }
+            long version = prev.version() + 1;
+            return new VersionedLiveSnapshot(
+                    next,
+                    version,
+                    imageChanged ? version : prev.imageVersion(),
+                    dataChanged ? version : prev.dataVersion(),
+                    stateChanged ? version : prev.stateVersion()
+            );
+        });
+        if (updated.snapshot() == next) {
+            liveStreamService.publish(LiveStreamService.EVENT_SNAPSHOT, deviceId, () -> view(deviceId, updated, null));
+        }
+    }
+
+    private boolean sameImage(LiveEsp32Image a, LiveEsp32Image b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        // The base64 payload is not compared; filename + receivedAt identify a frame
+        return Objects.equals(a.filename(), b.filename()) && Objects.equals(a.receivedAt(), b.receivedAt());
     }
 
     private String text(JsonNode node, String field) {
@@ -87,4 +221,3 @@ public class LiveDataService {
         return node.hasNonNull(field) ? node.get(field).asLong() : null;
     }
 }
-
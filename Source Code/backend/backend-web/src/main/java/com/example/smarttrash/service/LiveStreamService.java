@@ -0,0 +1,334 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.Alert;
+import com.example.smarttrash.model.TokensRevoked;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pushes live snapshots, new logs, alerts and overview updates to dashboard browsers over Server-Sent Events.
+ *
+ * Each event is serialized once into a complete SSE frame and shared by all subscribers.
+ * Every subscriber has a small bounded queue drained by a shared sender pool; when a slow client
+ * falls behind, superseded state events (snapshot/overview) are replaced in place and other events
+ * drop the oldest entry. A client that keeps overflowing is disconnected so it can reconnect fresh.
+ * Device-specific frames only go to subscribers of that device; frames without a device go to everyone.
+ */
+@Slf4j
+@Service
+public class LiveStreamService {
+
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    public static final String EVENT_OVERVIEW = "overview";
+    public static final String EVENT_LOG = "log";
+    public static final String EVENT_EVENT = "event";
+    public static final String EVENT_ALERT = "alert";
+
+    // Same media type SseEmitter uses for its own frames; the response itself is text/event-stream
+    private static final MediaType SSE_FRAME = new MediaType("text", "plain", StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final DashboardService dashboardService;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senderPool;
+    private final AtomicLong eventIds = new AtomicLong();
+    private final Set<String> overviewDirty = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.stream.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${app.stream.max-dropped-events:256}")
+    private int maxDroppedEvents;
+
+    public LiveStreamService(ObjectMapper objectMapper,
+                             DashboardService dashboardService,
+                             @Value("${app.stream.sender-threads:4}") int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.dashboardService = dashboardService;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.senderPool = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "live-stream-sender-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Registers a new browser subscription of {@code username} to the events of {@code deviceId} and queues
+     * {@code initialEvents} for it only.
+     */
+    public SseEmitter subscribe(String deviceId, String username, Iterable<Frame> initialEvents) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter, deviceId, username);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        for (Frame frame : initialEvents) {
+            subscriber.offer(frame);
+        }
+        log.debug("Live stream subscriber added ({} active)", subscribers.size());
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * Serializes {@code payload} once and fans it out to every subscriber of {@code deviceId}.
+     */
+    public void publish(String eventName, String deviceId, Object payload) {
+        if (!hasSubscribers(deviceId)) {
+            return;
+        }
+        Frame frame = encode(eventName, deviceId, payload);
+        if (frame == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    /**
+     * Same as {@link #publish} but only computes the payload when someone is listening.
+     */
+    public void publish(String eventName, String deviceId, Supplier<?> payload) {
+        if (hasSubscribers(deviceId)) {
+            publish(eventName, deviceId, payload.get());
+        }
+    }
+
+    /**
+     * Marks the overview of {@code deviceId} as stale; it is recomputed at most once per tick by {@link #flushOverview}.
+     */
+    public void markOverviewDirty(String deviceId) {
+        overviewDirty.add(deviceId);
+    }
+
+    /**
+     * Pushes an {@link AlertEngine} state change; the overview carries the alert count, so it is refreshed too.
+     */
+    @EventListener
+    public void onAlert(Alert alert) {
+        publish(EVENT_ALERT, alert.deviceId(), alert);
+        markOverviewDirty(alert.deviceId());
+    }
+
+    /**
+     * The stream was opened with a token that has just been revoked (logout, password or role change).
+     */
+    @EventListener
+    public void onTokensRevoked(TokensRevoked revoked) {
+        for (Subscriber subscriber : subscribers) {
+            if (revoked.username().equals(subscriber.username)) {
+                subscriber.close();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.stream.overview-interval-ms:1000}")
+    public void flushOverview() {
+        for (Iterator<String> it = overviewDirty.iterator(); it.hasNext(); ) {
+            String deviceId = it.next();
+            it.remove();
+            if (!hasSubscribers(deviceId)) {
+                continue;
+            }
+            try {
+                publish(EVENT_OVERVIEW, deviceId, dashboardService.getOverview(deviceId));
+            } catch (Exception e) {
+                log.warn("Failed to publish overview update for {}: {}", deviceId, e.getMessage());
+            }
+        }
+    }
+
+    public Frame encode(String eventName, Object payload) {
+        return encode(eventName, null, payload);
+    }
+
+    public Frame encode(String eventName, String deviceId, Object payload) {
+        try {
+            String json = objectMapper.writeValueAsString(payload);
+            long id = eventIds.incrementAndGet();
+            StringBuilder sb = new StringBuilder(json.length() + eventName.length() + 32);
+            sb.append("id:").append(id).append('\n');
+            sb.append("event:").append(eventName).append('\n');
+            sb.append("data:").append(json).append("\n\n");
+            return new Frame(eventName, deviceId, Set.of(new ResponseBodyEmitter.DataWithMediaType(sb.toString(), SSE_FRAME)));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode live stream event {}: {}", eventName, e.getMessage());
+            return null;
+        }
+    }
+
+    @Scheduled(fixedRate = 15_000)
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // SSE comment line; keeps proxies from closing idle connections and detects dead clients
+        Frame ping = new Frame("ping", null, Set.of(new ResponseBodyEmitter.DataWithMediaType(":ping\n\n", SSE_FRAME)));
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(ping);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        senderPool.shutdownNow();
+    }
+
+    private boolean hasSubscribers(String deviceId) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.accepts(deviceId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pre-encoded SSE frame shared between all subscribers; {@code deviceId} is null for device-independent frames.
+     */
+    public record Frame(String eventName, String deviceId, Set<ResponseBodyEmitter.DataWithMediaType> data) {
+
+        boolean supersedes(Frame other) {
+            return eventName.equals(other.eventName) && Objects.equals(deviceId, other.deviceId)
+                    && (EVENT_SNAPSHOT.equals(eventName) || EVENT_OVERVIEW.equals(eventName) || "ping".equals(eventName));
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final String deviceId;
+        private final String username;
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private int dropped;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, String deviceId, String username) {
+            this.emitter = emitter;
+            this.deviceId = deviceId;
+            this.username = username;
+        }
+
+        boolean accepts(String frameDeviceId) {
+            return frameDeviceId == null || frameDeviceId.equals(deviceId);
+        }
+
+        void offer(Frame frame) {
+            if (closed || !accepts(frame.deviceId())) {
+                return;
+            }
+            synchronized (queue) {
+                if (!replaceSuperseded(frame)) {
+                    if (queue.size() >= queueCapacity) {
+                        queue.pollFirst();
+                        if (++dropped > maxDroppedEvents) {
+                            log.info("Disconnecting slow live stream subscriber after {} dropped events", dropped);
+                            close();
+                            return;
+                        }
+                    }
+                    queue.addLast(frame);
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                senderPool.execute(this::drain);
+            }
+        }
+
+        private boolean replaceSuperseded(Frame frame) {
+            Iterator<Frame> it = queue.iterator();
+            while (it.hasNext()) {
+                if (frame.supersedes(it.next())) {
+                    it.remove();
+                    queue.addLast(frame);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void drain() {
+            boolean idle = false;
+            try {
+                while (!closed) {
+                    Frame next;
+                    synchronized (queue) {
+                        next = queue.pollFirst();
+                        if (next == null) {
+                            // Caught up: only consecutive overflow counts towards max-dropped-events
+                            dropped = 0;
+                            draining.set(false);
+                            idle = true;
+                            return;
+                        }
+                    }
+                    try {
+                        emitter.send(next.data());
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Live stream subscriber gone: {}", e.getMessage());
+                        close();
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to send {} frame to a live stream subscriber, skipping it: {}",
+                                next.eventName(), e.getMessage());
+                    }
+                }
+            } finally {
+                if (!idle) {
+                    // Closed or failed: the flag must not stay set, or this subscriber never gets another frame
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            synchronized (queue) {
+                queue.clear();
+            }
+            try {
+                emitter.complete();
+            } catch (Exception ignored) {
+                // already completed by the container
+            }
+        }
+    }
+}
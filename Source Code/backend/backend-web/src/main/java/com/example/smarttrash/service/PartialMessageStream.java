@@ -0,0 +1,120 @@
+package com.example.smarttrash.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UTF-8 bytes of one WebSocket text message, fed part by part by the socket thread and read by the lane
+ * that parses it. The part queue is bounded, so a slow reader holds back the socket instead of the whole
+ * message being buffered. A reader that gives up calls {@link #abandon()}, after which parts are discarded.
+ */
+final class PartialMessageStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> parts;
+    private volatile boolean abandoned;
+    private volatile boolean aborted;
+    private char pendingHighSurrogate;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+
+    PartialMessageStream(int maxQueuedParts) {
+        this.parts = new ArrayBlockingQueue<>(Math.max(1, maxQueuedParts));
+    }
+
+    /**
+     * Adds the next part; called by the socket thread only. Blocks while the reader is behind.
+     */
+    void feed(String part, boolean last) throws InterruptedException {
+        String text = part;
+        if (pendingHighSurrogate != 0) {
+            text = pendingHighSurrogate + text;
+            pendingHighSurrogate = 0;
+        }
+        // A surrogate pair split across parts is encoded once both halves have arrived
+        if (!last && !text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            pendingHighSurrogate = text.charAt(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        if (!text.isEmpty()) {
+            put(text.getBytes(StandardCharsets.UTF_8));
+        }
+        if (last) {
+            put(END);
+        }
+    }
+
+    /**
+     * The connection closed before the last part; the reader fails instead of waiting forever.
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    void abandon() {
+        abandoned = true;
+        parts.clear();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private void put(byte[] bytes) throws InterruptedException {
+        while (!abandoned && !parts.offer(bytes, 100, TimeUnit.MILLISECONDS)) {
+            // wait for the reader, re-checking whether it gave up
+        }
+    }
+
+    private boolean fill() throws IOException {
+        while (position >= current.length) {
+            if (finished) {
+                return false;
+            }
+            byte[] next;
+            try {
+                next = parts.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading WebSocket message", e);
+            }
+            if (next == null) {
+                if (aborted) {
+                    throw new IOException("Connection closed in the middle of a message");
+                }
+                continue;
+            }
+            if (next == END) {
+                finished = true;
+                return false;
+            }
+            current = next;
+            position = 0;
+        }
+        return true;
+    }
+}
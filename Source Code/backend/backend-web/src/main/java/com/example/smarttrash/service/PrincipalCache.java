@@ -0,0 +1,109 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.TokensRevoked;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of users loaded from the {@code users} table, so authenticated requests do not hit MySQL.
+ *
+ * Besides the user row, an entry can remember a keyed digest of the last password that passed BCrypt,
+ * so repeated HTTP Basic requests with the same credentials skip BCrypt. The digest key is random per process
+ * and never leaves memory. Entries expire after a TTL and are dropped by {@link #invalidate(String)},
+ * which also revokes every token issued to that user before the call. A revocation is forgotten once every token
+ * it covers has expired ({@code app.auth.token-ttl-minutes} after the call), so logouts do not accumulate.
+ * Revocations are published as {@link TokensRevoked} so open live streams of that user are closed too.
+ */
+@Service
+public class PrincipalCache {
+
+    private final UserDetailsService userDetailsService;
+    private final ApplicationEventPublisher events;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+    private final byte[] digestKey = new byte[32];
+
+    @Value("${app.auth.principal-cache-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${app.auth.token-ttl-minutes:60}")
+    private long tokenTtlMinutes;
+
+    public PrincipalCache(UserDetailsService userDetailsService, ApplicationEventPublisher events) {
+        this.userDetailsService = userDetailsService;
+        this.events = events;
+        new SecureRandom().nextBytes(digestKey);
+    }
+
+    /**
+     * @throws org.springframework.security.core.userdetails.UsernameNotFoundException when the user does not exist
+     */
+    public UserDetails get(String username) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(username);
+        if (entry == null || entry.expiresAt() < now) {
+            entry = new Entry(userDetailsService.loadUserByUsername(username), null, now + ttlSeconds * 1000);
+            entries.put(username, entry);
+        }
+        return entry.user();
+    }
+
+    /**
+     * True if {@code rawPassword} is the password that last passed BCrypt for this user and the entry is still live.
+     */
+    public boolean credentialsMatch(String username, String rawPassword) {
+        Entry entry = entries.get(username);
+        return entry != null && entry.credentialDigest() != null && entry.expiresAt() >= System.currentTimeMillis()
+                && MessageDigest.isEqual(entry.credentialDigest(), digest(username, rawPassword));
+    }
+
+    public void rememberCredentials(String username, String rawPassword) {
+        entries.computeIfPresent(username,
+                (k, e) -> new Entry(e.user(), digest(username, rawPassword), e.expiresAt()));
+    }
+
+    /**
+     * Drops the cached user and revokes tokens issued to it up to now; call after password/role changes or logout.
+     */
+    public void invalidate(String username) {
+        long now = System.currentTimeMillis();
+        entries.remove(username);
+        // Tokens issued before an older cutoff have all expired by now (see AuthTokenService.issue)
+        long expired = now - tokenTtlMinutes * 60_000;
+        revokedBefore.values().removeIf(cutoff -> cutoff < expired);
+        revokedBefore.put(username, now);
+        events.publishEvent(new TokensRevoked(username, now));
+    }
+
+    public boolean isRevoked(String username, long issuedAtMillis) {
+        Long cutoff = revokedBefore.get(username);
+        return cutoff != null && issuedAtMillis <= cutoff;
+    }
+
+    private byte[] digest(String username, String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(digestKey, "HmacSHA256"));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private record Entry(UserDetails user, byte[] credentialDigest, long expiresAt) {
+    }
+}
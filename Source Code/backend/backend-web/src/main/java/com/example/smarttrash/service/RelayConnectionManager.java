@@ -0,0 +1,298 @@
+package com.example.smarttrash.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decides which endpoint one relay connection of the subscriber uses and when, and tracks the relay's
+ * sequence numbers.
+ *
+ * The endpoints are interchangeable URLs of the same relay, in preference order. A failed endpoint
+ * backs off exponentially (with jitter, so nodes dropped by the same relay deploy do not reconnect in lockstep)
+ * while the next healthy endpoint is tried at once; the subscriber only waits when every endpoint is backing off.
+ * A session that closes before {@code stable-after-ms} counts as a failure, a longer one clears the endpoint's record.
+ *
+ * The relay numbers its broadcasts per process start (epoch). Reconnect URLs carry the last sequence seen,
+ * so the same relay replays what was missed; duplicates and gaps are counted.
+ */
+@Slf4j
+public class RelayConnectionManager implements MeterBinder {
+
+    public enum State { CONNECTING, CONNECTED, BACKOFF, STOPPED }
+
+    private final String name;
+    private final Supplier<List<String>> urls;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long stableAfterMs;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastSeq = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+
+    private volatile State state = State.BACKOFF;
+    private volatile String currentUrl;
+    private volatile long connectedAt;
+    private volatile long attemptStartedAt;
+    private volatile long epoch;
+
+    /**
+     * @param urls endpoint URLs in preference order, resolved again on every attempt; never empty
+     */
+    public RelayConnectionManager(String name, Supplier<List<String>> urls,
+                                  long initialBackoffMs, long maxBackoffMs, long stableAfterMs) {
+        this.name = name;
+        this.urls = urls;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.stableAfterMs = stableAfterMs;
+    }
+
+    /**
+     * Endpoint to try next and how long to wait first: the healthiest endpoint not backing off, else the one whose
+     * backoff ends first. Health is fewest consecutive failures, then fastest handshake, then configuration order.
+     */
+    public Attempt nextAttempt() {
+        long now = System.currentTimeMillis();
+        Endpoint best = null;
+        Endpoint earliest = null;
+        for (String url : urls.get()) {
+            Endpoint endpoint = endpoints.computeIfAbsent(url, Endpoint::new);
+            if (endpoint.nextAttemptAt <= now) {
+                if (best == null || endpoint.healthierThan(best)) {
+                    best = endpoint;
+                }
+            } else if (earliest == null || endpoint.nextAttemptAt < earliest.nextAttemptAt) {
+                earliest = endpoint;
+            }
+        }
+        if (best != null) {
+            return new Attempt(best.url, 0);
+        }
+        state = State.BACKOFF;
+        return new Attempt(earliest.url, earliest.nextAttemptAt - now);
+    }
+
+    /**
+     * URL to open for {@code url}, with the resume position once a relay epoch is known.
+     */
+    public String connectUrl(String url) {
+        if (epoch == 0) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "resumeEpoch=" + epoch + "&since=" + lastSeq.get();
+    }
+
+    public void onConnecting(String url) {
+        state = State.CONNECTING;
+        attemptStartedAt = System.currentTimeMillis();
+        log.info("[{}] Connecting to IoT WebSocket at {}", name, url);
+    }
+
+    public void onConnected(String url) {
+        long now = System.currentTimeMillis();
+        endpoint(url).recordConnected(now - attemptStartedAt);
+        connects.incrementAndGet();
+        currentUrl = url;
+        connectedAt = now;
+        state = State.CONNECTED;
+    }
+
+    public void onFailure(String url, Throwable cause) {
+        long backoff = endpoint(url).recordFailure(String.valueOf(cause.getMessage()));
+        failures.incrementAndGet();
+        state = State.BACKOFF;
+        log.warn("[{}] Failed to connect to IoT WebSocket at {}: {}. Endpoint backs off {} ms", name, url, cause.getMessage(), backoff);
+    }
+
+    public void onDisconnected(String url, String reason) {
+        long lived = System.currentTimeMillis() - connectedAt;
+        Endpoint endpoint = endpoint(url);
+        if (lived < stableAfterMs) {
+            long backoff = endpoint.recordFailure("closed after " + lived + " ms: " + reason);
+            failures.incrementAndGet();
+            log.warn("[{}] IoT WebSocket at {} closed after {} ms; endpoint backs off {} ms", name, url, lived, backoff);
+        } else {
+            endpoint.reset();
+        }
+        currentUrl = null;
+        if (state != State.STOPPED) {
+            state = State.BACKOFF;
+        }
+    }
+
+    public void onStopped() {
+        state = State.STOPPED;
+    }
+
+    /**
+     * Handles the relay's {@code server:hello}. A new epoch means the relay restarted or is a different relay,
+     * so sequence numbers start over.
+     */
+    public void onHello(long relayEpoch, long relaySeq) {
+        if (relayEpoch != epoch) {
+            if (epoch != 0) {
+                log.info("[{}] Relay epoch changed ({} -> {}, now at seq {}); cannot resume from seq {}",
+                        name, epoch, relayEpoch, relaySeq, lastSeq.get());
+            }
+            epoch = relayEpoch;
+            lastSeq.set(0);
+        }
+    }
+
+    /**
+     * False for a message already processed (replay overlap); unsequenced messages are always accepted.
+     */
+    public boolean accept(long seq) {
+        if (seq <= 0) {
+            return true;
+        }
+        long last = lastSeq.get();
+        if (seq <= last) {
+            duplicates.incrementAndGet();
+            return false;
+        }
+        if (last > 0 && seq > last + 1) {
+            missed.addAndGet(seq - last - 1);
+            log.warn("[{}] Relay sequence gap: {} -> {}", name, last, seq);
+        }
+        lastSeq.set(seq);
+        return true;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * {@code smarttrash.relay.state} (1 for the current state), connects, failures, duplicates and missed
+     * messages, tagged with the relay name.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (State value : State.values()) {
+            Gauge.builder("smarttrash.relay.state", this, manager -> manager.state == value ? 1 : 0)
+                    .tag("relay", name)
+                    .tag("state", value.name())
+                    .register(registry);
+        }
+        FunctionCounter.builder("smarttrash.relay.connects", connects, AtomicLong::get).tag("relay", name).register(registry);
+        FunctionCounter.builder("smarttrash.relay.failures", failures, AtomicLong::get).tag("relay", name).register(registry);
+        FunctionCounter.builder("smarttrash.relay.duplicates", duplicates, AtomicLong::get).tag("relay", name).register(registry);
+        FunctionCounter.builder("smarttrash.relay.missed", missed, AtomicLong::get).tag("relay", name).register(registry);
+    }
+
+    /**
+     * Connection state and per-endpoint health for the health endpoint.
+     */
+    public Map<String, Object> details() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("name", name);
+        details.put("state", state);
+        details.put("endpoint", currentUrl);
+        details.put("connectedSince", currentUrl != null ? connectedAt : null);
+        details.put("epoch", epoch);
+        details.put("lastSeq", lastSeq.get());
+        details.put("connects", connects.get());
+        details.put("failures", failures.get());
+        details.put("duplicates", duplicates.get());
+        details.put("missed", missed.get());
+        List<Map<String, Object>> endpointDetails = new ArrayList<>();
+        for (String url : urls.get()) {
+            Endpoint endpoint = endpoints.get(url);
+            if (endpoint != null) {
+                endpointDetails.add(endpoint.details());
+            }
+        }
+        details.put("endpoints", endpointDetails);
+        return details;
+    }
+
+    private Endpoint endpoint(String url) {
+        return endpoints.computeIfAbsent(url, Endpoint::new);
+    }
+
+    private long backoffFor(int consecutiveFailures) {
+        long exp = initialBackoffMs << Math.min(consecutiveFailures - 1, 20);
+        long capped = Math.min(maxBackoffMs, exp);
+        // Equal jitter: at least half the backoff, the rest random
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    public record Attempt(String url, long delayMs) {
+    }
+
+    private final class Endpoint {
+        private final String url;
+        private int consecutiveFailures;
+        private volatile long nextAttemptAt;
+        private long handshakeMs = -1;
+        private long lastConnectedAt;
+        private long lastFailureAt;
+        private String lastError;
+
+        private Endpoint(String url) {
+            this.url = url;
+        }
+
+        synchronized void recordConnected(long handshakeMillis) {
+            // Smooth the handshake time so one slow attempt does not reorder endpoints
+            handshakeMs = handshakeMs < 0 ? handshakeMillis : (handshakeMs * 3 + handshakeMillis) / 4;
+            lastConnectedAt = System.currentTimeMillis();
+            nextAttemptAt = 0;
+        }
+
+        synchronized long recordFailure(String error) {
+            consecutiveFailures++;
+            long backoff = backoffFor(consecutiveFailures);
+            lastFailureAt = System.currentTimeMillis();
+            lastError = error;
+            nextAttemptAt = lastFailureAt + backoff;
+            return backoff;
+        }
+
+        synchronized void reset() {
+            consecutiveFailures = 0;
+            nextAttemptAt = 0;
+        }
+
+        synchronized boolean healthierThan(Endpoint other) {
+            if (consecutiveFailures != other.consecutiveFailures) {
+                return consecutiveFailures < other.consecutiveFailures;
+            }
+            // Unmeasured endpoints keep configuration order
+            return handshakeMs >= 0 && other.handshakeMs >= 0 && handshakeMs < other.handshakeMs;
+        }
+
+        synchronized Map<String, Object> details() {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("url", url);
+            details.put("consecutiveFailures", consecutiveFailures);
+            details.put("nextAttemptAt", nextAttemptAt);
+            details.put("handshakeMs", handshakeMs);
+            details.put("lastConnectedAt", lastConnectedAt);
+            details.put("lastFailureAt", lastFailureAt);
+            details.put("lastError", lastError);
+            return details;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.smarttrash.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code relay} component of {@code /actuator/health}: state and endpoint health of every relay connection,
+ * plus the ingest pipeline backlog. A backend that is reconnecting still serves stored data,
+ * so it reports {@code RECONNECTING} instead of DOWN.
+ */
+@Component("relay")
+public class RelayHealthIndicator implements HealthIndicator {
+
+    private static final Status RECONNECTING = new Status("RECONNECTING");
+
+    private final SocketSubscriberService socketSubscriberService;
+    private final IngestPipeline ingestPipeline;
+
+    public RelayHealthIndicator(SocketSubscriberService socketSubscriberService, IngestPipeline ingestPipeline) {
+        this.socketSubscriberService = socketSubscriberService;
+        this.ingestPipeline = ingestPipeline;
+    }
+
+    @Override
+    public Health health() {
+        List<RelayConnectionManager> managers = socketSubscriberService.connectionManagers();
+        Status status = Status.UP;
+        for (RelayConnectionManager manager : managers) {
+            if (manager.state() == RelayConnectionManager.State.STOPPED) {
+                status = Status.OUT_OF_SERVICE;
+                break;
+            }
+            if (manager.state() != RelayConnectionManager.State.CONNECTED) {
+                status = RECONNECTING;
+            }
+        }
+        List<Map<String, Object>> relays = managers.stream().map(RelayConnectionManager::details).toList();
+        return Health.status(status)
+                .withDetail("relays", relays)
+                .withDetail("ingestStripes", ingestPipeline.stripeCount())
+                .withDetail("ingestQueued", ingestPipeline.queued())
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.smarttrash.service;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a relay message with a streaming parser. Small fields become a regular tree, but the base64 image
+ * {@code data} of {@code latestEsp32Image} or of a {@code server:image} payload is decoded straight from the
+ * input into a pooled buffer and left out of the tree, so the payload never exists as a String.
+ *
+ * The relay writes {@code type} before {@code payload}; a {@code server:image} payload seen before its type
+ * is read into the tree like any other message.
+ */
+final class RelayMessageReader {
+
+    private final ObjectMapper objectMapper;
+    private final ImageBufferPool bufferPool;
+
+    RelayMessageReader(ObjectMapper objectMapper, ImageBufferPool bufferPool) {
+        this.objectMapper = objectMapper;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Parsed message; the caller releases {@link #image()} when set.
+     */
+    record Message(ObjectNode root, ImageBufferPool.Buffer image) {
+
+        void release() {
+            if (image != null) {
+                image.release();
+            }
+        }
+    }
+
+    Message read(InputStream in) throws IOException {
+        ImageBufferPool.Buffer image = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            ObjectNode root = objectMapper.createObjectNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                boolean imageHolder = "latestEsp32Image".equals(name)
+                        || ("payload".equals(name) && "server:image".equals(root.path("type").asText(null)));
+                if (imageHolder && token == JsonToken.START_OBJECT && image == null) {
+                    image = readImageObject(parser, root.putObject(name));
+                } else {
+                    root.set(name, readValue(parser));
+                }
+            }
+            return new Message(root, image);
+        } catch (IOException | RuntimeException e) {
+            if (image != null) {
+                image.release();
+            }
+            throw e;
+        }
+    }
+
+    private ImageBufferPool.Buffer readImageObject(JsonParser parser, ObjectNode holder) throws IOException {
+        ImageBufferPool.Buffer image = null;
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("data".equals(name) && token == JsonToken.VALUE_STRING && image == null) {
+                    image = bufferPool.acquire();
+                    parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, image);
+                } else {
+                    holder.set(name, readValue(parser));
+                }
+            }
+            return image;
+        } catch (IOException | RuntimeException e) {
+            if (image != null) {
+                image.release();
+            }
+            throw e;
+        }
+    }
+
+    private JsonNode readValue(JsonParser parser) throws IOException {
+        JsonNode value = objectMapper.readTree(parser);
+        return value != null ? value : objectMapper.getNodeFactory().nullNode();
+    }
+}
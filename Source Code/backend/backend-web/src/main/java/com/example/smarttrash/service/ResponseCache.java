@@ -0,0 +1,156 @@
+package com.example.smarttrash.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Serialized JSON responses of the dashboard GET endpoints, shared by every client polling them.
+ *
+ * Concurrent requests for the same key wait for one computation (single flight). The result is kept as
+ * JSON bytes with a content-based ETag, so hits are neither recomputed nor serialized again, until
+ * {@code app.cache.ttl-ms} passes or the entry's version changes: for dashboard data the generation of its scope,
+ * bumped by {@link #invalidate} whenever ingest changes a device's rows or state; for live snapshots their version.
+ * Past {@code app.cache.max-entries} (e.g. many unknown device ids) responses are computed without caching.
+ */
+@Service
+public class ResponseCache {
+
+    /**
+     * Scope of data that is not per device (settings, device list).
+     */
+    public static final String GLOBAL = "*";
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    @Value("${app.cache.ttl-ms:2000}")
+    private long ttlMs;
+
+    @Value("${app.cache.max-entries:1024}")
+    private int maxEntries;
+
+    public ResponseCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 200 with the cached JSON of {@code compute} for data of {@code scope}, or 304 when the client has it.
+     */
+    public ResponseEntity<byte[]> respond(String key, String scope, Supplier<?> compute, WebRequest request) {
+        Entry entry = get(scope + "|" + key, generation(scope), compute);
+        if (request.checkNotModified(entry.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(entry.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(entry.body());
+    }
+
+    /**
+     * Cached JSON of {@code compute} for {@code key} as of {@code version}.
+     */
+    public Entry get(String key, long version, Supplier<?> compute) {
+        while (true) {
+            CompletableFuture<Entry> current = entries.get(key);
+            if (current != null && (!current.isDone() || isFresh(current, version))) {
+                return join(current);
+            }
+            if (current == null && entries.size() >= maxEntries && !evictStale()) {
+                return serialize(compute.get(), version);
+            }
+            CompletableFuture<Entry> computing = new CompletableFuture<>();
+            boolean owner = current == null
+                    ? entries.putIfAbsent(key, computing) == null
+                    : entries.replace(key, current, computing);
+            if (!owner) {
+                continue;
+            }
+            try {
+                computing.complete(serialize(compute.get(), version));
+            } catch (RuntimeException e) {
+                entries.remove(key, computing);
+                computing.completeExceptionally(e);
+            }
+            return join(computing);
+        }
+    }
+
+    /**
+     * Marks every cached response of {@code scope} (a device id) stale.
+     */
+    public void invalidate(String scope) {
+        // Only writes create a scope's counter; reads of unknown device ids must not grow the map
+        generations.computeIfAbsent(scope, s -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+    }
+
+    private long generation(String scope) {
+        // Both counters only grow, so their sum changes whenever either is bumped
+        AtomicLong generation = generations.get(scope);
+        return globalGeneration.get() + (generation != null ? generation.get() : 0);
+    }
+
+    private boolean isFresh(CompletableFuture<Entry> future, long version) {
+        if (future.isCompletedExceptionally()) {
+            return false;
+        }
+        Entry entry = future.join();
+        return entry.version() == version && System.currentTimeMillis() - entry.createdAt() < ttlMs;
+    }
+
+    private boolean evictStale() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(future -> future.isDone()
+                && (future.isCompletedExceptionally() || now - future.join().createdAt() >= ttlMs));
+        return entries.size() < maxEntries;
+    }
+
+    private Entry serialize(Object value, long version) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+        return new Entry(body, etag, version, System.currentTimeMillis());
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public record Entry(byte[] body, String etag, long version, long createdAt) {
+    }
+}
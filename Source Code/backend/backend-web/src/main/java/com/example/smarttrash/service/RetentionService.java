@@ -0,0 +1,164 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ArchivedLogTotalsEntity;
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.model.Esp32EventLog;
+import com.example.smarttrash.model.Esp32ImageEntity;
+import com.example.smarttrash.repository.ArchivedLogTotalsRepository;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.repository.Esp32ImageRepository;
+import com.example.smarttrash.storage.ArchiveStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Moves rows older than their table's TTL out of MySQL into the {@link ArchiveStore}.
+ *
+ * Work is done in chunks of the oldest rows (read through the (time, id) indexes): a chunk is written to the
+ * archive and made durable before it is deleted, so a crash can at worst archive a chunk twice, never lose it.
+ * Image bytes stay in the BlobStore; only the metadata rows move. A TTL of 0 keeps a table's rows forever.
+ * Archived classification logs are added to {@code archived_log_totals} in the transaction that deletes them, so
+ * the overview's all-time count and average confidence still include them.
+ */
+@Slf4j
+@Service
+public class RetentionService {
+
+    public static final String LOGS = "classification_logs";
+    public static final String EVENTS = "esp32_event_logs";
+    public static final String IMAGES = "esp32_images";
+
+    private final ClassificationLogRepository classificationLogRepository;
+    private final Esp32EventLogRepository esp32EventLogRepository;
+    private final Esp32ImageRepository esp32ImageRepository;
+    private final ArchivedLogTotalsRepository archivedLogTotalsRepository;
+    private final ArchiveStore archiveStore;
+    private final TransactionTemplate transactions;
+
+    @Value("${app.retention.logs-days:90}")
+    private int logsDays;
+
+    @Value("${app.retention.events-days:30}")
+    private int eventsDays;
+
+    @Value("${app.retention.images-days:30}")
+    private int imagesDays;
+
+    @Value("${app.retention.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.retention.max-chunks-per-run:20}")
+    private int maxChunksPerRun;
+
+    public RetentionService(ClassificationLogRepository classificationLogRepository,
+                            Esp32EventLogRepository esp32EventLogRepository,
+                            Esp32ImageRepository esp32ImageRepository,
+                            ArchivedLogTotalsRepository archivedLogTotalsRepository,
+                            ArchiveStore archiveStore,
+                            PlatformTransactionManager transactionManager) {
+        this.classificationLogRepository = classificationLogRepository;
+        this.esp32EventLogRepository = esp32EventLogRepository;
+        this.esp32ImageRepository = esp32ImageRepository;
+        this.archivedLogTotalsRepository = archivedLogTotalsRepository;
+        this.archiveStore = archiveStore;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public static long logTime(ClassificationLog entry) {
+        // timestamp is written with LocalDateTime.now(), i.e. server local time
+        return entry.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Scheduled(initialDelayString = "${app.retention.initial-delay-ms:60000}",
+            fixedDelayString = "${app.retention.interval-ms:3600000}")
+    public void runRetention() {
+        long now = System.currentTimeMillis();
+        if (logsDays > 0) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(logsDays);
+            archive(LOGS, classificationLogRepository, "timestamp",
+                    (root, query, cb) -> cb.lessThan(root.get("timestamp"), cutoff),
+                    RetentionService::logTime, ClassificationLog::getId, this::addArchivedTotals);
+        }
+        if (eventsDays > 0) {
+            long cutoff = now - Duration.ofDays(eventsDays).toMillis();
+            archive(EVENTS, esp32EventLogRepository, "receivedAt",
+                    (root, query, cb) -> cb.lessThan(root.get("receivedAt"), cutoff),
+                    Esp32EventLog::getReceivedAt, Esp32EventLog::getId, rows -> { });
+        }
+        if (imagesDays > 0) {
+            long cutoff = now - Duration.ofDays(imagesDays).toMillis();
+            archive(IMAGES, esp32ImageRepository, "receivedAt",
+                    (root, query, cb) -> cb.lessThan(root.get("receivedAt"), cutoff),
+                    Esp32ImageEntity::getReceivedAt, Esp32ImageEntity::getId, rows -> { });
+        }
+    }
+
+    /**
+     * @param deleted runs in the transaction that deletes a chunk
+     */
+    private <E, R extends JpaRepository<E, Long> & JpaSpecificationExecutor<E>> long archive(
+            String table, R repository, String timeProperty, Specification<E> expired,
+            ToLongFunction<E> timeOf, ToLongFunction<E> idOf, Consumer<List<E>> deleted) {
+        Sort oldestFirst = Sort.by(Sort.Direction.ASC, timeProperty, "id");
+        long archived = 0;
+        try {
+            for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+                List<E> rows = repository.findBy(expired, q -> q.sortBy(oldestFirst).limit(chunkSize).all());
+                if (rows.isEmpty()) {
+                    break;
+                }
+                archiveStore.append(table, rows, timeOf, idOf);
+                transactions.executeWithoutResult(status -> {
+                    repository.deleteAllByIdInBatch(rows.stream().map(idOf::applyAsLong).toList());
+                    deleted.accept(rows);
+                });
+                archived += rows.size();
+                if (rows.size() < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Archiving {} failed, rows stay in the database: {}", table, e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Retention run for {} failed: {}", table, e.getMessage(), e);
+        }
+        if (archived > 0) {
+            log.info("Archived {} {} rows", archived, table);
+        }
+        return archived;
+    }
+
+    private void addArchivedTotals(List<ClassificationLog> rows) {
+        Map<String, ArchivedLogTotalsEntity> byDevice = new HashMap<>();
+        for (ClassificationLog row : rows) {
+            ArchivedLogTotalsEntity totals = byDevice.computeIfAbsent(row.getDeviceId(), deviceId ->
+                    archivedLogTotalsRepository.findByDeviceId(deviceId).orElseGet(() -> {
+                        ArchivedLogTotalsEntity entity = new ArchivedLogTotalsEntity();
+                        entity.setDeviceId(deviceId);
+                        return entity;
+                    }));
+            totals.setCount(totals.getCount() + 1);
+            totals.setConfidenceSum(totals.getConfidenceSum() + row.getConfidence());
+        }
+        archivedLogTotalsRepository.saveAll(byDevice.values());
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.VersionedRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of a single row: the settings row, or one device's bin status / device info row.
+ *
+ * Reads are a volatile field access and never touch the database after the first load.
+ * {@link #update} writes through to the repository and relies on the entity's {@code @Version} column:
+ * if another node changed the row in the meantime the row is reloaded and the update re-applied.
+ * {@link #stage} only publishes the change in memory; {@link #flush} persists the latest staged
+ * state later with last-write-wins semantics.
+ *
+ * Returned instances are shared and must be treated as read-only.
+ */
+@Slf4j
+public class SingletonRowCache<T extends VersionedRow<T>> {
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final String name;
+    private final JpaRepository<T, Long> repository;
+    private final Supplier<Optional<T>> loader;
+    private final Supplier<T> factory;
+    private final Object writeLock = new Object();
+    private final Object flushLock = new Object();
+
+    private volatile T current;
+    private volatile boolean loaded;
+    // Bumped on every staged change; flush() compares it to know whether it saved the latest state
+    private long stagedSeq;
+    private long flushedSeq;
+
+    public SingletonRowCache(String name, JpaRepository<T, Long> repository,
+                             Supplier<Optional<T>> loader, Supplier<T> factory) {
+        this.name = name;
+        this.repository = repository;
+        this.loader = loader;
+        this.factory = factory;
+    }
+
+    public Optional<T> get() {
+        if (!loaded) {
+            synchronized (writeLock) {
+                if (!loaded) {
+                    current = loadFromDatabase();
+                    loaded = true;
+                }
+            }
+        }
+        return Optional.ofNullable(current);
+    }
+
+    /**
+     * Applies {@code mutator} to a copy of the cached row, persists it and publishes the saved row.
+     */
+    public T update(Consumer<T> mutator) {
+        synchronized (flushLock) {
+            synchronized (writeLock) {
+                get();
+                for (int attempt = 1; ; attempt++) {
+                    T draft = current != null ? current.copy() : factory.get();
+                    mutator.accept(draft);
+                    try {
+                        T saved = repository.save(draft);
+                        current = saved;
+                        flushedSeq = stagedSeq;
+                        return saved;
+                    } catch (ObjectOptimisticLockingFailureException e) {
+                        if (attempt >= MAX_WRITE_ATTEMPTS) {
+                            throw e;
+                        }
+                        log.debug("Version conflict on {} (attempt {}), reloading", name, attempt);
+                        current = loadFromDatabase();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies {@code mutator} to a copy of the cached row and publishes it without touching the database.
+     *
+     * @return the staged row
+     */
+    public T stage(Consumer<T> mutator) {
+        synchronized (writeLock) {
+            get();
+            T draft = current != null ? current.copy() : factory.get();
+            mutator.accept(draft);
+            current = draft;
+            stagedSeq++;
+            return draft;
+        }
+    }
+
+    public boolean isDirty() {
+        synchronized (writeLock) {
+            return stagedSeq != flushedSeq;
+        }
+    }
+
+    /**
+     * Persists the latest staged row if it changed since the last flush.
+     * A version conflict is resolved in favour of the in-memory state (last write wins).
+     *
+     * @return the row as saved, empty when there was nothing to flush
+     */
+    public Optional<T> flush() {
+        synchronized (flushLock) {
+            T draft;
+            long seq;
+            synchronized (writeLock) {
+                if (stagedSeq == flushedSeq || current == null) {
+                    return Optional.empty();
+                }
+                draft = current.copy();
+                seq = stagedSeq;
+            }
+
+            T saved = null;
+            for (int attempt = 1; saved == null; attempt++) {
+                try {
+                    saved = repository.save(draft);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    if (attempt >= MAX_WRITE_ATTEMPTS) {
+                        throw e;
+                    }
+                    T fresh = loadFromDatabase();
+                    if (fresh != null) {
+                        draft.setVersion(fresh.getVersion());
+                    }
+                    log.debug("Version conflict flushing {} (attempt {}), overwriting", name, attempt);
+                }
+            }
+
+            synchronized (writeLock) {
+                flushedSeq = seq;
+                if (stagedSeq == seq) {
+                    current = saved;
+                } else {
+                    // Newer changes were staged while saving: keep them, but adopt the persisted id/version
+                    T merged = current.copy();
+                    merged.setId(saved.getId());
+                    merged.setVersion(saved.getVersion());
+                    current = merged;
+                }
+            }
+            return Optional.of(saved);
+        }
+    }
+
+    /**
+     * Drops the cached row so the next read goes to the database.
+     */
+    public void invalidate() {
+        synchronized (writeLock) {
+            loaded = false;
+            current = null;
+            flushedSeq = stagedSeq;
+        }
+    }
+
+    private T loadFromDatabase() {
+        return loader.get().orElse(null);
+    }
+}
@@ -1,14 +1,11 @@
 package com.example.smarttrash.service;
 
+import com.example.smarttrash.jfr.ImageCorrelationEvent;
+import com.example.smarttrash.jfr.IngestEvent;
+import com.example.smarttrash.jfr.RelayMessageEvent;
 import com.example.smarttrash.model.*;
 import com.example.smarttrash.service.LiveDataService;
-import com.example.smarttrash.repository.BinStatusRepository;
-import com.example.smarttrash.repository.ClassificationLogRepository;
-import com.example.smarttrash.repository.Esp32ImageRepository;
-import com.example.smarttrash.repository.DeviceInfoRepository;
-import com.example.smarttrash.repository.SettingsRepository;
-import com.example.smarttrash.repository.Esp32EventLogRepository;
-import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.storage.BlobStore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
@@ -28,17 +25,26 @@ import jakarta.websocket.WebSocketContainer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Subscribes to the IoT WebSocket server and persists incoming readings
@@ -48,248 +54,501 @@ import java.util.concurrent.atomic.AtomicReference;
 @Service
 public class SocketSubscriberService {
 
-    private final SettingsRepository settingsRepository;
-    private final BinStatusRepository binStatusRepository;
-    private final ClassificationLogRepository classificationLogRepository;
-    private final DeviceInfoRepository deviceInfoRepository;
-    private final Esp32ImageRepository esp32ImageRepository;
-    private final Esp32EventLogRepository esp32EventLogRepository;
+    private final StateCacheService stateCache;
+    private final StateWriteCoalescer stateWriteCoalescer;
+    private final IngestJournal ingestJournal;
+    private final BlobStore blobStore;
     private final LiveDataService liveDataService;
+    private final LiveStreamService liveStreamService;
     private final ObjectMapper objectMapper;
     private final WebSocketClient webSocketClient;
+    private final IngestPipeline ingestPipeline;
+    private final RelayMessageReader messageReader;
+    private final TraceRecorder traceRecorder;
+    private final IngestMetrics ingestMetrics;
+    private final AlertEngine alertEngine;
     private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor();
-    private final AtomicBoolean connecting = new AtomicBoolean(false);
-    private final AtomicReference<String> currentTrashType = new AtomicReference<>("unknown");
-    private final AtomicReference<Long> lastImageReceivedAt = new AtomicReference<>(0L);
-    private final AtomicReference<String> lastImageFilename = new AtomicReference<>(null);
-    // Lưu trữ mapping giữa thời gian và loại rác từ rotation events
-    // Key: timestamp (millis), Value: trashType
-    private final ConcurrentHashMap<Long, String> rotationEvents = new ConcurrentHashMap<>();
+    private final List<RelayConnection> relays = new ArrayList<>();
+    // Trạng thái theo từng thiết bị (thùng rác), key: deviceId
+    private final ConcurrentHashMap<String, DeviceState> devices = new ConcurrentHashMap<>();
 
     @Value("${app.websocket.default-url:ws://localhost:4000/ws}")
     private String defaultSocketUrl;
 
-    private volatile WebSocketSession session;
+    @Value("${app.websocket.fallback-urls:}")
+    private String fallbackUrls;
 
-    public SocketSubscriberService(SettingsRepository settingsRepository,
-                                   BinStatusRepository binStatusRepository,
-                                   ClassificationLogRepository classificationLogRepository,
-                                   DeviceInfoRepository deviceInfoRepository,
-                                   Esp32ImageRepository esp32ImageRepository,
-                                   Esp32EventLogRepository esp32EventLogRepository,
+    @Value("${app.websocket.extra-relays:}")
+    private String extraRelays;
+
+    @Value("${app.websocket.backoff-initial-ms:1000}")
+    private long backoffInitialMs;
+
+    @Value("${app.websocket.backoff-max-ms:60000}")
+    private long backoffMaxMs;
+
+    @Value("${app.websocket.stable-after-ms:30000}")
+    private long stableAfterMs;
+
+    @Value("${app.websocket.lane-capacity:256}")
+    private int laneCapacity;
+
+    @Value("${app.websocket.queued-parts:16}")
+    private int queuedParts;
+
+    public SocketSubscriberService(StateCacheService stateCache,
+                                   StateWriteCoalescer stateWriteCoalescer,
+                                   IngestJournal ingestJournal,
+                                   BlobStore blobStore,
                                    LiveDataService liveDataService,
-                                   ObjectMapper objectMapper) {
-        this.settingsRepository = settingsRepository;
-        this.binStatusRepository = binStatusRepository;
-        this.classificationLogRepository = classificationLogRepository;
-        this.deviceInfoRepository = deviceInfoRepository;
-        this.esp32ImageRepository = esp32ImageRepository;
-        this.esp32EventLogRepository = esp32EventLogRepository;
+                                   LiveStreamService liveStreamService,
+                                   IngestPipeline ingestPipeline,
+                                   ImageBufferPool imageBufferPool,
+                                   ObjectMapper objectMapper,
+                                   TraceRecorder traceRecorder,
+                                   IngestMetrics ingestMetrics,
+                                   AlertEngine alertEngine,
+                                   @Value("${app.websocket.frame-buffer-bytes:65536}") int frameBufferBytes) {
+        this.stateCache = stateCache;
+        this.stateWriteCoalescer = stateWriteCoalescer;
+        this.ingestJournal = ingestJournal;
+        this.blobStore = blobStore;
         this.liveDataService = liveDataService;
+        this.liveStreamService = liveStreamService;
+        this.ingestPipeline = ingestPipeline;
         this.objectMapper = objectMapper;
-        this.webSocketClient = buildWebSocketClient();
+        this.traceRecorder = traceRecorder;
+        this.ingestMetrics = ingestMetrics;
+        this.alertEngine = alertEngine;
+        this.messageReader = new RelayMessageReader(objectMapper, imageBufferPool);
+        this.webSocketClient = buildWebSocketClient(frameBufferBytes);
     }
 
-    private WebSocketClient buildWebSocketClient() {
-        // Increase buffers to handle large base64 images safely
+    private WebSocketClient buildWebSocketClient(int frameBufferBytes) {
+        // Messages are received in parts of at most frameBufferBytes (see SubscriberHandler), so large
+        // base64 images no longer need a 12MB buffer per connection
         WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-        container.setDefaultMaxTextMessageBufferSize(12 * 1024 * 1024);   // 12MB
-        container.setDefaultMaxBinaryMessageBufferSize(12 * 1024 * 1024); // 12MB
+        container.setDefaultMaxTextMessageBufferSize(frameBufferBytes);
+        container.setDefaultMaxBinaryMessageBufferSize(frameBufferBytes);
         container.setAsyncSendTimeout(600_000L); // align with server
         container.setDefaultMaxSessionIdleTimeout(86_400_000L);
         return new StandardWebSocketClient(container);
     }
 
+    /**
+     * Opens the primary relay connection (settings URL, then {@code app.websocket.fallback-urls}) plus one
+     * connection per entry of {@code app.websocket.extra-relays}: relays separated by {@code ;}, each a
+     * comma-separated list of failover URLs.
+     */
     @PostConstruct
     public void start() {
-        connect();
+        relays.add(new RelayConnection("primary", this::primaryUrls));
+        int index = 1;
+        for (String relay : extraRelays.split(";")) {
+            List<String> urls = splitUrls(relay);
+            if (!urls.isEmpty()) {
+                relays.add(new RelayConnection("relay-" + index++, () -> urls));
+            }
+        }
+        relays.forEach(relay -> ingestMetrics.bind(relay.connectionManager));
+        relays.forEach(RelayConnection::connect);
     }
 
     @PreDestroy
     public void stop() {
-        closeSession();
         reconnectExecutor.shutdownNow();
+        relays.forEach(RelayConnection::close);
     }
 
-    private void connect() {
-        if (connecting.getAndSet(true)) {
-            return;
-        }
-
-        String url = resolveSocketUrl();
-        log.info("Connecting to IoT WebSocket at {}", url);
-
-        webSocketClient.doHandshake(new SubscriberHandler(), url)
-                .addCallback(result -> {
-                    session = result;
-                    connecting.set(false);
-                    log.info("Connected to IoT WebSocket (session: {})", result.getId());
-                }, ex -> {
-                    connecting.set(false);
-                    log.warn("Failed to connect to IoT WebSocket: {}. Retrying in 5s", ex.getMessage());
-                    scheduleReconnect();
-                });
+    public List<RelayConnectionManager> connectionManagers() {
+        return relays.stream().map(relay -> relay.connectionManager).toList();
     }
 
-    private void scheduleReconnect() {
-        reconnectExecutor.schedule(this::connect, 5, TimeUnit.SECONDS);
+    private List<String> primaryUrls() {
+        Set<String> urls = new LinkedHashSet<>();
+        stateCache.getSettings()
+                .map(SettingsEntity::getWebsocketUrl)
+                .filter(StringUtils::hasText)
+                .map(String::trim)
+                .ifPresent(urls::add);
+        urls.addAll(splitUrls(fallbackUrls));
+        if (urls.isEmpty()) {
+            urls.add(defaultSocketUrl.trim());
+        }
+        return List.copyOf(urls);
     }
 
-    private String resolveSocketUrl() {
-        Optional<SettingsEntity> settings = settingsRepository.findAll().stream().findFirst();
-        return settings
-                .map(SettingsEntity::getWebsocketUrl)
+    private static List<String> splitUrls(String urls) {
+        return Arrays.stream(urls.split(","))
+                .map(String::trim)
                 .filter(StringUtils::hasText)
-                .orElse(defaultSocketUrl);
+                .toList();
     }
 
-    private void closeSession() {
-        WebSocketSession current = session;
-        if (current != null && current.isOpen()) {
+    /**
+     * One relay subscription. Its socket thread only queues raw messages on the connection's lane, which parses
+     * them and checks sequence numbers in arrival order, then hands each message to {@link IngestPipeline}
+     * by device id.
+     */
+    private final class RelayConnection {
+        private final RelayConnectionManager connectionManager;
+        private final ThreadPoolExecutor lane;
+        private final AtomicBoolean connecting = new AtomicBoolean(false);
+        private volatile WebSocketSession session;
+
+        RelayConnection(String name, Supplier<List<String>> urls) {
+            this.connectionManager = new RelayConnectionManager(name, urls, backoffInitialMs, backoffMaxMs, stableAfterMs);
+            this.lane = IngestPipeline.orderedExecutor("relay-" + name, laneCapacity);
+        }
+
+        void connect() {
+            if (reconnectExecutor.isShutdown() || connecting.getAndSet(true)) {
+                return;
+            }
+
+            RelayConnectionManager.Attempt attempt = connectionManager.nextAttempt();
+            if (attempt.delayMs() > 0) {
+                connecting.set(false);
+                log.info("[{}] All IoT WebSocket endpoints backing off, next attempt at {} in {} ms",
+                        connectionManager.name(), attempt.url(), attempt.delayMs());
+                reconnectExecutor.schedule(this::connect, attempt.delayMs(), TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            String url = attempt.url();
+            connectionManager.onConnecting(url);
+            webSocketClient.doHandshake(new SubscriberHandler(this, url), connectionManager.connectUrl(url))
+                    .addCallback(result -> {
+                        session = result;
+                        connectionManager.onConnected(url);
+                        connecting.set(false);
+                        log.info("[{}] Connected to IoT WebSocket at {} (session: {})",
+                                connectionManager.name(), url, result.getId());
+                    }, ex -> {
+                        connectionManager.onFailure(url, ex);
+                        connecting.set(false);
+                        scheduleReconnect();
+                    });
+        }
+
+        /**
+         * Reconnects right away; {@link RelayConnectionManager} fails over to the next endpoint or imposes the backoff.
+         */
+        void scheduleReconnect() {
+            if (!reconnectExecutor.isShutdown()) {
+                reconnectExecutor.execute(this::connect);
+            }
+        }
+
+        void close() {
+            connectionManager.onStopped();
+            WebSocketSession current = session;
+            if (current != null && current.isOpen()) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close WebSocket session: {}", e.getMessage());
+                }
+            }
+            lane.shutdown();
+        }
+
+        void process(PartialMessageStream stream) {
+            RelayMessageEvent event = new RelayMessageEvent();
+            event.begin();
+            RelayMessageReader.Message message;
             try {
-                current.close();
+                message = messageReader.read(stream);
             } catch (IOException e) {
-                log.warn("Failed to close WebSocket session: {}", e.getMessage());
+                ingestMetrics.failure("parse");
+                log.warn("[{}] Dropping unparsable socket message: {}", connectionManager.name(), e.getMessage());
+                return;
+            } finally {
+                stream.abandon();
+            }
+
+            boolean handedOff = false;
+            try {
+                JsonNode root = message.root();
+                String type = root.path("type").asText(null);
+                if (event.isEnabled()) {
+                    event.type = type;
+                    event.seq = root.path("seq").asLong(0);
+                    event.imageBytes = message.image() != null ? message.image().size() : 0;
+                }
+                if ("server:hello".equals(type)) {
+                    JsonNode hello = root.path("payload");
+                    connectionManager.onHello(hello.path("epoch").asLong(), hello.path("seq").asLong());
+                    return;
+                }
+                if (!connectionManager.accept(root.path("seq").asLong(0))) {
+                    return;
+                }
+                handedOff = dispatch(message, ingestPipeline::submit);
+            } catch (RuntimeException e) {
+                ingestMetrics.failure("dispatch");
+                log.error("[{}] Failed to process socket message: {}", connectionManager.name(), e.getMessage(), e);
+            } finally {
+                if (!handedOff) {
+                    message.release();
+                }
+                if (event.shouldCommit()) {
+                    event.relay = connectionManager.name();
+                    event.commit();
+                }
             }
         }
     }
 
+    /**
+     * Receives text messages in parts. The first part queues a {@link PartialMessageStream} on the relay lane,
+     * which parses it while the remaining parts are still arriving.
+     */
     private class SubscriberHandler extends AbstractWebSocketHandler {
+        private final RelayConnection relay;
+        private final String url;
+        private PartialMessageStream current;
+
+        SubscriberHandler(RelayConnection relay, String url) {
+            this.relay = relay;
+            this.url = url;
+        }
+
         @Override
-        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-            JsonNode root = objectMapper.readTree(message.getPayload());
-            String type = root.path("type").asText(null);
-            if (type != null && !type.isEmpty()) {
-                JsonNode payload = root.path("payload");
-                switch (type) {
-                    case "server:data" -> handleServerData(payload);
-                    case "server:image" -> handleServerImage(payload);
-                    default -> log.debug("Unhandled WebSocket message type: {}", type);
-                }
-            } else if (root.has("latestEsp32Data") || root.has("latestEsp32Image")) {
-                // Direct snapshot payload from socket
-                liveDataService.updateFromSocket(root);
-                
-                // Xử lý data TRƯỚC để cập nhật currentTrashType trước khi log image
-                String trashTypeFromCurrentSnapshot = null; // Lưu loại rác từ snapshot hiện tại
-                if (root.has("latestEsp32Data")) {
-                    JsonNode dataNode = root.get("latestEsp32Data");
-                    String dataValue = text(dataNode, "data");
-                    // Chỉ xử lý nếu có rotation data (ROTATE_CW/ROTATE_CCW)
-                    if ("ROTATE_CW".equals(dataValue) || "ROTATE_CCW".equals(dataValue)) {
-                        String mappedTrashType = mapRotationToTrashType(dataValue);
-                        if (mappedTrashType != null) {
-                            trashTypeFromCurrentSnapshot = mappedTrashType; // Lưu loại rác từ snapshot này
-                            currentTrashType.set(mappedTrashType);
-                            liveDataService.updateTrashType(mappedTrashType);
-                            Long dataReceivedAt = longVal(dataNode, "receivedAt");
-                            if (dataReceivedAt == null) {
-                                dataReceivedAt = System.currentTimeMillis();
-                            }
-                            persistRotationClassification(mappedTrashType, dataReceivedAt);
-                            // Lưu rotation event để map với ảnh sau này
-                            rotationEvents.put(dataReceivedAt, mappedTrashType);
-                            // Giữ chỉ 100 events gần nhất để tránh memory leak
-                            if (rotationEvents.size() > 100) {
-                                Long oldestKey = rotationEvents.keySet().stream()
-                                        .min(Long::compareTo)
-                                        .orElse(null);
-                                if (oldestKey != null) {
-                                    rotationEvents.remove(oldestKey);
-                                }
-                            }
-                        }
-                        handleServerData(dataNode);
-                    }
-                }
-                
-                // Xử lý ảnh mới - chỉ log nếu là ảnh mới thực sự (khác filename hoặc receivedAt lớn hơn)
-                if (root.has("latestEsp32Image")) {
-                    JsonNode imgNode = root.get("latestEsp32Image");
-                    Long receivedAt = longVal(imgNode, "receivedAt");
-                    String filename = text(imgNode, "filename");
-                    
-                    // Chỉ xử lý nếu là ảnh mới (filename khác hoặc receivedAt lớn hơn)
-                    boolean isNewImage = false;
-                    if (filename != null && receivedAt != null) {
-                        String lastFilename = lastImageFilename.get();
-                        Long lastReceivedAt = lastImageReceivedAt.get();
-                        
-                        // Ảnh mới nếu filename khác hoặc receivedAt lớn hơn
-                        if (!filename.equals(lastFilename) || (receivedAt > lastReceivedAt)) {
-                            isNewImage = true;
-                        }
-                    } else if (receivedAt != null && receivedAt > lastImageReceivedAt.get()) {
-                        isNewImage = true;
-                    }
-                    
-                    if (isNewImage) {
-                        persistImage(imgNode);
-                        lastImageReceivedAt.set(receivedAt);
-                        if (filename != null) {
-                            lastImageFilename.set(filename);
-                        }
-                        // Nếu snapshot có cả data rotation và image cùng lúc, dùng trực tiếp loại rác từ data
-                        // Nếu không, tìm trong rotationEvents
-                        String trashTypeForImage;
-                        if (trashTypeFromCurrentSnapshot != null) {
-                            // Snapshot có rotation data mới, dùng trực tiếp (ưu tiên tuyệt đối)
-                            trashTypeForImage = trashTypeFromCurrentSnapshot;
-                            log.debug("Using trash type from current snapshot rotation data: {} for image: {} at {}", 
-                                    trashTypeForImage, filename, receivedAt);
-                        } else {
-                            // Không có rotation data trong snapshot này, tìm trong rotationEvents
-                            trashTypeForImage = findTrashTypeForImage(receivedAt);
-                            log.debug("Using trash type from rotationEvents: {} for image: {} at {}", 
-                                    trashTypeForImage, filename, receivedAt);
-                        }
-                        logEvent("IMAGE", trashTypeForImage, receivedAt, filename);
-                    }
+        public boolean supportsPartialMessages() {
+            return true;
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            if (current == null) {
+                PartialMessageStream stream = new PartialMessageStream(queuedParts);
+                current = stream;
+                try {
+                    relay.lane.execute(() -> relay.process(stream));
+                } catch (RejectedExecutionException e) {
+                    log.debug("Relay lane stopped, dropping message");
+                    stream.abandon();
                 }
-                
-                log.debug("Live snapshot updated from socket payload");
-            } else {
-                log.debug("Unhandled socket message without type");
+            }
+            PartialMessageStream stream = current;
+            if (message.isLast()) {
+                current = null;
+            }
+            try {
+                stream.feed(message.getPayload(), message.isLast());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stream.abort();
             }
         }
 
         @Override
         public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            if (current != null) {
+                current.abort();
+                current = null;
+            }
             log.info("IoT WebSocket closed: {} ({})", status.getCode(), status.getReason());
-            scheduleReconnect();
+            relay.connectionManager.onDisconnected(url, status.getCode() + " " + status.getReason());
+            relay.scheduleReconnect();
+        }
+    }
+
+    /**
+     * Hands the work for a parsed message to {@code executor} under its device id.
+     *
+     * @return whether the task took over releasing the message's image buffer
+     */
+    private boolean dispatch(RelayMessageReader.Message message, BiConsumer<String, Runnable> executor) {
+        JsonNode root = message.root();
+        String type = root.path("type").asText(null);
+        if (type != null && !type.isEmpty()) {
+            JsonNode payload = root.path("payload");
+            String deviceId = deviceIdOf(root, payload);
+            long imageBytes = message.image() != null ? message.image().size() : 0;
+            switch (type) {
+                case "server:data" -> executor.accept(deviceId, instrumented(type, deviceId, payload, imageBytes,
+                        () -> handleServerData(deviceId, payload)));
+                case "server:image" -> {
+                    executor.accept(deviceId, instrumented(type, deviceId, payload, imageBytes, () -> {
+                        try {
+                            handleServerImage(deviceId, payload, message.image());
+                        } finally {
+                            message.release();
+                        }
+                    }));
+                    return true;
+                }
+                default -> log.debug("Unhandled WebSocket message type: {}", type);
+            }
+        } else if (root.has("latestEsp32Data") || root.has("latestEsp32Image")) {
+            String deviceId = deviceIdOf(root, root.path("latestEsp32Data"), root.path("latestEsp32Image"));
+            JsonNode latest = root.has("latestEsp32Image") ? root.path("latestEsp32Image") : root.path("latestEsp32Data");
+            long imageBytes = message.image() != null ? message.image().size() : 0;
+            executor.accept(deviceId, instrumented("snapshot", deviceId, latest, imageBytes, () -> {
+                try {
+                    handleSnapshot(deviceId, root, message.image());
+                } finally {
+                    message.release();
+                }
+            }));
+            return true;
+        } else {
+            log.debug("Unhandled socket message without type");
+        }
+        return false;
+    }
+
+    /**
+     * Counts the message now and times its handling and its lag behind the relay's {@code receivedAt}.
+     */
+    private Runnable instrumented(String type, String deviceId, JsonNode payload, long imageBytes, Runnable task) {
+        ingestMetrics.message(type, deviceId);
+        Long receivedAt = longVal(payload, "receivedAt");
+        return () -> {
+            IngestEvent event = new IngestEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                alertEngine.seen(deviceId);
+                task.run();
+            } catch (RuntimeException e) {
+                ingestMetrics.failure("handle");
+                throw e;
+            } finally {
+                ingestMetrics.handled(type, deviceId, start);
+                ingestMetrics.lag(type, deviceId, receivedAt);
+                if (event.shouldCommit()) {
+                    event.type = type;
+                    event.deviceId = deviceId;
+                    event.imageBytes = imageBytes;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses and handles one relay message on the calling thread, without the relay lane, sequence check or
+     * {@link IngestPipeline}. Entry point for the backend-benchmarks module.
+     */
+    void handleMessageNow(InputStream in) throws IOException {
+        RelayMessageReader.Message message = messageReader.read(in);
+        boolean handedOff = false;
+        try {
+            handedOff = dispatch(message, (deviceId, task) -> task.run());
+        } finally {
+            if (!handedOff) {
+                message.release();
+            }
+        }
+    }
+
+    /**
+     * Direct snapshot payload from socket ({@code latestEsp32Data} / {@code latestEsp32Image}).
+     */
+    private void handleSnapshot(String deviceId, JsonNode root, ImageBufferPool.Buffer image) {
+        DeviceState device = device(deviceId);
+        liveDataService.updateFromSocket(deviceId, root, image);
+        
+        // Xử lý data TRƯỚC để cập nhật currentTrashType trước khi log image
+        String trashTypeFromCurrentSnapshot = null; // Lưu loại rác từ snapshot hiện tại
+        if (root.has("latestEsp32Data")) {
+            JsonNode dataNode = root.get("latestEsp32Data");
+            String dataValue = text(dataNode, "data");
+            // Chỉ xử lý nếu có rotation data (ROTATE_CW/ROTATE_CCW)
+            if ("ROTATE_CW".equals(dataValue) || "ROTATE_CCW".equals(dataValue)) {
+                String mappedTrashType = mapRotationToTrashType(dataValue);
+                if (mappedTrashType != null) {
+                    trashTypeFromCurrentSnapshot = mappedTrashType; // Lưu loại rác từ snapshot này
+                    device.currentTrashType.set(mappedTrashType);
+                    liveDataService.updateTrashType(deviceId, mappedTrashType);
+                    Long dataReceivedAt = longVal(dataNode, "receivedAt");
+                    if (dataReceivedAt == null) {
+                        dataReceivedAt = System.currentTimeMillis();
+                    }
+                    persistRotationClassification(deviceId, mappedTrashType, dataReceivedAt,
+                            traceRecorder.record(dataNode.get("trace"), "backend.data"));
+                    // Lưu rotation event để map với ảnh sau này
+                    device.recordRotation(dataReceivedAt, mappedTrashType);
+                }
+                handleServerData(deviceId, dataNode);
+            }
+        }
+        
+        // Xử lý ảnh mới - chỉ log nếu là ảnh mới thực sự (khác filename hoặc receivedAt lớn hơn)
+        if (root.has("latestEsp32Image")) {
+            JsonNode imgNode = root.get("latestEsp32Image");
+            Long receivedAt = longVal(imgNode, "receivedAt");
+            String filename = text(imgNode, "filename");
+            
+            // Chỉ xử lý nếu là ảnh mới (filename khác hoặc receivedAt lớn hơn)
+            boolean isNewImage = false;
+            if (filename != null && receivedAt != null) {
+                String lastFilename = device.lastImageFilename.get();
+                Long lastReceivedAt = device.lastImageReceivedAt.get();
+                
+                // Ảnh mới nếu filename khác hoặc receivedAt lớn hơn
+                if (!filename.equals(lastFilename) || (receivedAt > lastReceivedAt)) {
+                    isNewImage = true;
+                }
+            } else if (receivedAt != null && receivedAt > device.lastImageReceivedAt.get()) {
+                isNewImage = true;
+            }
+            
+            if (isNewImage) {
+                persistImage(deviceId, imgNode, image);
+                device.lastImageReceivedAt.set(receivedAt);
+                if (filename != null) {
+                    device.lastImageFilename.set(filename);
+                }
+                // Nếu snapshot có cả data rotation và image cùng lúc, dùng trực tiếp loại rác từ data
+                // Nếu không, tìm trong rotationEvents
+                String trashTypeForImage;
+                if (trashTypeFromCurrentSnapshot != null) {
+                    // Snapshot có rotation data mới, dùng trực tiếp (ưu tiên tuyệt đối)
+                    trashTypeForImage = trashTypeFromCurrentSnapshot;
+                    log.debug("Using trash type from current snapshot rotation data: {} for image: {} at {}", 
+                            trashTypeForImage, filename, receivedAt);
+                } else {
+                    // Không có rotation data trong snapshot này, tìm trong rotationEvents
+                    trashTypeForImage = correlateImage(deviceId, device, receivedAt);
+                    log.debug("Using trash type from rotationEvents: {} for image: {} at {}", 
+                            trashTypeForImage, filename, receivedAt);
+                }
+                logEvent(deviceId, "IMAGE", trashTypeForImage, receivedAt, filename,
+                        traceRecorder.record(imgNode.get("trace"), "backend.image"));
+            }
         }
+        
+        log.debug("Live snapshot updated from socket payload");
     }
 
-    private void handleServerData(JsonNode payload) {
+    private void handleServerData(String deviceId, JsonNode payload) {
+        DeviceState device = device(deviceId);
         JsonNode dataNode = payload.has("data") ? payload.get("data") : payload;
         long receivedAt = payload.path("receivedAt").asLong(System.currentTimeMillis());
+        String traceId = traceRecorder.record(payload.get("trace"), "backend.data");
 
         String dataValue = dataNode.isTextual() ? dataNode.asText() : dataNode.path("data").asText(null);
         String trashType = mapRotationToTrashType(dataValue);
         if (trashType != null) {
-            currentTrashType.set(trashType);
-            liveDataService.updateTrashType(trashType);
-            persistRotationClassification(trashType, receivedAt);
+            device.currentTrashType.set(trashType);
+            liveDataService.updateTrashType(deviceId, trashType);
+            persistRotationClassification(deviceId, trashType, receivedAt, traceId);
             // Lưu rotation event để map với ảnh sau này
-            rotationEvents.put(receivedAt, trashType);
-            // Giữ chỉ 100 events gần nhất để tránh memory leak
-            if (rotationEvents.size() > 100) {
-                Long oldestKey = rotationEvents.keySet().stream()
-                        .min(Long::compareTo)
-                        .orElse(null);
-                if (oldestKey != null) {
-                    rotationEvents.remove(oldestKey);
-                }
-            }
+            device.recordRotation(receivedAt, trashType);
         }
 
-        updateBinStatus(dataNode, receivedAt);
-        persistClassificationLog(dataNode, receivedAt);
-        updateDeviceInfo(dataNode);
-        logEvent("DATA", trashType != null ? trashType : currentTrashType.get(), receivedAt);
+        updateBinStatus(deviceId, dataNode, receivedAt);
+        persistClassificationLog(deviceId, dataNode, receivedAt, traceId);
+        updateDeviceInfo(deviceId, dataNode);
+        logEvent(deviceId, "DATA", trashType != null ? trashType : device.currentTrashType.get(), receivedAt, null,
+                traceId);
     }
 
-    private void updateBinStatus(JsonNode dataNode, long receivedAtMillis) {
+    private void updateBinStatus(String deviceId, JsonNode dataNode, long receivedAtMillis) {
         Double organic = readDouble(dataNode, "organicLevel");
         Double inorganic = readDouble(dataNode, "inorganicLevel");
 
@@ -297,18 +556,12 @@ public class SocketSubscriberService {
             return;
         }
 
-        BinStatus status = binStatusRepository.findAll().stream().findFirst().orElse(new BinStatus());
-        if (organic != null) {
-            status.setOrganicLevel(organic);
-        }
-        if (inorganic != null) {
-            status.setInorganicLevel(inorganic);
-        }
-        status.setUpdatedAt(toLocalDateTime(receivedAtMillis));
-        binStatusRepository.save(status);
+        stateWriteCoalescer.recordLevels(deviceId, organic, inorganic, toLocalDateTime(receivedAtMillis));
+        liveStreamService.markOverviewDirty(deviceId);
+        alertEngine.levels(deviceId, organic, inorganic);
     }
 
-    private void persistClassificationLog(JsonNode dataNode, long receivedAtMillis) {
+    private void persistClassificationLog(String deviceId, JsonNode dataNode, long receivedAtMillis, String traceId) {
         JsonNode classification = dataNode.path("classification");
         if (classification.isMissingNode() || classification.isNull()) {
             return;
@@ -323,41 +576,35 @@ public class SocketSubscriberService {
         }
 
         ClassificationLog logEntry = new ClassificationLog();
+        logEntry.setDeviceId(deviceId);
         logEntry.setTimestamp(toLocalDateTime(receivedAtMillis));
         logEntry.setType(mapType(rawType));
         logEntry.setConfidence(confidence != null ? confidence : 0.0);
         logEntry.setStatus(StringUtils.hasText(status) ? status : "unknown");
+        logEntry.setTraceId(traceId);
 
-        classificationLogRepository.save(logEntry);
+        ingestJournal.appendLog(logEntry);
+        alertEngine.classification(deviceId, confidence, logEntry.getStatus());
     }
 
-    private void updateDeviceInfo(JsonNode dataNode) {
+    private void updateDeviceInfo(String deviceId, JsonNode dataNode) {
         JsonNode device = dataNode.path("device");
         if (device.isMissingNode() || device.isNull()) {
             return;
         }
 
-        DeviceInfoEntity entity = deviceInfoRepository.findAll().stream().findFirst().orElse(new DeviceInfoEntity());
-        if (device.hasNonNull("model")) {
-            entity.setModel(device.get("model").asText());
-        }
-        if (device.hasNonNull("firmware")) {
-            entity.setFirmware(device.get("firmware").asText());
-        }
-        if (device.hasNonNull("ipAddress")) {
-            entity.setIpAddress(device.get("ipAddress").asText());
-        }
-        if (device.hasNonNull("uptime")) {
-            entity.setUptime(device.get("uptime").asText());
-        }
-
         // Only save if we have at least one populated field
-        if (StringUtils.hasText(entity.getModel())
-                || StringUtils.hasText(entity.getFirmware())
-                || StringUtils.hasText(entity.getIpAddress())
-                || StringUtils.hasText(entity.getUptime())) {
-            deviceInfoRepository.save(entity);
+        if (!device.hasNonNull("model") && !device.hasNonNull("firmware")
+                && !device.hasNonNull("ipAddress") && !device.hasNonNull("uptime")) {
+            return;
         }
+
+        stateWriteCoalescer.recordDevice(
+                deviceId,
+                text(device, "model"),
+                text(device, "firmware"),
+                text(device, "ipAddress"),
+                text(device, "uptime"));
     }
 
     private Double readDouble(JsonNode node, String field) {
@@ -383,46 +630,72 @@ public class SocketSubscriberService {
                 .toLocalDateTime();
     }
 
-    private void handleServerImage(JsonNode payload) {
+    private void handleServerImage(String deviceId, JsonNode payload, ImageBufferPool.Buffer image) {
+        DeviceState device = device(deviceId);
         String filename = text(payload, "filename");
         Long receivedAt = longVal(payload, "receivedAt");
         
         // Chỉ xử lý nếu là ảnh mới thực sự (filename khác hoặc receivedAt lớn hơn)
         boolean isNewImage = false;
         if (filename != null && receivedAt != null) {
-            String lastFilename = lastImageFilename.get();
-            Long lastReceivedAt = lastImageReceivedAt.get();
+            String lastFilename = device.lastImageFilename.get();
+            Long lastReceivedAt = device.lastImageReceivedAt.get();
             
             // Ảnh mới nếu filename khác hoặc receivedAt lớn hơn
             if (!filename.equals(lastFilename) || (receivedAt > lastReceivedAt)) {
                 isNewImage = true;
             }
-        } else if (receivedAt != null && receivedAt > lastImageReceivedAt.get()) {
+        } else if (receivedAt != null && receivedAt > device.lastImageReceivedAt.get()) {
             isNewImage = true;
         }
         
         if (isNewImage) {
-            persistImage(payload);
-            lastImageReceivedAt.set(receivedAt);
+            persistImage(deviceId, payload, image);
+            device.lastImageReceivedAt.set(receivedAt);
             if (filename != null) {
-                lastImageFilename.set(filename);
+                device.lastImageFilename.set(filename);
             }
-            liveDataService.updateFromSocket(objectMapper.createObjectNode().set("latestEsp32Image", payload));
+            liveDataService.updateFromSocket(deviceId, objectMapper.createObjectNode().set("latestEsp32Image", payload), image);
             
             // Tìm loại rác từ rotation event gần nhất (trong vòng 10 giây trước khi nhận ảnh)
-            String trashTypeForImage = findTrashTypeForImage(receivedAt);
-            logEvent("IMAGE", trashTypeForImage, receivedAt, filename);
+            String trashTypeForImage = correlateImage(deviceId, device, receivedAt);
+            logEvent(deviceId, "IMAGE", trashTypeForImage, receivedAt, filename,
+                    traceRecorder.record(payload.get("trace"), "backend.image"));
         }
     }
     
+    /**
+     * {@link #findTrashTypeForImage} with the hit/miss counted and recorded as a JFR event.
+     */
+    private String correlateImage(String deviceId, DeviceState device, Long receivedAt) {
+        ImageCorrelationEvent event = new ImageCorrelationEvent();
+        event.begin();
+        Optional<String> rotation = findRotationForImage(device, receivedAt);
+        ingestMetrics.correlation(deviceId, rotation.isPresent());
+        if (event.shouldCommit()) {
+            event.deviceId = deviceId;
+            event.matched = rotation.isPresent();
+            event.rotations = device.rotationEvents.size();
+            event.commit();
+        }
+        return rotation.orElseGet(device.currentTrashType::get);
+    }
+
+    /**
+     * Tìm loại rác từ rotation event gần nhất với thời điểm nhận ảnh, hoặc currentTrashType nếu không tìm thấy
+     */
+    static String findTrashTypeForImage(DeviceState device, Long imageReceivedAt) {
+        return findRotationForImage(device, imageReceivedAt).orElseGet(device.currentTrashType::get);
+    }
+
     /**
      * Tìm loại rác từ rotation event gần nhất với thời điểm nhận ảnh
      * Tìm trong khoảng 10 giây trước khi nhận ảnh
      * Ưu tiên rotation event có timestamp gần nhất với imageReceivedAt
      */
-    private String findTrashTypeForImage(Long imageReceivedAt) {
+    static Optional<String> findRotationForImage(DeviceState device, Long imageReceivedAt) {
         if (imageReceivedAt == null) {
-            return currentTrashType.get();
+            return Optional.empty();
         }
         
         // Tìm rotation event gần nhất trong vòng 10 giây trước khi nhận ảnh
@@ -432,7 +705,7 @@ public class SocketSubscriberService {
         long minTime = imageReceivedAt - timeWindowBefore;
         long maxTime = imageReceivedAt + timeWindowAfter;
         
-        return rotationEvents.entrySet().stream()
+        return device.rotationEvents.entrySet().stream()
                 .filter(entry -> entry.getKey() >= minTime && entry.getKey() <= maxTime)
                 .max((e1, e2) -> {
                     // Ưu tiên rotation event có timestamp gần nhất với imageReceivedAt
@@ -451,39 +724,39 @@ public class SocketSubscriberService {
                     }
                     return Long.compare(e2.getKey(), e1.getKey()); // Lấy event mới nhất
                 })
-                .map(entry -> entry.getValue())
-                .orElseGet(() -> {
-                    // Nếu không tìm thấy trong time window, dùng currentTrashType
-                    String current = currentTrashType.get();
-                    return "unknown".equals(current) ? "unknown" : current;
-                });
+                .map(entry -> entry.getValue());
     }
 
-    private void persistImage(JsonNode img) {
+    /**
+     * @param image bytes decoded from the message's base64 {@code data} by {@link RelayMessageReader}
+     */
+    private void persistImage(String deviceId, JsonNode img, ImageBufferPool.Buffer image) {
         if (img == null || img.isMissingNode()) {
             return;
         }
         String filename = text(img, "filename");
         String contentType = text(img, "contentType");
-        String data = text(img, "data");
         Integer size = intVal(img, "size");
         Long receivedAt = longVal(img, "receivedAt");
 
-        if (!StringUtils.hasText(filename) || !StringUtils.hasText(contentType) || !StringUtils.hasText(data)) {
+        if (!StringUtils.hasText(filename) || !StringUtils.hasText(contentType) || image == null || image.size() == 0) {
             log.warn("Skipping image persistence due to missing filename/contentType/data");
             return;
         }
 
         try {
+            String blobKey = blobStore.put(image.array(), 0, image.size());
+
             Esp32ImageEntity entity = new Esp32ImageEntity();
+            entity.setDeviceId(deviceId);
             entity.setFilename(filename);
             entity.setContentType(contentType);
-            entity.setData(data);
-            entity.setSize(size != null ? size : data.length());
+            entity.setBlobKey(blobKey);
+            entity.setSize(size != null ? size : image.size());
             entity.setReceivedAt(receivedAt != null ? receivedAt : System.currentTimeMillis());
-            esp32ImageRepository.save(entity);
-            log.info("Stored ESP32 image: {}", filename);
+            ingestJournal.appendImage(entity);
         } catch (Exception e) {
+            ingestMetrics.failure("image");
             log.error("Failed to persist ESP32 image: {}", e.getMessage(), e);
         }
     }
@@ -500,34 +773,20 @@ public class SocketSubscriberService {
         return node != null && node.hasNonNull(field) ? node.get(field).asLong() : null;
     }
 
-    private void logEvent(String eventType, String trashType, Long receivedAt) {
-        logEvent(eventType, trashType, receivedAt, null);
-    }
-
-    private void logEvent(String eventType, String trashType, Long receivedAt, String filename) {
+    private void logEvent(String deviceId, String eventType, String trashType, Long receivedAt, String filename,
+                          String traceId) {
         try {
-            // Kiểm tra xem đã log event này chưa (để tránh duplicate)
-            // Với IMAGE event, kiểm tra filename và receivedAt
-            if ("IMAGE".equals(eventType) && filename != null && receivedAt != null) {
-                // Kiểm tra xem đã có event với cùng filename và receivedAt chưa
-                List<Esp32EventLog> existing = esp32EventLogRepository.findAll().stream()
-                        .filter(log -> "IMAGE".equals(log.getEventType())
-                                && filename.equals(log.getFilename())
-                                && receivedAt.equals(log.getReceivedAt()))
-                        .toList();
-                if (!existing.isEmpty()) {
-                    log.debug("Skipping duplicate IMAGE event for filename: {} at {}", filename, receivedAt);
-                    return;
-                }
-            }
-            
+            // Duplicate IMAGE events are skipped when the journal applies them (see IngestJournal)
             Esp32EventLog logEntry = new Esp32EventLog();
+            logEntry.setDeviceId(deviceId);
             logEntry.setEventType(eventType);
             logEntry.setTrashType(StringUtils.hasText(trashType) ? trashType : "unknown");
             logEntry.setReceivedAt(receivedAt != null ? receivedAt : System.currentTimeMillis());
             logEntry.setFilename(filename);
-            esp32EventLogRepository.save(logEntry);
+            logEntry.setTraceId(traceId);
+            ingestJournal.appendEvent(logEntry);
         } catch (Exception e) {
+            ingestMetrics.failure("event");
             log.error("Failed to log ESP32 event: {}", e.getMessage(), e);
         }
     }
@@ -541,17 +800,59 @@ public class SocketSubscriberService {
         };
     }
 
-    private void persistRotationClassification(String trashType, long receivedAt) {
+    private void persistRotationClassification(String deviceId, String trashType, long receivedAt, String traceId) {
         try {
             ClassificationLog logEntry = new ClassificationLog();
+            logEntry.setDeviceId(deviceId);
             logEntry.setTimestamp(toLocalDateTime(receivedAt));
             logEntry.setType("organic".equals(trashType) ? "Hữu cơ" : "Vô cơ");
             logEntry.setConfidence(0.0);
             logEntry.setStatus("ws");
-            classificationLogRepository.save(logEntry);
+            logEntry.setTraceId(traceId);
+            ingestJournal.appendLog(logEntry);
         } catch (Exception e) {
+            ingestMetrics.failure("rotation");
             log.warn("Failed to persist rotation classification: {}", e.getMessage());
         }
     }
+
+    private DeviceState device(String deviceId) {
+        return devices.computeIfAbsent(deviceId, id -> new DeviceState());
+    }
+
+    /**
+     * Device id of a message: the first {@code deviceId} field found on the given nodes, else the default device.
+     */
+    private String deviceIdOf(JsonNode... nodes) {
+        for (JsonNode node : nodes) {
+            String deviceId = text(node, "deviceId");
+            if (StringUtils.hasText(deviceId)) {
+                return Devices.normalize(deviceId);
+            }
+        }
+        return Devices.DEFAULT;
+    }
+
+    /**
+     * Classification context of one device: current trash type, last image seen and recent rotation events.
+     */
+    static final class DeviceState {
+        private final AtomicReference<String> currentTrashType = new AtomicReference<>("unknown");
+        private final AtomicReference<Long> lastImageReceivedAt = new AtomicReference<>(0L);
+        private final AtomicReference<String> lastImageFilename = new AtomicReference<>(null);
+        // Lưu trữ mapping giữa thời gian và loại rác từ rotation events
+        // Key: timestamp (millis), Value: trashType
+        private final ConcurrentHashMap<Long, String> rotationEvents = new ConcurrentHashMap<>();
+
+        void recordRotation(long receivedAt, String trashType) {
+            rotationEvents.put(receivedAt, trashType);
+            // Giữ chỉ 100 events gần nhất để tránh memory leak
+            if (rotationEvents.size() > 100) {
+                rotationEvents.keySet().stream()
+                        .min(Long::compareTo)
+                        .ifPresent(rotationEvents::remove);
+            }
+        }
+    }
 }
 
@@ -0,0 +1,122 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.BinStatus;
+import com.example.smarttrash.model.DeviceInfoEntity;
+import com.example.smarttrash.model.SettingsEntity;
+import com.example.smarttrash.repository.BinStatusRepository;
+import com.example.smarttrash.repository.DeviceInfoRepository;
+import com.example.smarttrash.repository.SettingsRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Write-through cache for the rows read on every request and every sensor message:
+ * the global settings row, and the bin status / device info row of each device.
+ *
+ * Per-device rows are kept in concurrent maps keyed by device id, so a read is one hash lookup
+ * and the database is only queried the first time a device is seen. Entries are created by writes, and by reads
+ * only when the device has a row: device ids in request URLs are client input and must not grow the maps.
+ */
+@Service
+public class StateCacheService {
+
+    private final BinStatusRepository binStatusRepository;
+    private final DeviceInfoRepository deviceInfoRepository;
+    private final SingletonRowCache<SettingsEntity> settings;
+    private final Map<String, SingletonRowCache<BinStatus>> binStatus = new ConcurrentHashMap<>();
+    private final Map<String, SingletonRowCache<DeviceInfoEntity>> deviceInfo = new ConcurrentHashMap<>();
+
+    public StateCacheService(SettingsRepository settingsRepository,
+                             BinStatusRepository binStatusRepository,
+                             DeviceInfoRepository deviceInfoRepository) {
+        this.binStatusRepository = binStatusRepository;
+        this.deviceInfoRepository = deviceInfoRepository;
+        this.settings = new SingletonRowCache<>("settings", settingsRepository,
+                () -> settingsRepository.findAll().stream().findFirst(), SettingsEntity::new);
+    }
+
+    public Optional<SettingsEntity> getSettings() {
+        return settings.get();
+    }
+
+    public SettingsEntity updateSettings(Consumer<SettingsEntity> mutator) {
+        return settings.update(mutator);
+    }
+
+    public Optional<BinStatus> getBinStatus(String deviceId) {
+        SingletonRowCache<BinStatus> cached = binStatus.get(deviceId);
+        if (cached != null) {
+            return cached.get();
+        }
+        return binStatusRepository.findByDeviceId(deviceId).isPresent() ? binStatus(deviceId).get() : Optional.empty();
+    }
+
+    public BinStatus updateBinStatus(String deviceId, Consumer<BinStatus> mutator) {
+        return binStatus(deviceId).update(mutator);
+    }
+
+    public BinStatus stageBinStatus(String deviceId, Consumer<BinStatus> mutator) {
+        return binStatus(deviceId).stage(mutator);
+    }
+
+    /**
+     * @return the bin status as saved, empty when nothing was staged since the last flush
+     */
+    public Optional<BinStatus> flushBinStatus(String deviceId) {
+        SingletonRowCache<BinStatus> cached = binStatus.get(deviceId);
+        return cached != null ? cached.flush() : Optional.empty();
+    }
+
+    public Optional<DeviceInfoEntity> getDeviceInfo(String deviceId) {
+        SingletonRowCache<DeviceInfoEntity> cached = deviceInfo.get(deviceId);
+        if (cached != null) {
+            return cached.get();
+        }
+        return deviceInfoRepository.findByDeviceId(deviceId).isPresent() ? deviceInfo(deviceId).get() : Optional.empty();
+    }
+
+    public DeviceInfoEntity updateDeviceInfo(String deviceId, Consumer<DeviceInfoEntity> mutator) {
+        return deviceInfo(deviceId).update(mutator);
+    }
+
+    public DeviceInfoEntity stageDeviceInfo(String deviceId, Consumer<DeviceInfoEntity> mutator) {
+        return deviceInfo(deviceId).stage(mutator);
+    }
+
+    public void flushDeviceInfo(String deviceId) {
+        SingletonRowCache<DeviceInfoEntity> cached = deviceInfo.get(deviceId);
+        if (cached != null) {
+            cached.flush();
+        }
+    }
+
+    /**
+     * Devices whose bin status has been written since startup, or read and found in the database.
+     */
+    public Set<String> cachedDeviceIds() {
+        return binStatus.keySet();
+    }
+
+    private SingletonRowCache<BinStatus> binStatus(String deviceId) {
+        return binStatus.computeIfAbsent(deviceId, id -> new SingletonRowCache<>("bin_status[" + id + "]",
+                binStatusRepository, () -> binStatusRepository.findByDeviceId(id), () -> {
+            BinStatus status = new BinStatus();
+            status.setDeviceId(id);
+            return status;
+        }));
+    }
+
+    private SingletonRowCache<DeviceInfoEntity> deviceInfo(String deviceId) {
+        return deviceInfo.computeIfAbsent(deviceId, id -> new SingletonRowCache<>("device_info[" + id + "]",
+                deviceInfoRepository, () -> deviceInfoRepository.findByDeviceId(id), () -> {
+            DeviceInfoEntity entity = new DeviceInfoEntity();
+            entity.setDeviceId(id);
+            return entity;
+        }));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.BinStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces bin level and device info updates from the sensor stream.
+ *
+ * Every reading is published to {@link StateCacheService} immediately so live reads stay current,
+ * but the row is only written to MySQL when a level moves by more than the configured threshold,
+ * when the device identity (model/firmware/IP) changes, or on the periodic flush.
+ * Thresholds are tracked per device. Flushes triggered by a reading run on a background thread,
+ * never on the ingest thread that recorded it.
+ */
+@Slf4j
+@Service
+public class StateWriteCoalescer {
+
+    private final StateCacheService stateCache;
+    private final ResponseCache responseCache;
+
+    @Value("${app.state.level-threshold:5.0}")
+    private double levelThreshold;
+
+    // Levels as of the last flush per device; NaN until the first flush so the first reading is written promptly
+    private final Map<String, FlushedLevels> flushedLevels = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> stagedDevices = new ConcurrentHashMap<>();
+    // Devices with a triggered flush queued, so a burst of readings queues one flush
+    private final Set<String> pendingLevelFlushes = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingDeviceFlushes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "state-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StateWriteCoalescer(StateCacheService stateCache, ResponseCache responseCache) {
+        this.stateCache = stateCache;
+        this.responseCache = responseCache;
+    }
+
+    public void recordLevels(String deviceId, Double organic, Double inorganic, LocalDateTime updatedAt) {
+        BinStatus staged = stateCache.stageBinStatus(deviceId, status -> {
+            if (organic != null) {
+                status.setOrganicLevel(organic);
+            }
+            if (inorganic != null) {
+                status.setInorganicLevel(inorganic);
+            }
+            status.setUpdatedAt(updatedAt);
+        });
+        responseCache.invalidate(deviceId);
+
+        FlushedLevels flushed = flushedLevels.computeIfAbsent(deviceId, id -> new FlushedLevels());
+        if (exceedsThreshold(staged.getOrganicLevel(), flushed.organic)
+                || exceedsThreshold(staged.getInorganicLevel(), flushed.inorganic)) {
+            if (pendingLevelFlushes.add(deviceId)) {
+                flushExecutor.execute(() -> {
+                    pendingLevelFlushes.remove(deviceId);
+                    flushBinStatus(deviceId);
+                });
+            }
+        }
+    }
+
+    public void recordDevice(String deviceId, String model, String firmware, String ipAddress, String uptime) {
+        AtomicBoolean identityChanged = new AtomicBoolean(false);
+        stagedDevices.put(deviceId, Boolean.TRUE);
+        stateCache.stageDeviceInfo(deviceId, entity -> {
+            if (model != null && !Objects.equals(model, entity.getModel())) {
+                entity.setModel(model);
+                identityChanged.set(true);
+            }
+            if (firmware != null && !Objects.equals(firmware, entity.getFirmware())) {
+                entity.setFirmware(firmware);
+                identityChanged.set(true);
+            }
+            if (ipAddress != null && !Objects.equals(ipAddress, entity.getIpAddress())) {
+                entity.setIpAddress(ipAddress);
+                identityChanged.set(true);
+            }
+            // Uptime changes on every message; it only goes out with the periodic flush
+            if (uptime != null) {
+                entity.setUptime(uptime);
+            }
+        });
+
+        responseCache.invalidate(deviceId);
+        if (identityChanged.get() && pendingDeviceFlushes.add(deviceId)) {
+            flushExecutor.execute(() -> {
+                pendingDeviceFlushes.remove(deviceId);
+                flushDeviceInfo(deviceId);
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.state.flush-interval-ms:5000}")
+    public void flushAll() {
+        flushedLevels.keySet().forEach(this::flushBinStatus);
+        stagedDevices.keySet().forEach(this::flushDeviceInfo);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushExecutor.shutdown();
+        flushAll();
+    }
+
+    private void flushBinStatus(String deviceId) {
+        try {
+            // The baseline is what was saved, not the cache, which may already hold newer staged readings
+            stateCache.flushBinStatus(deviceId).ifPresent(saved -> {
+                FlushedLevels flushed = flushedLevels.computeIfAbsent(deviceId, id -> new FlushedLevels());
+                flushed.organic = saved.getOrganicLevel();
+                flushed.inorganic = saved.getInorganicLevel();
+            });
+        } catch (Exception e) {
+            log.warn("Failed to flush bin status of {}: {}", deviceId, e.getMessage());
+        }
+    }
+
+    private void flushDeviceInfo(String deviceId) {
+        try {
+            stateCache.flushDeviceInfo(deviceId);
+        } catch (Exception e) {
+            log.warn("Failed to flush device info of {}: {}", deviceId, e.getMessage());
+        }
+    }
+
+    private boolean exceedsThreshold(double value, double flushed) {
+        return Double.isNaN(flushed) || Math.abs(value - flushed) >= levelThreshold;
+    }
+
+    private static final class FlushedLevels {
+        volatile double organic = Double.NaN;
+        volatile double inorganic = Double.NaN;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.StageLatency;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-hop latency of the image → classification → rotation pipeline.
+ *
+ * The relay assigns each {@code esp32:image}/{@code esp32:data} a trace ({@code {"id", "stages": {stage: epoch
+ * millis}}}) that the classifier copies onto its rotation, so one trace covers {@code device}, {@code relay.image},
+ * {@code classifier.received}, {@code classifier.sent}, {@code relay.data}, {@code backend.data} and
+ * {@code backend.persisted}. Every pair of stages adjacent in time is a hop with its own histogram, recorded once
+ * per trace; the last {@code app.trace.recent} traces are kept so stages stamped later (persisted by the journal, a
+ * snapshot resent after reconnect) extend them instead of counting again. Stages come from different clocks
+ * ({@code device} has second resolution), so hops across machines include their clock offset.
+ */
+@Slf4j
+@Service
+public class TraceRecorder {
+
+    // Upper bounds of the histogram buckets in ms; the last bucket takes everything above
+    private static final long[] BUCKET_BOUNDS_MS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 60_000, Long.MAX_VALUE};
+
+    // Stage names come from the message, so the number of distinct hops is capped
+    private static final int MAX_HOPS = 64;
+    private static final int MAX_STAGES = 16;
+
+    private final Map<String, Histogram> hops = new ConcurrentHashMap<>();
+    private final Map<String, Trace> recent;
+
+    public TraceRecorder(@Value("${app.trace.recent:1000}") int recentCapacity) {
+        this.recent = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Trace> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+    }
+
+    /**
+     * Merges the message's {@code trace} node into the trace it belongs to and stamps {@code stage} now.
+     *
+     * @return the trace id, or null when the message carries no trace
+     */
+    public String record(JsonNode traceNode, String stage) {
+        if (traceNode == null || !traceNode.hasNonNull("id")) {
+            return null;
+        }
+        String traceId = traceNode.get("id").asText();
+        Map<String, Long> stages = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = traceNode.path("stages").fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNumber()) {
+                stages.put(field.getKey(), field.getValue().asLong());
+            }
+        }
+        stages.putIfAbsent(stage, System.currentTimeMillis());
+        merge(traceId, stages, true);
+        return traceId;
+    }
+
+    /**
+     * Stamps {@code stage} on a trace that is still in the recent ring.
+     */
+    public void stage(String traceId, String stage) {
+        if (traceId != null) {
+            merge(traceId, Map.of(stage, System.currentTimeMillis()), false);
+        }
+    }
+
+    private void merge(String traceId, Map<String, Long> stages, boolean create) {
+        List<Hop> newHops = new ArrayList<>();
+        synchronized (recent) {
+            Trace trace = recent.get(traceId);
+            if (trace == null) {
+                if (!create) {
+                    return;
+                }
+                trace = new Trace();
+                recent.put(traceId, trace);
+            }
+            Set<String> added = new HashSet<>();
+            for (Map.Entry<String, Long> entry : stages.entrySet()) {
+                if (trace.stages.size() < MAX_STAGES
+                        && trace.stages.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    added.add(entry.getKey());
+                }
+            }
+            // Stages do not arrive in time order (a snapshot resent after reconnect, stamps copied from the relay),
+            // so hops are taken between neighbours by timestamp; the sort is stable for equal stamps
+            List<Map.Entry<String, Long>> ordered = new ArrayList<>(trace.stages.entrySet());
+            ordered.sort(Map.Entry.comparingByValue());
+            for (int i = 0; i < ordered.size(); i++) {
+                if (!added.contains(ordered.get(i).getKey())) {
+                    continue;
+                }
+                if (i > 0) {
+                    newHops.add(hop(ordered.get(i - 1), ordered.get(i)));
+                } else if (ordered.size() > 1 && !added.contains(ordered.get(1).getKey())) {
+                    // A new earliest stage: its hop into the next one, which was not new and has no hop from it yet
+                    newHops.add(hop(ordered.get(0), ordered.get(1)));
+                }
+            }
+        }
+        for (Hop hop : newHops) {
+            Histogram histogram = hops.get(hop.name());
+            if (histogram == null) {
+                if (hops.size() >= MAX_HOPS) {
+                    log.debug("Ignoring trace hop {}: too many distinct hops", hop.name());
+                    continue;
+                }
+                histogram = hops.computeIfAbsent(hop.name(), name -> new Histogram());
+            }
+            histogram.record(hop.millis());
+        }
+    }
+
+    public Optional<Map<String, Long>> trace(String traceId) {
+        synchronized (recent) {
+            Trace trace = recent.get(traceId);
+            return trace == null ? Optional.empty() : Optional.of(new LinkedHashMap<>(trace.stages));
+        }
+    }
+
+    public List<StageLatency> latencies() {
+        return hops.entrySet().stream()
+                .map(entry -> entry.getValue().summary(entry.getKey()))
+                .sorted((a, b) -> a.hop().compareTo(b.hop()))
+                .toList();
+    }
+
+    private static Hop hop(Map.Entry<String, Long> from, Map.Entry<String, Long> to) {
+        return new Hop(from.getKey() + "->" + to.getKey(), to.getValue() - from.getValue());
+    }
+
+    private record Hop(String name, long millis) {
+    }
+
+    private static final class Trace {
+        private final Map<String, Long> stages = new LinkedHashMap<>();
+    }
+
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length];
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long millis) {
+            // Clock offset between machines can make a hop negative
+            long value = Math.max(0, millis);
+            int bucket = 0;
+            while (value > BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        StageLatency summary(String hop) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long maxMs = max.get();
+            return new StageLatency(hop, total, total == 0 ? 0 : (double) sum.sum() / total,
+                    percentile(counts, total, 0.50, maxMs), percentile(counts, total, 0.90, maxMs),
+                    percentile(counts, total, 0.99, maxMs), maxMs);
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long maxMs) {
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(BUCKET_BOUNDS_MS[i], maxMs);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.smarttrash.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for rows moved out of MySQL by the retention job.
+ *
+ * Each table has its own directory with one sub-directory per day ({@code logs/2024-05-01/...}).
+ * A segment is one archived chunk of rows for one day, stored as gzip-compressed JSON lines.
+ * Per table, an append-only {@code index.log} records each segment's file, time range, id range and row count;
+ * it is replayed into memory on startup and used to skip segments that cannot match a query.
+ * As in {@link LocalSegmentBlobStore}, a segment is fully written and forced before its index line is appended.
+ */
+@Slf4j
+public class ArchiveStore {
+
+    private static final String INDEX_FILE = "index.log";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, List<Segment>> segments = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    public ArchiveStore(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+        log.info("Archive at {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * Appends rows to the archive of {@code table}, one segment per day they fall on.
+     * Returns only once the rows are durable, so the caller may then delete them from the database.
+     */
+    public <T> void append(String table, List<T> rows, ToLongFunction<T> timeOf, ToLongFunction<T> idOf) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, List<T>> byDay = new LinkedHashMap<>();
+        for (T row : rows) {
+            LocalDate day = Instant.ofEpochMilli(timeOf.applyAsLong(row)).atZone(zone).toLocalDate();
+            byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(row);
+        }
+
+        synchronized (writeLock) {
+            List<Segment> tableSegments = segments(table);
+            ObjectWriter writer = objectMapper.writer();
+            for (Map.Entry<LocalDate, List<T>> day : byDay.entrySet()) {
+                List<T> dayRows = day.getValue();
+                long minTs = Long.MAX_VALUE, maxTs = Long.MIN_VALUE, minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+                for (T row : dayRows) {
+                    long ts = timeOf.applyAsLong(row);
+                    long id = idOf.applyAsLong(row);
+                    minTs = Math.min(minTs, ts);
+                    maxTs = Math.max(maxTs, ts);
+                    minId = Math.min(minId, id);
+                    maxId = Math.max(maxId, id);
+                }
+
+                String file = day.getKey() + "/" + minId + "-" + maxId + "-" + System.currentTimeMillis() + ".jsonl.gz";
+                Path target = directory.resolve(table).resolve(file);
+                Files.createDirectories(target.getParent());
+                Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8))) {
+                    for (T row : dayRows) {
+                        out.write(writer.writeValueAsString(row));
+                        out.write('\n');
+                    }
+                }
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+                Segment segment = new Segment(file, minTs, maxTs, minId, maxId, dayRows.size());
+                appendIndexLine(table, segment);
+                tableSegments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Newest archived time of {@code table} in epoch millis, or {@link Long#MIN_VALUE} if nothing is archived.
+     */
+    public long maxTime(String table) {
+        return segments(table).stream().mapToLong(Segment::maxTs).max().orElse(Long.MIN_VALUE);
+    }
+
+    /**
+     * Reads up to {@code limit} rows matching {@code filter}, ordered by {@code order}, from the segments whose
+     * time range overlaps {@code [fromMs, toMs)}. Segments are read newest first and reading stops as soon as
+     * the remaining segments are all older than the rows already collected. Rows archived twice
+     * (a crash between archiving and deleting) are returned once.
+     */
+    public <T> List<T> read(String table, Class<T> type, long fromMs, long toMs, Predicate<T> filter,
+                            Comparator<T> order, ToLongFunction<T> timeOf, ToLongFunction<T> idOf,
+                            int limit) throws IOException {
+        List<Segment> candidates = segments(table).stream()
+                .filter(s -> s.maxTs() >= fromMs && s.minTs() < toMs)
+                .sorted(Comparator.comparingLong(Segment::maxTs).reversed())
+                .toList();
+
+        Map<Long, T> collected = new LinkedHashMap<>();
+        List<T> best = List.of();
+        for (Segment segment : candidates) {
+            if (best.size() >= limit && segment.maxTs() < timeOf.applyAsLong(best.get(best.size() - 1))) {
+                break;
+            }
+            for (T row : readSegment(table, segment, type)) {
+                if (filter.test(row)) {
+                    collected.putIfAbsent(idOf.applyAsLong(row), row);
+                }
+            }
+            best = collected.values().stream().sorted(order).limit(limit).toList();
+        }
+        return best;
+    }
+
+    /**
+     * Looks up a single archived row by id, reading only the segments whose id range contains it.
+     */
+    public <T> Optional<T> findById(String table, Class<T> type, long id, ToLongFunction<T> idOf) throws IOException {
+        for (Segment segment : segments(table)) {
+            if (id < segment.minId() || id > segment.maxId()) {
+                continue;
+            }
+            for (T row : readSegment(table, segment, type)) {
+                if (idOf.applyAsLong(row) == id) {
+                    return Optional.of(row);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private <T> List<T> readSegment(String table, Segment segment, Class<T> type) throws IOException {
+        Path path = directory.resolve(table).resolve(segment.file());
+        List<T> rows = new ArrayList<>(segment.count());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    rows.add(objectMapper.readValue(line, type));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private List<Segment> segments(String table) {
+        return segments.computeIfAbsent(table, this::loadIndex);
+    }
+
+    private List<Segment> loadIndex(String table) {
+        List<Segment> loaded = new CopyOnWriteArrayList<>();
+        Path indexPath = directory.resolve(table).resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return loaded;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 6 || !Files.exists(directory.resolve(table).resolve(parts[0]))) {
+                    skipped++; // torn last line after a crash
+                    continue;
+                }
+                loaded.add(new Segment(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        Long.parseLong(parts[3]), Long.parseLong(parts[4]), Integer.parseInt(parts[5])));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read archive index " + indexPath, e);
+        }
+        if (skipped > 0) {
+            log.warn("Ignored {} incomplete archive index entries in {}", skipped, indexPath);
+        }
+        return loaded;
+    }
+
+    private void appendIndexLine(String table, Segment segment) throws IOException {
+        String line = segment.file() + ' ' + segment.minTs() + ' ' + segment.maxTs() + ' '
+                + segment.minId() + ' ' + segment.maxId() + ' ' + segment.count() + '\n';
+        try (FileChannel index = FileChannel.open(directory.resolve(table).resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                index.write(buffer);
+            }
+            index.force(false);
+        }
+    }
+
+    private record Segment(String file, long minTs, long maxTs, long minId, long maxId, int count) {
+    }
+}
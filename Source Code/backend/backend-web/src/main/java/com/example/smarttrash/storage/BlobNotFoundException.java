@@ -0,0 +1,12 @@
+package com.example.smarttrash.storage;
+
+import java.io.FileNotFoundException;
+
+public class BlobNotFoundException extends FileNotFoundException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BlobNotFoundException(String key) {
+        super("Blob not found: " + key);
+    }
+}
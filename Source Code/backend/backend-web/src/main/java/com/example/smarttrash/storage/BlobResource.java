@@ -0,0 +1,48 @@
+package com.example.smarttrash.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Spring {@link org.springframework.core.io.Resource} over a stored blob, so MVC can serve it
+ * with Content-Length and byte ranges without loading it onto the heap.
+ */
+public class BlobResource extends AbstractResource {
+
+    private final BlobStore blobStore;
+    private final String key;
+    private final long length;
+
+    public BlobResource(BlobStore blobStore, String key, long length) {
+        this.blobStore = blobStore;
+        this.key = key;
+        this.length = length;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return blobStore.open(key);
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public boolean exists() {
+        return blobStore.contains(key);
+    }
+
+    @Override
+    public String getFilename() {
+        return key;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + key + "]";
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.smarttrash.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Content-addressed store for image bytes. Keys are the hex SHA-256 of the content,
+ * so storing the same bytes twice returns the same key and writes nothing.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores {@code data} (if not already present) and returns its key.
+     */
+    String put(byte[] data) throws IOException;
+
+    /**
+     * Stores {@code length} bytes of {@code data} starting at {@code offset}.
+     */
+    String put(byte[] data, int offset, int length) throws IOException;
+
+    boolean contains(String key);
+
+    /**
+     * Size in bytes of the blob, or empty if the key is unknown.
+     */
+    Optional<Long> size(String key);
+
+    /**
+     * Streams the blob. The caller closes the stream.
+     */
+    InputStream open(String key) throws IOException;
+}
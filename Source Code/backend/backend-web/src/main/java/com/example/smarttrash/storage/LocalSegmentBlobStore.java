@@ -0,0 +1,255 @@
+package com.example.smarttrash.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link BlobStore} on the local filesystem.
+ *
+ * Blobs are appended to segment files ({@code segment-000001.dat}, ...) that roll over at a fixed size.
+ * An append-only text index ({@code index.log}, one {@code key segment offset length} line per blob)
+ * is replayed into memory on startup. Data is forced to disk before its index line is written,
+ * so an index entry never points at bytes that were not persisted. Segments are never rewritten.
+ */
+@Slf4j
+public class LocalSegmentBlobStore implements BlobStore, AutoCloseable {
+
+    private static final String INDEX_FILE = "index.log";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> readChannels = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private FileChannel indexChannel;
+    private FileChannel activeSegment;
+    private int activeSegmentNo;
+
+    public LocalSegmentBlobStore(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        loadIndex();
+        openForAppend();
+        log.info("Blob store at {} ({} blobs, active segment {})", directory.toAbsolutePath(), index.size(), activeSegmentNo);
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        return put(data, 0, data.length);
+    }
+
+    @Override
+    public String put(byte[] data, int offset, int length) throws IOException {
+        String key = hash(data, offset, length);
+        if (index.containsKey(key)) {
+            return key;
+        }
+        synchronized (writeLock) {
+            if (index.containsKey(key)) {
+                return key;
+            }
+            if (activeSegment.size() > 0 && activeSegment.size() + length > segmentSize) {
+                rollSegment();
+            }
+            long position = activeSegment.size();
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            while (buffer.hasRemaining()) {
+                activeSegment.write(buffer, position + buffer.position() - offset);
+            }
+            activeSegment.force(false);
+
+            Location location = new Location(activeSegmentNo, position, length);
+            String line = key + ' ' + location.segment() + ' ' + location.offset() + ' ' + location.length() + '\n';
+            ByteBuffer indexLine = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+            while (indexLine.hasRemaining()) {
+                indexChannel.write(indexLine);
+            }
+            indexChannel.force(false);
+            index.put(key, location);
+            return key;
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public Optional<Long> size(String key) {
+        Location location = index.get(key);
+        return location != null ? Optional.of(location.length()) : Optional.empty();
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        Location location = locate(key);
+        return new SegmentInputStream(channel(location.segment()), location.offset(), location.length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            activeSegment.close();
+            indexChannel.close();
+        }
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+    }
+
+    private Location locate(String key) throws BlobNotFoundException {
+        Location location = index.get(key);
+        if (location == null) {
+            throw new BlobNotFoundException(key);
+        }
+        return location;
+    }
+
+    private FileChannel channel(int segment) {
+        return readChannels.computeIfAbsent(segment, no -> {
+            try {
+                return FileChannel.open(segmentPath(no), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open blob segment " + no, e);
+            }
+        });
+    }
+
+    private void loadIndex() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        Map<Integer, Long> segmentSizes = new ConcurrentHashMap<>();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 4) {
+                    skipped++; // torn last line after a crash
+                    continue;
+                }
+                Location location = new Location(Integer.parseInt(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                long available = segmentSizes.computeIfAbsent(location.segment(), this::segmentFileSize);
+                if (location.offset() + location.length() > available) {
+                    skipped++;
+                    continue;
+                }
+                index.put(parts[0], location);
+                activeSegmentNo = Math.max(activeSegmentNo, location.segment());
+            }
+        }
+        if (skipped > 0) {
+            log.warn("Ignored {} incomplete blob index entries in {}", skipped, indexPath);
+        }
+    }
+
+    private long segmentFileSize(int segment) {
+        try {
+            Path path = segmentPath(segment);
+            return Files.exists(path) ? Files.size(path) : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        if (activeSegmentNo == 0) {
+            activeSegmentNo = 1;
+        }
+        activeSegment = FileChannel.open(segmentPath(activeSegmentNo),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void rollSegment() throws IOException {
+        activeSegment.close();
+        activeSegmentNo++;
+        activeSegment = FileChannel.open(segmentPath(activeSegmentNo),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        log.info("Rolled blob store to segment {}", activeSegmentNo);
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d.dat", segment));
+    }
+
+    private static String hash(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, offset, length);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Location(int segment, long offset, long length) {
+    }
+
+    /**
+     * Positional reads over a slice of a shared segment channel; safe to use concurrently with other readers.
+     */
+    private static final class SegmentInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private SegmentInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, end - position);
+            int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.example.smarttrash.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of typed records on the local filesystem.
+ *
+ * Records go to segment files named after the sequence number of their first record
+ * ({@code segment-00000000000000000001.wal}, ...) that roll over at a fixed size. Each record is
+ * {@code length(int) crc32c(int) seq(long) type(byte) payload}, the CRC covering seq, type and payload.
+ * {@link #append} returns once the record is forced to disk; concurrent appenders share one {@code force}
+ * (group commit). On open, the last segment is scanned and a torn or corrupt tail is truncated.
+ * Readers only see records that are durable. A new journal starts numbering at the current time in milliseconds times
+ * 10^6, so sequence numbers stay unique when the directory is deleted and the journal recreated.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 17;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+    private final Map<Long, FileChannel> readChannels = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final Thread flusher;
+
+    // Guarded by lock
+    private FileChannel activeChannel;
+    private long activeSegment;
+    private long writeOffset;
+    private long nextSeq;
+    private long writtenSeq;
+    private long durableSeq;
+    private Position durablePosition;
+    private IOException flushFailure;
+    private boolean closed;
+
+    public WriteAheadLog(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(".wal"))
+                    .map(name -> Long.parseLong(name.substring("segment-".length(), name.length() - ".wal".length())))
+                    .forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            segments.add(System.currentTimeMillis() * 1_000_000);
+        }
+        recover(segments.last());
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-ahead log at {} ({} segments, next seq {})", directory.toAbsolutePath(), segments.size(), nextSeq);
+    }
+
+    /**
+     * Appends a record and waits until it is durable.
+     *
+     * @return the record's sequence number
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("Journal record of " + payload.length + " bytes exceeds " + MAX_RECORD_SIZE);
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            if (writeOffset > 0 && writeOffset + HEADER_SIZE + payload.length > segmentSize) {
+                roll();
+            }
+            long seq = nextSeq++;
+            ByteBuffer record = encode(seq, type, payload);
+            while (record.hasRemaining()) {
+                writeOffset += activeChannel.write(record, writeOffset);
+            }
+            writtenSeq = seq;
+            lock.notifyAll();
+            while (durableSeq < seq) {
+                if (flushFailure != null) {
+                    throw new IOException("Journal flush failed", flushFailure);
+                }
+                if (closed) {
+                    throw new IOException("Write-ahead log closed before the record was durable");
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal flush", e);
+                }
+            }
+            return seq;
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Position of the first record in the journal.
+     */
+    public Position start() {
+        return new Position(segments.first(), 0);
+    }
+
+    /**
+     * Reads the durable record at {@code position}, moving on to the next segment at the end of a full one.
+     * Empty when the reader has caught up with the durable end.
+     *
+     * @throws IOException when the record cannot be read or fails its CRC
+     */
+    public Optional<Entry> read(Position position) throws IOException {
+        Position current = position;
+        while (true) {
+            Position durable;
+            synchronized (lock) {
+                durable = durablePosition;
+            }
+            if (current.segment() == durable.segment() && current.offset() >= durable.offset()) {
+                return Optional.empty();
+            }
+            FileChannel channel = readChannel(current.segment());
+            if (current.segment() < durable.segment() && current.offset() >= channel.size()) {
+                Long next = segments.higher(current.segment());
+                if (next == null) {
+                    return Optional.empty();
+                }
+                current = new Position(next, 0);
+                continue;
+            }
+            Entry entry = readAt(channel, current);
+            if (entry == null) {
+                throw new IOException("Corrupt journal record at " + current);
+            }
+            return Optional.of(entry);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for a record to become durable beyond {@code position}.
+     */
+    public void awaitData(Position position, long timeoutMs) throws InterruptedException {
+        synchronized (lock) {
+            if (!closed && position.segment() == durablePosition.segment() && position.offset() >= durablePosition.offset()) {
+                lock.wait(timeoutMs);
+            }
+        }
+    }
+
+    /**
+     * Position just past the corrupt record at {@code position}: the start of the next segment, if any.
+     */
+    public Optional<Position> skipSegment(Position position) {
+        Long next = segments.higher(position.segment());
+        return next != null ? Optional.of(new Position(next, 0)) : Optional.empty();
+    }
+
+    /**
+     * Deletes segments entirely before {@code position}; the active segment is never deleted.
+     */
+    public void deleteBefore(Position position) {
+        for (Long segment : segments.headSet(position.segment(), false)) {
+            synchronized (lock) {
+                if (segment == activeSegment) {
+                    continue;
+                }
+            }
+            segments.remove(segment);
+            FileChannel channel = readChannels.remove(segment);
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            long segment;
+            long offset;
+            FileChannel channel;
+            synchronized (lock) {
+                while (writtenSeq == durableSeq && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (writtenSeq == durableSeq) {
+                    return;
+                }
+                target = writtenSeq;
+                segment = activeSegment;
+                offset = writeOffset;
+                channel = activeChannel;
+            }
+            try {
+                // Outside the lock: appends arriving during the force are picked up by the next one
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled over meanwhile; roll() forced the old segment itself
+                continue;
+            } catch (IOException e) {
+                synchronized (lock) {
+                    flushFailure = e;
+                    lock.notifyAll();
+                }
+                log.error("Journal flush failed: {}", e.getMessage(), e);
+                return;
+            }
+            synchronized (lock) {
+                markDurable(target, new Position(segment, offset));
+            }
+        }
+    }
+
+    // Caller holds lock
+    private void roll() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        markDurable(writtenSeq, new Position(activeSegment, writeOffset));
+        activeSegment = nextSeq;
+        segments.add(activeSegment);
+        activeChannel = openForAppend(activeSegment);
+        writeOffset = 0;
+        markDurable(writtenSeq, new Position(activeSegment, 0));
+        log.info("Rolled journal to segment {}", activeSegment);
+    }
+
+    // Caller holds lock
+    private void markDurable(long seq, Position position) {
+        if (seq >= durableSeq && (position.segment() > durablePosition.segment()
+                || (position.segment() == durablePosition.segment() && position.offset() >= durablePosition.offset()))) {
+            durableSeq = seq;
+            durablePosition = position;
+            lock.notifyAll();
+        }
+    }
+
+    private void recover(long lastSegment) throws IOException {
+        FileChannel channel = openForAppend(lastSegment);
+        long offset = 0;
+        long lastSeq = lastSegment - 1;
+        Position position = new Position(lastSegment, 0);
+        Entry entry;
+        while ((entry = readAt(channel, position)) != null) {
+            lastSeq = entry.seq();
+            position = entry.next();
+            offset = position.offset();
+        }
+        if (offset < channel.size()) {
+            log.warn("Truncating {} bytes of incomplete journal records in segment {}", channel.size() - offset, lastSegment);
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        this.activeChannel = channel;
+        this.activeSegment = lastSegment;
+        this.writeOffset = offset;
+        this.nextSeq = lastSeq + 1;
+        this.writtenSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        this.durablePosition = new Position(lastSegment, offset);
+    }
+
+    /**
+     * Record at {@code position}, or null at the end of the data or when the record is incomplete or corrupt.
+     */
+    private static Entry readAt(FileChannel channel, Position position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header, position.offset())) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        int crc = header.getInt();
+        long seq = header.getLong();
+        byte type = header.get();
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload, position.offset() + HEADER_SIZE)) {
+            return null;
+        }
+        if (crc(seq, type, payload.array()) != crc) {
+            return null;
+        }
+        return new Entry(seq, type, payload.array(),
+                new Position(position.segment(), position.offset() + HEADER_SIZE + length));
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer encode(long seq, byte type, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt(crc(seq, type, payload));
+        buffer.putLong(seq);
+        buffer.put(type);
+        buffer.put(payload);
+        return buffer.flip();
+    }
+
+    private static int crc(long seq, byte type, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(9).putLong(seq).put(type).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private FileChannel readChannel(long segment) throws IOException {
+        FileChannel channel = readChannels.get(segment);
+        if (channel == null) {
+            channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ);
+            FileChannel existing = readChannels.putIfAbsent(segment, channel);
+            if (existing != null) {
+                channel.close();
+                channel = existing;
+            }
+        }
+        return channel;
+    }
+
+    private FileChannel openForAppend(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("segment-%020d.wal", segment));
+    }
+
+    /**
+     * Location of a record: segment (first sequence number of the segment) and byte offset within it.
+     */
+    public record Position(long segment, long offset) {
+    }
+
+    public record Entry(long seq, byte type, byte[] payload, Position next) {
+    }
+}
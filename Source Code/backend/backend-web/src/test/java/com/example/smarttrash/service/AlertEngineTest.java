@@ -0,0 +1,117 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.Alert;
+import com.example.smarttrash.model.AlertHistoryEntity;
+import com.example.smarttrash.repository.AlertHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AlertEngineTest {
+
+    private final StateCacheService stateCache = mock(StateCacheService.class);
+    private final AlertHistoryRepository history = mock(AlertHistoryRepository.class);
+    private final ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+    private AlertEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        // No settings row: full at 75%, minimum confidence 85%
+        when(stateCache.getSettings()).thenReturn(Optional.empty());
+        engine = new AlertEngine(stateCache, history, mock(ResponseCache.class), events, 100);
+        ReflectionTestUtils.setField(engine, "debounceMs", 0L);
+        ReflectionTestUtils.setField(engine, "fillHysteresis", 10.0);
+        ReflectionTestUtils.setField(engine, "confidenceHysteresis", 5.0);
+        ReflectionTestUtils.setField(engine, "window", 20);
+        ReflectionTestUtils.setField(engine, "errorRate", 0.2);
+        ReflectionTestUtils.setField(engine, "errorRateClear", 0.1);
+        ReflectionTestUtils.setField(engine, "silenceMs", 300_000L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+    }
+
+    @Test
+    void binFullResolvesOnlyPastTheHysteresisMargin() {
+        engine.levels("dev-1", 80.0, null);
+        assertThat(engine.active("dev-1")).extracting(Alert::rule).containsExactly(AlertEngine.BIN_FULL_ORGANIC);
+
+        // Below the threshold but within the margin
+        engine.levels("dev-1", 70.0, null);
+        assertThat(engine.active("dev-1")).hasSize(1);
+
+        engine.levels("dev-1", 60.0, null);
+        assertThat(engine.active("dev-1")).isEmpty();
+
+        ArgumentCaptor<Alert> published = ArgumentCaptor.forClass(Alert.class);
+        verify(events, times(2)).publishEvent(published.capture());
+        assertThat(published.getAllValues()).extracting(Alert::state).containsExactly("firing", "resolved");
+    }
+
+    @Test
+    void debouncedRuleDoesNotFireOnOneReading() {
+        ReflectionTestUtils.setField(engine, "debounceMs", 10_000L);
+
+        engine.levels("dev-1", 80.0, null);
+        engine.check();
+
+        assertThat(engine.active("dev-1")).isEmpty();
+        verify(events, never()).publishEvent(any(Alert.class));
+    }
+
+    @Test
+    void errorRateFiresOnceTheMovingShareCrossesIt() {
+        engine.classification("dev-1", null, "error");
+        engine.classification("dev-1", null, "error");
+        assertThat(engine.active("dev-1")).isEmpty();
+
+        engine.classification("dev-1", null, "error");
+        assertThat(engine.active("dev-1")).extracting(Alert::rule).containsExactly(AlertEngine.ERROR_RATE);
+    }
+
+    @Test
+    void deviceSilentFiresOnCheckAndResolvesWithTheNextMessage() {
+        ReflectionTestUtils.setField(engine, "silenceMs", 0L);
+        engine.seen("dev-1");
+
+        engine.check();
+        assertThat(engine.active("dev-1")).extracting(Alert::rule).containsExactly(AlertEngine.DEVICE_SILENT);
+
+        engine.seen("dev-1");
+        assertThat(engine.active("dev-1")).isEmpty();
+    }
+
+    @Test
+    void alertIsPublishedWithoutWaitingForTheHistoryWrite() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(history.save(any(AlertHistoryEntity.class))).thenAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        });
+
+        engine.levels("dev-1", 80.0, null);
+
+        verify(events).publishEvent(any(Alert.class));
+        release.countDown();
+        verify(history, timeout(2000)).save(argThat((AlertHistoryEntity entity) ->
+                AlertEngine.BIN_FULL_ORGANIC.equals(entity.getRule()) && "firing".equals(entity.getState())));
+    }
+}
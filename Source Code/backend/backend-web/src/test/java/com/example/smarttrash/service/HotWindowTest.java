@@ -0,0 +1,117 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ArchivedLogTotalsEntity;
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.repository.ArchivedLogTotalsRepository;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HotWindowTest {
+
+    private final ClassificationLogRepository logs = mock(ClassificationLogRepository.class);
+    private final Esp32EventLogRepository events = mock(Esp32EventLogRepository.class);
+    private final ArchivedLogTotalsRepository archived = mock(ArchivedLogTotalsRepository.class);
+    private HotWindow hotWindow;
+
+    @BeforeEach
+    void setUp() {
+        when(logs.findBy(any(Specification.class), any())).thenReturn(List.of(log(1, "dev-1", 0.9), log(2, "dev-1", 0.7)));
+        when(events.findBy(any(Specification.class), any())).thenReturn(List.of());
+        when(logs.countAndConfidenceSumByDeviceId()).thenReturn(List.of(
+                new Object[]{"dev-1", 10L, 8.0},
+                new Object[]{"dev-2", 1L, null}));
+        when(archived.findAll()).thenReturn(List.of(archived("dev-1", 5, 4.0), archived("dev-3", 2, 1.0)));
+        hotWindow = new HotWindow(logs, events, archived, mock(PlatformTransactionManager.class),
+                new IngestMetrics(new SimpleMeterRegistry(), 100));
+        ReflectionTestUtils.setField(hotWindow, "days", 3);
+        ReflectionTestUtils.setField(hotWindow, "maxRows", 1000);
+        ReflectionTestUtils.setField(hotWindow, "warmBatch", 100);
+    }
+
+    @Test
+    void totalsCombineDatabaseAndArchivedRows() {
+        hotWindow.warm();
+
+        assertThat(hotWindow.totals("dev-1")).hasValueSatisfying(totals -> {
+            assertThat(totals.count()).isEqualTo(15);
+            assertThat(totals.averageConfidence()).isCloseTo(0.8, within(1e-9));
+        });
+        assertThat(hotWindow.totals("dev-2")).hasValueSatisfying(totals -> {
+            assertThat(totals.count()).isEqualTo(1);
+            assertThat(totals.averageConfidence()).isZero();
+        });
+        // Every row of this device is archived
+        assertThat(hotWindow.totals("dev-3")).hasValueSatisfying(totals -> {
+            assertThat(totals.count()).isEqualTo(2);
+            assertThat(totals.averageConfidence()).isCloseTo(0.5, within(1e-9));
+        });
+        assertThat(hotWindow.totals("unknown")).contains(new HotWindow.LogTotals(0, null));
+    }
+
+    @Test
+    void appendedRowsAreCountedOnce() {
+        hotWindow.warm();
+
+        hotWindow.append(log(3, "dev-1", 0.5));
+        // Already in the window from the warm-up load
+        hotWindow.append(log(2, "dev-1", 0.7));
+
+        assertThat(hotWindow.totals("dev-1")).hasValueSatisfying(totals -> {
+            assertThat(totals.count()).isEqualTo(16);
+            assertThat(totals.averageConfidence()).isCloseTo(12.5 / 16, within(1e-9));
+        });
+    }
+
+    @Test
+    void totalsAreUnknownWhenTheyCouldNotBeLoaded() {
+        when(logs.countAndConfidenceSumByDeviceId()).thenThrow(new IllegalStateException("database down"));
+
+        hotWindow.warm();
+        hotWindow.append(log(3, "dev-1", 0.5));
+
+        assertThat(hotWindow.totals("dev-1")).isEmpty();
+    }
+
+    @Test
+    void totalsAreUnknownWhenTheWindowIsDisabled() {
+        ReflectionTestUtils.setField(hotWindow, "days", 0);
+
+        hotWindow.warm();
+
+        assertThat(hotWindow.totals("dev-1")).isEmpty();
+    }
+
+    private static ClassificationLog log(long id, String deviceId, double confidence) {
+        ClassificationLog entry = new ClassificationLog();
+        entry.setId(id);
+        entry.setDeviceId(deviceId);
+        entry.setTimestamp(LocalDateTime.now());
+        entry.setType("Hữu cơ");
+        entry.setConfidence(confidence);
+        entry.setStatus("success");
+        return entry;
+    }
+
+    private static ArchivedLogTotalsEntity archived(String deviceId, long count, double confidenceSum) {
+        ArchivedLogTotalsEntity totals = new ArchivedLogTotalsEntity();
+        totals.setDeviceId(deviceId);
+        totals.setCount(count);
+        totals.setConfidenceSum(confidenceSum);
+        return totals;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.smarttrash.service;
+
+import com.example.smarttrash.model.ClassificationLog;
+import com.example.smarttrash.repository.ClassificationLogRepository;
+import com.example.smarttrash.repository.Esp32EventLogRepository;
+import com.example.smarttrash.repository.Esp32ImageRepository;
+import com.example.smarttrash.storage.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestJournalTest {
+
+    private static final long SEGMENT_SIZE = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    private final ClassificationLogRepository logs = mock(ClassificationLogRepository.class);
+    private final HotWindow hotWindow = mock(HotWindow.class);
+    private final ConfidenceSketches confidenceSketches = mock(ConfidenceSketches.class);
+    private final ResponseCache responseCache = mock(ResponseCache.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<IngestJournal> journals = new ArrayList<>();
+    private final List<WriteAheadLog> wals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (IngestJournal journal : journals) {
+            journal.stop();
+        }
+        for (WriteAheadLog wal : wals) {
+            wal.close();
+        }
+    }
+
+    @Test
+    void appliesRowsJournaledBeforeACrash() throws Exception {
+        // Never started: the rows are only in the journal when the process dies
+        IngestJournal crashed = journal(wal());
+        crashed.appendLog(log("dev-1"));
+        crashed.appendLog(log("dev-2"));
+        wals.remove(0).close();
+
+        journal(wal()).start();
+
+        verify(logs, timeout(5000).times(2)).save(any(ClassificationLog.class));
+        verify(hotWindow, timeout(5000).times(2)).append(any(ClassificationLog.class));
+    }
+
+    @Test
+    void resumesFromTheCheckpointAfterAStop() throws Exception {
+        IngestJournal first = journal(wal());
+        first.start();
+        first.appendLog(log("dev-1"));
+        first.appendLog(log("dev-1"));
+        await(() -> first.pending() == 0);
+        first.stop();
+        journals.remove(first);
+        wals.remove(0).close();
+
+        journal(wal()).start();
+
+        verify(logs, after(500).times(2)).save(any(ClassificationLog.class));
+    }
+
+    @Test
+    void skipsARowSavedBeforeTheRestart() throws Exception {
+        // The row's journal_seq is already in the table: the save hits the unique key
+        doThrow(new DataIntegrityViolationException("uk_log_journal_seq"))
+                .when(logs).save(argThat((ClassificationLog entry) -> "dev-saved".equals(entry.getDeviceId())));
+        when(logs.existsByJournalSeq(anyLong())).thenReturn(true);
+        IngestJournal journal = journal(wal());
+        journal.appendLog(log("dev-saved"));
+        journal.appendLog(log("dev-1"));
+
+        journal.start();
+        await(() -> journal.pending() == 0);
+
+        verify(logs, times(2)).save(any(ClassificationLog.class));
+        verify(hotWindow, times(1)).append(any(ClassificationLog.class));
+        assertThat(dir.resolve("dead-letter")).doesNotExist();
+    }
+
+    @Test
+    void failingPostSaveStepDoesNotSkipTheOthersOrRetryTheRow() throws Exception {
+        doThrow(new IllegalStateException("hot window full")).when(hotWindow).append(any(ClassificationLog.class));
+        IngestJournal journal = journal(wal());
+        journal.appendLog(log("dev-1"));
+
+        journal.start();
+        await(() -> journal.pending() == 0);
+
+        verify(logs, times(1)).save(any(ClassificationLog.class));
+        verify(confidenceSketches, timeout(5000)).record(any(ClassificationLog.class));
+        verify(responseCache, timeout(5000)).invalidate("dev-1");
+    }
+
+    @Test
+    void deadLettersARowTheDatabaseKeepsRejecting() throws Exception {
+        doThrow(new DataIntegrityViolationException("column too long")).when(logs).save(any(ClassificationLog.class));
+        when(logs.existsByJournalSeq(anyLong())).thenReturn(false);
+        IngestJournal journal = journal(wal());
+        ReflectionTestUtils.setField(journal, "deadLetterAfterMs", 0L);
+        journal.appendLog(log("dev-1"));
+
+        journal.start();
+        await(() -> journal.pending() == 0);
+
+        verify(hotWindow, never()).append(any(ClassificationLog.class));
+        try (Stream<Path> files = Files.list(dir.resolve("dead-letter"))) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .singleElement()
+                    .satisfies(name -> assertThat(name).endsWith("-classification_logs.json"));
+        }
+    }
+
+    private WriteAheadLog wal() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE);
+        wals.add(wal);
+        return wal;
+    }
+
+    private IngestJournal journal(WriteAheadLog wal) {
+        IngestJournal journal = new IngestJournal(wal, logs, mock(Esp32EventLogRepository.class),
+                mock(Esp32ImageRepository.class), mock(LiveStreamService.class), new TraceRecorder(100),
+                new IngestMetrics(new SimpleMeterRegistry(), 100), responseCache, hotWindow, confidenceSketches,
+                objectMapper);
+        ReflectionTestUtils.setField(journal, "checkpointEvery", 100);
+        ReflectionTestUtils.setField(journal, "retryMaxMs", 1000L);
+        ReflectionTestUtils.setField(journal, "deadLetterAfterMs", 600_000L);
+        journals.add(journal);
+        return journal;
+    }
+
+    private static ClassificationLog log(String deviceId) {
+        ClassificationLog entry = new ClassificationLog();
+        entry.setDeviceId(deviceId);
+        entry.setTimestamp(LocalDateTime.now());
+        entry.setType("Hữu cơ");
+        entry.setConfidence(0.9);
+        entry.setStatus("success");
+        return entry;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
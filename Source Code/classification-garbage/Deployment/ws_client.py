@@ -32,6 +32,10 @@ def _utc_now_iso() -> str:
     return datetime.now(timezone.utc).isoformat()
 
 
+def _epoch_ms() -> int:
+    return int(datetime.now(timezone.utc).timestamp() * 1000)
+
+
 def _infer_pil_format_from_content_type(content_type: str) -> str:
     ct = (content_type or "").lower()
     if "png" in ct:
@@ -69,6 +73,7 @@ async def process_incoming_message(ws, message: str):
         return
 
     if msg_type == "server:image":
+        received_ms = _epoch_ms()
         b64_data = payload.get("data")
 
         if not b64_data:
@@ -106,6 +111,13 @@ async def process_incoming_message(ws, message: str):
                 "type": "esp32:data",
                 "payload": command,
             }
+            # Send the image's trace back so the relay and backend can time the whole pipeline
+            trace = payload.get("trace") or {}
+            if trace.get("id"):
+                stages = dict(trace.get("stages") or {})
+                stages["classifier.received"] = received_ms
+                stages["classifier.sent"] = _epoch_ms()
+                control_msg["trace"] = {"id": trace["id"], "stages": stages}
             print(control_msg)
             await ws.send(json.dumps(control_msg))
             return
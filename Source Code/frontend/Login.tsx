@@ -4,7 +4,7 @@ import './index.css';
 
 type Props = {
   apiBaseUrl: string;
-  onLoginSuccess: (payload: { authHeader: string; username: string }) => void;
+  onLoginSuccess: (payload: { authHeader: string; username: string; expiresAt: number }) => void;
 };
 
 const Login: React.FC<Props> = ({ apiBaseUrl, onLoginSuccess }) => {
@@ -18,12 +18,16 @@ const Login: React.FC<Props> = ({ apiBaseUrl, onLoginSuccess }) => {
     setErr(null);
     setLoading(true);
     try {
-      const authHeader = 'Basic ' + btoa(`${username}:${password}`);
-      const res = await fetch(`${apiBaseUrl}/overview`, {
-        headers: { Authorization: authHeader }
+      // Đăng nhập một lần để lấy token; các request sau gửi Bearer token thay vì mật khẩu
+      const res = await fetch(`${apiBaseUrl}/login`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ username, password })
       });
+      if (res.status === 503) throw new Error('Hệ thống đang bận, vui lòng thử lại');
       if (!res.ok) throw new Error('Sai tài khoản hoặc mật khẩu');
-      onLoginSuccess({ authHeader, username });
+      const { token, expiresAt } = await res.json();
+      onLoginSuccess({ authHeader: `Bearer ${token}`, username, expiresAt });
     } catch (e: any) {
       setErr(e.message || 'Lỗi đăng nhập');
     } finally {
@@ -56,29 +56,83 @@ const SmartTrashDashboard = () => {
   const [isAuthenticated, setIsAuthenticated] = useState(false);
   const [authHeader, setAuthHeader] = useState<string | null>(null);
   const [currentUser, setCurrentUser] = useState<string | null>(null);
+  const [tokenExpiresAt, setTokenExpiresAt] = useState<number | null>(null);
 
   const apiBaseUrl = 'http://localhost:8080/api';
   const socketUrl = 'wss://ntdung.systems/ws';
 
   const handleLogout = () => {
+    if (authHeader?.startsWith('Bearer ')) {
+      fetch(`${apiBaseUrl}/logout`, { method: 'POST', headers: { Authorization: authHeader } }).catch(() => {});
+    }
     setIsAuthenticated(false);
     setAuthHeader(null);
     setCurrentUser(null);
+    setTokenExpiresAt(null);
     localStorage.removeItem('authHeader');
     localStorage.removeItem('username');
+    localStorage.removeItem('tokenExpiresAt');
+  };
+
+  const saveToken = (header: string, expiresAt: number) => {
+    setAuthHeader(header);
+    setTokenExpiresAt(expiresAt);
+    localStorage.setItem('authHeader', header);
+    localStorage.setItem('tokenExpiresAt', String(expiresAt));
   };
 
   // Restore session on reload
   useEffect(() => {
     const savedAuth = localStorage.getItem('authHeader');
     const savedUser = localStorage.getItem('username');
-    if (savedAuth && savedUser) {
+    const savedExpiresAt = Number(localStorage.getItem('tokenExpiresAt'));
+    if (savedAuth && savedUser && (!savedAuth.startsWith('Bearer ') || savedExpiresAt > Date.now())) {
       setAuthHeader(savedAuth);
       setCurrentUser(savedUser);
+      setTokenExpiresAt(savedExpiresAt || null);
       setIsAuthenticated(true);
     }
   }, []);
 
+  // Gia hạn token trước khi hết hạn (sliding expiry), nên chỉ token bị thu hồi hoặc đã hết hạn mới gặp 401
+  useEffect(() => {
+    if (!isAuthenticated || !authHeader?.startsWith('Bearer ') || !tokenExpiresAt) return;
+    const REFRESH_BEFORE_MS = 5 * 60000;
+    const REFRESH_RETRY_MS = 30000;
+    let timer: ReturnType<typeof setTimeout> | undefined;
+    let cancelled = false;
+
+    const refresh = async () => {
+      try {
+        const res = await fetch(`${apiBaseUrl}/token/refresh`, {
+          method: 'POST',
+          headers: { Authorization: authHeader }
+        });
+        if (cancelled) return;
+        if (res.status === 401) {
+          handleLogout();
+          return;
+        }
+        if (!res.ok) throw new Error('Không thể gia hạn phiên đăng nhập');
+        const { token, expiresAt } = await res.json();
+        if (!cancelled) saveToken(`Bearer ${token}`, expiresAt);
+      } catch {
+        // Lỗi mạng: thử lại cho tới khi token hết hạn
+        if (!cancelled && Date.now() + REFRESH_RETRY_MS < tokenExpiresAt) {
+          timer = setTimeout(refresh, REFRESH_RETRY_MS);
+        }
+      }
+    };
+
+    // Token ngắn hơn REFRESH_BEFORE_MS được gia hạn ở nửa thời gian sống còn lại
+    const remaining = tokenExpiresAt - Date.now();
+    timer = setTimeout(refresh, Math.max(0, Math.min(remaining - REFRESH_BEFORE_MS, remaining / 2)));
+    return () => {
+      cancelled = true;
+      if (timer) clearTimeout(timer);
+    };
+  }, [isAuthenticated, authHeader, tokenExpiresAt]);
+
   const appendEvent = (typeLabel: 'Hữu cơ' | 'Vô cơ' | 'Chưa rõ', source: string, receivedAt?: number) => {
     setRecentLogs(prev => {
       const formatter = new Intl.DateTimeFormat('vi-VN', {
@@ -95,7 +149,7 @@ const SmartTrashDashboard = () => {
   useEffect(() => {
     if (!isAuthenticated || !authHeader) return;
     let ws: WebSocket | null = null;
-    let liveInterval: ReturnType<typeof setInterval>;
+    let liveInterval: ReturnType<typeof setInterval> | undefined;
 
     const connectWebSocket = () => {
       ws = new WebSocket(socketUrl);
@@ -148,56 +202,78 @@ const SmartTrashDashboard = () => {
 
     connectWebSocket();
 
-    const loadLive = async () => {
-      try {
-        const res = await fetch(`${apiBaseUrl}/live`, {
-          headers: { Authorization: authHeader }
-        });
-        if (!res.ok) throw new Error('Không thể tải dữ liệu live từ backend');
-        const live = await res.json();
+    const apiOrigin = apiBaseUrl.replace(/\/api$/, '');
+    let liveImageId: string | null = null;
+    let liveObjectUrl: string | null = null;
+    let liveVersion: number | null = null;
 
-        if (live?.status === 'ok' && (live?.activeConnections ?? 0) > 0) {
-          setIsConnected(true);
-        }
+    const applyLive = (live: any) => {
+      if (typeof live?.version === 'number') liveVersion = live.version;
 
-        if (live?.trashType) {
-          if (live.trashType === 'organic' || live.trashType === 'inorganic') {
-            setTrashType(live.trashType);
-            setLastClassification(prev => ({ ...prev, type: live.trashType === 'organic' ? 'organic' : 'inorganic' }));
-          }
-        }
+      if (live?.status === 'ok' && (live?.activeConnections ?? 0) > 0) {
+        setIsConnected(true);
+      }
 
-        // Xử lý cảnh báo từ binType
-        if (live?.binType && (live.binType === 'ORGANIC' || live.binType === 'INORGANIC')) {
-          setBinType(live.binType);
-        } else if (live?.latestEsp32Data?.binType && (live.latestEsp32Data.binType === 'ORGANIC' || live.latestEsp32Data.binType === 'INORGANIC')) {
-          setBinType(live.latestEsp32Data.binType);
-        } else {
-          // Nếu không có binType hoặc binType rỗng, xóa cảnh báo
-          setBinType(null);
+      if (live?.trashType) {
+        if (live.trashType === 'organic' || live.trashType === 'inorganic') {
+          setTrashType(live.trashType);
+          setLastClassification(prev => ({ ...prev, type: live.trashType === 'organic' ? 'organic' : 'inorganic' }));
         }
+      }
 
-        // Chỉ cập nhật ảnh khi có ảnh mới thực sự, không reset về undefined
-        if (live?.latestEsp32Image?.data) {
-          const url = `data:${live.latestEsp32Image.contentType || 'image/jpeg'};base64,${live.latestEsp32Image.data}`;
-          setLiveImageUrl(url);
-          setLastClassification(prev => ({
-            ...prev,
-            imageUrl: url,
-            time: live.latestEsp32Image.receivedAt
-              ? new Date(live.latestEsp32Image.receivedAt).toLocaleTimeString('vi-VN')
-              : prev.time
-          }));
-        }
-        // Nếu không có ảnh mới, giữ nguyên ảnh hiện tại (không làm gì cả)
+      // Xử lý cảnh báo từ binType (ở chế độ delta chỉ khi phần state thay đổi)
+      if (Array.isArray(live?.changed) && !live.changed.includes('state')) {
+        // giữ nguyên cảnh báo hiện tại
+      } else if (live?.binType && (live.binType === 'ORGANIC' || live.binType === 'INORGANIC')) {
+        setBinType(live.binType);
+      } else if (live?.latestEsp32Data?.binType && (live.latestEsp32Data.binType === 'ORGANIC' || live.latestEsp32Data.binType === 'INORGANIC')) {
+        setBinType(live.latestEsp32Data.binType);
+      } else {
+        // Nếu không có binType hoặc binType rỗng, xóa cảnh báo
+        setBinType(null);
+      }
+
+      // Chỉ cập nhật ảnh khi có ảnh mới thực sự, không reset về undefined
+      if (live?.latestEsp32Image?.data) {
+        const url = `data:${live.latestEsp32Image.contentType || 'image/jpeg'};base64,${live.latestEsp32Image.data}`;
+        showLiveImage(url, live.latestEsp32Image.receivedAt);
+      } else if (live?.latestEsp32Image?.url && live.latestEsp32Image.id !== liveImageId) {
+        // Snapshot dạng slim: ảnh được tham chiếu theo id, chỉ tải khi id thay đổi
+        liveImageId = live.latestEsp32Image.id;
+        const receivedAt = live.latestEsp32Image.receivedAt;
+        fetch(`${apiOrigin}${live.latestEsp32Image.url}`, { headers: { Authorization: authHeader } })
+          .then(res => (res.ok ? res.blob() : Promise.reject(res.status)))
+          .then(blob => showLiveImage(URL.createObjectURL(blob), receivedAt))
+          .catch(() => { liveImageId = null; });
+      }
+      // Nếu không có ảnh mới, giữ nguyên ảnh hiện tại (không làm gì cả)
+    };
+
+    const showLiveImage = (url: string, receivedAt?: number) => {
+      if (liveObjectUrl) URL.revokeObjectURL(liveObjectUrl);
+      liveObjectUrl = url.startsWith('blob:') ? url : null;
+      setLiveImageUrl(url);
+      setLastClassification(prev => ({
+        ...prev,
+        imageUrl: url,
+        time: receivedAt ? new Date(receivedAt).toLocaleTimeString('vi-VN') : prev.time
+      }));
+    };
+
+    const loadLive = async () => {
+      try {
+        const since = liveVersion !== null ? `&since=${liveVersion}` : '';
+        const res = await fetch(`${apiBaseUrl}/live?view=slim${since}`, {
+          headers: { Authorization: authHeader }
+        });
+        if (res.status === 304) return; // không có gì thay đổi
+        if (!res.ok) throw new Error('Không thể tải dữ liệu live từ backend');
+        applyLive(await res.json());
       } catch {
         setIsConnected(false);
       }
     };
 
-    loadLive();
-    liveInterval = setInterval(loadLive, 5000);
-
     const loadOverviewAndLogs = async () => {
       try {
         setIsLoading(true);
@@ -212,56 +288,17 @@ const SmartTrashDashboard = () => {
           })
         ]);
 
+        if (overviewRes.status === 401 || logsRes.status === 401) {
+          // Token hết hạn hoặc đã bị thu hồi: quay lại màn hình đăng nhập
+          handleLogout();
+          return;
+        }
         if (!overviewRes.ok || !logsRes.ok) {
           throw new Error('Không thể tải dữ liệu từ backend');
         }
 
-        const overview = await overviewRes.json();
-        const logs = await logsRes.json();
-
-        setOrganicLevel(overview.organicLevel ?? 0);
-        setInorganicLevel(overview.inorganicLevel ?? 0);
-
-        // Chỉ cập nhật ảnh nếu có ảnh mới, giữ nguyên nếu không có
-        setLastClassification(prev => ({
-          type: overview.lastClassification?.type === 'inorganic' ? 'inorganic' :
-            overview.lastClassification?.type === 'organic' ? 'organic' : prev.type,
-          confidence: overview.lastClassification?.confidence ?? prev.confidence,
-          time: overview.lastClassification?.time ?? prev.time,
-          imageUrl: overview.lastClassification?.imageUrl ?? prev.imageUrl  // Giữ nguyên nếu không có ảnh mới
-        }));
-
-        setStats(prev => [
-          {
-            ...prev[0],
-            value: overview.totalClassifications?.toLocaleString('vi-VN') ?? '0',
-            change: ''
-          },
-          {
-            ...prev[1],
-            value: `${overview.todayCount ?? 0}`,
-            change: ''
-          },
-          {
-            ...prev[2],
-            value: `${overview.alertCount ?? 0}`,
-            change: overview.alertMessage ?? ''
-          }
-        ]);
-
-        const formatter = new Intl.DateTimeFormat('vi-VN', {
-          hour: '2-digit',
-          minute: '2-digit',
-          second: '2-digit'
-        });
-
-        setRecentLogs(
-          (logs as any[]).map((log: any) => ({
-            time: formatter.format(new Date(log.receivedAt)),
-            type: log.trashType === 'inorganic' ? 'Vô cơ' : log.trashType === 'organic' ? 'Hữu cơ' : 'Chưa rõ',
-            source: log.filename || (log.eventType === 'IMAGE' ? 'Ảnh mới' : 'WebSocket')
-          }))
-        );
+        applyOverview(await overviewRes.json());
+        applyEvents(await logsRes.json());
 
         setIsConnected(true);
       } catch (e: any) {
@@ -272,10 +309,148 @@ const SmartTrashDashboard = () => {
       }
     };
 
+    const eventFormatter = new Intl.DateTimeFormat('vi-VN', {
+      hour: '2-digit',
+      minute: '2-digit',
+      second: '2-digit'
+    });
+
+    const toRecentLog = (log: any) => ({
+      time: eventFormatter.format(new Date(log.receivedAt)),
+      type: (log.trashType === 'inorganic' ? 'Vô cơ' : log.trashType === 'organic' ? 'Hữu cơ' : 'Chưa rõ') as
+        'Hữu cơ' | 'Vô cơ' | 'Chưa rõ',
+      source: log.filename || (log.eventType === 'IMAGE' ? 'Ảnh mới' : 'WebSocket')
+    });
+
+    const applyEvents = (logs: any[]) => {
+      setRecentLogs(logs.map(toRecentLog));
+    };
+
+    const applyOverview = (overview: any) => {
+      setOrganicLevel(overview.organicLevel ?? 0);
+      setInorganicLevel(overview.inorganicLevel ?? 0);
+
+      // Chỉ cập nhật ảnh nếu có ảnh mới, giữ nguyên nếu không có
+      setLastClassification(prev => ({
+        type: overview.lastClassification?.type === 'inorganic' ? 'inorganic' :
+          overview.lastClassification?.type === 'organic' ? 'organic' : prev.type,
+        confidence: overview.lastClassification?.confidence ?? prev.confidence,
+        time: overview.lastClassification?.time ?? prev.time,
+        imageUrl: overview.lastClassification?.imageUrl ?? prev.imageUrl  // Giữ nguyên nếu không có ảnh mới
+      }));
+
+      setStats(prev => [
+        {
+          ...prev[0],
+          value: overview.totalClassifications?.toLocaleString('vi-VN') ?? '0',
+          change: ''
+        },
+        {
+          ...prev[1],
+          value: `${overview.todayCount ?? 0}`,
+          change: ''
+        },
+        {
+          ...prev[2],
+          value: `${overview.alertCount ?? 0}`,
+          change: overview.alertMessage ?? ''
+        }
+      ]);
+    };
+
+    // Push stream từ backend (SSE qua fetch để gửi được header Authorization); polling chỉ dùng khi stream lỗi,
+    // trong lúc đó stream được mở lại với backoff (giống client relay ở backend)
+    let interval: ReturnType<typeof setInterval> | undefined;
+    let reconnectTimer: ReturnType<typeof setTimeout> | undefined;
+    let streamFailures = 0;
+    let streamOpenedAt = 0;
+    const streamAbort = new AbortController();
+    const STREAM_BACKOFF_INITIAL_MS = 1000;
+    const STREAM_BACKOFF_MAX_MS = 60000;
+    const STREAM_STABLE_MS = 30000;
+
+    const startPolling = () => {
+      if (interval) return;
+      loadLive();
+      loadOverviewAndLogs();
+      liveInterval = setInterval(loadLive, 5000);
+      interval = setInterval(loadOverviewAndLogs, 10000);
+    };
+
+    const stopPolling = () => {
+      if (interval) clearInterval(interval);
+      if (liveInterval) clearInterval(liveInterval);
+      interval = undefined;
+      liveInterval = undefined;
+    };
+
+    const handleStreamEvent = (name: string, data: string) => {
+      const payload = JSON.parse(data);
+      if (name === 'snapshot') applyLive(payload);
+      else if (name === 'overview') applyOverview(payload);
+      else if (name === 'event') setRecentLogs(prev => [toRecentLog(payload), ...prev].slice(0, 50));
+    };
+
+    const openStream = async () => {
+      const res = await fetch(`${apiBaseUrl}/live/stream`, {
+        headers: { Authorization: authHeader, Accept: 'text/event-stream' },
+        signal: streamAbort.signal
+      });
+      if (res.status === 401) {
+        handleLogout();
+        return;
+      }
+      if (!res.ok || !res.body) throw new Error('Không thể mở live stream');
+      setIsConnected(true);
+      streamOpenedAt = Date.now();
+      // Stream gửi snapshot và overview hiện tại ngay khi mở, không cần polling nữa
+      stopPolling();
+
+      const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+      let buffer = '';
+      for (;;) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += value;
+        let sep;
+        while ((sep = buffer.indexOf('\n\n')) >= 0) {
+          const frame = buffer.slice(0, sep);
+          buffer = buffer.slice(sep + 2);
+          let name = 'message';
+          const dataLines: string[] = [];
+          for (const line of frame.split('\n')) {
+            if (line.startsWith('event:')) name = line.slice(6).trim();
+            else if (line.startsWith('data:')) dataLines.push(line.slice(5));
+          }
+          if (dataLines.length) handleStreamEvent(name, dataLines.join('\n'));
+        }
+      }
+      throw new Error('Live stream đã đóng');
+    };
+
+    const connectStream = () => {
+      openStream().catch(() => {
+        if (streamAbort.signal.aborted) return;
+        startPolling();
+        // Stream chỉ được coi là ổn định (reset backoff) nếu đã sống đủ lâu
+        if (streamOpenedAt && Date.now() - streamOpenedAt >= STREAM_STABLE_MS) streamFailures = 0;
+        streamOpenedAt = 0;
+        // Equal jitter: ít nhất một nửa backoff, phần còn lại ngẫu nhiên
+        streamFailures++;
+        const backoff = Math.min(STREAM_BACKOFF_MAX_MS, STREAM_BACKOFF_INITIAL_MS * 2 ** Math.min(streamFailures - 1, 20));
+        reconnectTimer = setTimeout(connectStream, backoff / 2 + Math.random() * (backoff / 2));
+      });
+    };
+
+    // Lịch sử sự kiện vẫn tải một lần; cập nhật mới đến qua stream
     loadOverviewAndLogs();
-    const interval = setInterval(loadOverviewAndLogs, 10000);
+    connectStream();
+
     return () => {
-      clearInterval(interval);
+      streamAbort.abort();
+      if (reconnectTimer) clearTimeout(reconnectTimer);
+      if (liveObjectUrl) URL.revokeObjectURL(liveObjectUrl);
+      if (interval) clearInterval(interval);
       if (liveInterval) clearInterval(liveInterval);
       if (ws) ws.close();
     };
@@ -285,12 +460,11 @@ const SmartTrashDashboard = () => {
     return (
       <Login
         apiBaseUrl={apiBaseUrl}
-        onLoginSuccess={({ authHeader, username }) => {
-          setAuthHeader(authHeader);
+        onLoginSuccess={({ authHeader, username, expiresAt }) => {
+          saveToken(authHeader, expiresAt);
           setCurrentUser(username);
           setIsAuthenticated(true);
           setError(null);
-          localStorage.setItem('authHeader', authHeader);
           localStorage.setItem('username', username);
         }}
       />
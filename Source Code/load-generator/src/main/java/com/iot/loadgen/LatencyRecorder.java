@@ -0,0 +1,40 @@
+package com.iot.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples in microseconds; every sample is kept so percentiles are exact.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos / 1000;
+    }
+
+    synchronized void reset() {
+        count = 0;
+    }
+
+    /**
+     * Sorted copy of the samples recorded so far.
+     */
+    synchronized long[] sorted() {
+        long[] copy = Arrays.copyOf(samples, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+}
@@ -0,0 +1,147 @@
+package com.iot.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the relay and everything subscribed to it (backend-web, classifier): a fleet of simulated
+ * ESP32-CAMs plus an optional stub classifier, reporting throughput, drops and the latency from sending an image
+ * to its device receiving the rotation.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpClient client = HttpClient.newHttpClient();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), daemon("sender"));
+        ExecutorService classifierWorker = Executors.newSingleThreadExecutor(daemon("classifier"));
+        Stats stats = new Stats();
+        RotationLedger ledger = new RotationLedger();
+        LatencyRecorder latencies = new LatencyRecorder();
+
+        StubClassifier classifier = null;
+        if (options.classifier()) {
+            classifier = new StubClassifier(ledger, stats, objectMapper, classifierWorker, options.classifyMs());
+            classifier.connect(client, options.relay()).get(30, TimeUnit.SECONDS);
+        }
+
+        byte[] jpeg = new byte[options.imageKb() * 1024];
+        new Random(options.imageKb()).nextBytes(jpeg);
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        String imageBase64 = Base64.getEncoder().encodeToString(jpeg);
+
+        // Every device connects before the first image so the rotation order seen by each device lines up
+        List<SimulatedDevice> devices = new ArrayList<>();
+        List<CompletableFuture<Void>> connecting = new ArrayList<>();
+        for (int i = 0; i < options.devices(); i++) {
+            SimulatedDevice device = new SimulatedDevice(i, imageBase64, ledger, latencies, stats, objectMapper);
+            devices.add(device);
+            connecting.add(device.connect(client, options.relay()));
+        }
+        CompletableFuture.allOf(connecting.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        System.out.printf("Connected %d of %d devices to %s%n", stats.connected.sum(), options.devices(), options.relay());
+        if (stats.connected.sum() == 0) {
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        devices.forEach(device -> device.start(scheduler, options.fps(), options.dataIntervalS()));
+        if (options.reportIntervalS() > 0) {
+            scheduler.scheduleAtFixedRate(() -> progress(stats, start), options.reportIntervalS(),
+                    options.reportIntervalS(), TimeUnit.SECONDS);
+        }
+
+        TimeUnit.SECONDS.sleep(options.warmupS());
+        latencies.reset();
+        Stats.Snapshot baseline = stats.snapshot();
+        long measuredFrom = System.nanoTime();
+
+        TimeUnit.SECONDS.sleep(options.durationS());
+        devices.forEach(SimulatedDevice::stop);
+        double measuredSeconds = (System.nanoTime() - measuredFrom) / 1e9;
+
+        // Let the classifier work off its queue and the last rotations arrive
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.timeoutMs());
+        while (System.nanoTime() < deadline
+                && stats.rotationsMatched.sum() - baseline.rotationsMatched() < stats.imagesSent.sum() - baseline.imagesSent()) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        report(options, stats.snapshot().minus(baseline), measuredSeconds, latencies.sorted(), stats, ledger);
+
+        devices.forEach(SimulatedDevice::close);
+        if (classifier != null) {
+            classifier.close();
+        }
+        scheduler.shutdownNow();
+        classifierWorker.shutdownNow();
+        System.exit(0);
+    }
+
+    private static void progress(Stats stats, long start) {
+        System.out.printf("[%4ds] images sent=%d skipped=%d | classifier in=%d out=%d | rotations matched=%d | disconnects=%d%n",
+                (System.nanoTime() - start) / 1_000_000_000L, stats.imagesSent.sum(), stats.imagesSkipped.sum(),
+                stats.classifierImages.sum(), stats.classifierReplies.sum(), stats.rotationsMatched.sum(),
+                stats.disconnects.sum());
+    }
+
+    private static void report(Options options, Stats.Snapshot run, double seconds, long[] latencies, Stats stats,
+                               RotationLedger ledger) {
+        long lost = run.imagesSent() - run.rotationsMatched();
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Devices            %d connected, %d failed to connect, %d disconnected during the run%n",
+                stats.connected.sum(), stats.connectFailures.sum(), run.disconnects());
+        System.out.printf(Locale.ROOT, "Load               %.2f images/s per device, %d KB, %.1f s measured%n",
+                options.fps(), options.imageKb(), seconds);
+        System.out.printf(Locale.ROOT, "Images             %d sent (%.1f/s), %d skipped because the socket was busy%n",
+                run.imagesSent(), run.imagesSent() / seconds, run.imagesSkipped());
+        System.out.printf(Locale.ROOT, "Bin status         %d sent%n", run.dataSent());
+        if (options.classifier()) {
+            System.out.printf(Locale.ROOT, "Classifier         %d images received, %d rotations sent (%.1f/s), %d images unanswered%n",
+                    run.classifierImages(), run.classifierReplies(), run.classifierReplies() / seconds, ledger.unanswered());
+            System.out.printf(Locale.ROOT, "Rotations          %d received by their device, %d images without a rotation%n",
+                    run.rotationsMatched(), lost);
+            System.out.printf(Locale.ROOT, "Image -> rotation  p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f ms (%d samples)%n",
+                    LatencyRecorder.percentileMs(latencies, 50), LatencyRecorder.percentileMs(latencies, 90),
+                    LatencyRecorder.percentileMs(latencies, 99), LatencyRecorder.percentileMs(latencies, 99.9),
+                    LatencyRecorder.percentileMs(latencies, 100), latencies.length);
+        } else {
+            System.out.println("Rotation latency needs the stub classifier (--classifier true)");
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-" + name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
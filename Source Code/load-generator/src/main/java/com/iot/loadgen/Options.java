@@ -0,0 +1,67 @@
+package com.iot.loadgen;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options as {@code --name value}; see {@link #USAGE}.
+ */
+record Options(URI relay,
+               int devices,
+               double fps,
+               int imageKb,
+               int dataIntervalS,
+               int durationS,
+               int warmupS,
+               boolean classifier,
+               int classifyMs,
+               int timeoutMs,
+               int reportIntervalS) {
+
+    static final String USAGE = """
+            Usage: java -jar load-generator.jar [--name value ...]
+              --relay URL            relay WebSocket endpoint (default ws://localhost:4000/ws)
+              --devices N            simulated ESP32-CAMs (default 100)
+              --fps F                images per second per device (default 0.2)
+              --image-kb N           JPEG size in KB; VGA at quality 10 is 20-60 (default 40)
+              --data-interval-s N    bin status esp32:data every N seconds per device, 0 = never (default 30)
+              --duration-s N         measured run time after the warm-up (default 60)
+              --warmup-s N           excluded from the results (default 10)
+              --classifier BOOL      run the stub classifier; false when a real ws_client.py is connected (default true)
+              --classify-ms N        simulated inference time of the stub classifier (default 100)
+              --timeout-ms N         wait for outstanding rotations after the run (default 10000)
+              --report-interval-s N  progress line interval, 0 = off (default 5)
+            """;
+
+    private static final Set<String> NAMES = Set.of("relay", "devices", "fps", "image-kb", "data-interval-s",
+            "duration-s", "warmup-s", "classifier", "classify-ms", "timeout-ms", "report-interval-s");
+
+    static Options parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i].startsWith("--") ? args[i].substring(2) : null;
+            if (name == null || !NAMES.contains(name) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            values.put(name, args[++i]);
+        }
+        Options options = new Options(
+                URI.create(values.getOrDefault("relay", "ws://localhost:4000/ws")),
+                Integer.parseInt(values.getOrDefault("devices", "100")),
+                Double.parseDouble(values.getOrDefault("fps", "0.2")),
+                Integer.parseInt(values.getOrDefault("image-kb", "40")),
+                Integer.parseInt(values.getOrDefault("data-interval-s", "30")),
+                Integer.parseInt(values.getOrDefault("duration-s", "60")),
+                Integer.parseInt(values.getOrDefault("warmup-s", "10")),
+                Boolean.parseBoolean(values.getOrDefault("classifier", "true")),
+                Integer.parseInt(values.getOrDefault("classify-ms", "100")),
+                Integer.parseInt(values.getOrDefault("timeout-ms", "10000")),
+                Integer.parseInt(values.getOrDefault("report-interval-s", "5")));
+        if (options.devices < 1 || options.fps <= 0 || options.imageKb < 1 || options.durationS < 1) {
+            throw new IllegalArgumentException("devices, fps, image-kb and duration-s must be positive");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,129 @@
+package com.iot.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Relay connection on {@code java.net.http.WebSocket}. Reassembles text messages from their parts and sends one
+ * message at a time, as the single-threaded ESP32 WebSocket client does. Messages longer than
+ * {@code maxMessageChars} (other devices' images, for a device) are received but not kept.
+ */
+final class RelaySocket implements WebSocket.Listener {
+
+    interface Handler {
+        void onMessage(String text);
+
+        void onClosed(String reason);
+    }
+
+    private final Handler handler;
+    private final int maxMessageChars;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean skipping;
+    private volatile WebSocket webSocket;
+    private volatile boolean closed;
+    private CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+
+    private RelaySocket(Handler handler, int maxMessageChars) {
+        this.handler = handler;
+        this.maxMessageChars = maxMessageChars;
+    }
+
+    static CompletableFuture<RelaySocket> connect(HttpClient client, URI uri, int maxMessageChars, Handler handler) {
+        RelaySocket socket = new RelaySocket(handler, maxMessageChars);
+        return client.newWebSocketBuilder()
+                .buildAsync(uri, socket)
+                .thenApply(webSocket -> {
+                    socket.webSocket = webSocket;
+                    return socket;
+                });
+    }
+
+    /**
+     * Sends unless the previous message is still being written.
+     *
+     * @return false when the socket is busy or closed (the frame is dropped, like a device that cannot keep up)
+     */
+    synchronized boolean trySend(String text) {
+        if (closed || !lastSend.isDone()) {
+            return false;
+        }
+        lastSend = webSocket.sendText(text, true);
+        lastSend.whenComplete((ws, e) -> {
+            if (e != null) {
+                markClosed("send failed: " + e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Queues the message behind the ones already being sent.
+     */
+    synchronized void send(String text) {
+        if (closed) {
+            return;
+        }
+        lastSend = lastSend.thenCompose(ws -> webSocket.sendText(text, true));
+        lastSend.whenComplete((ws, e) -> {
+            if (e != null) {
+                markClosed("send failed: " + e.getMessage());
+            }
+        });
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    void close() {
+        closed = true;
+        WebSocket current = webSocket;
+        if (current != null) {
+            current.abort();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        if (!skipping) {
+            if (buffer.length() + data.length() > maxMessageChars) {
+                skipping = true;
+                buffer.setLength(0);
+            } else {
+                buffer.append(data);
+            }
+        }
+        if (last) {
+            String message = skipping ? null : buffer.toString();
+            buffer.setLength(0);
+            skipping = false;
+            if (message != null) {
+                handler.onMessage(message);
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        markClosed(statusCode + " " + reason);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        markClosed(error.getMessage());
+    }
+
+    private void markClosed(String reason) {
+        if (!closed) {
+            closed = true;
+            handler.onClosed(reason);
+        }
+    }
+}
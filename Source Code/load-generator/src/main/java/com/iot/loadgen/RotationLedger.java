@@ -0,0 +1,54 @@
+package com.iot.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches rotations to the images they answer.
+ *
+ * A rotation ({@code {"type":"esp32:data","payload":"ROTATE_CW"}}, as ws_client.py sends it) carries no reference
+ * to its image, and the relay broadcasts it to every device. But the relay sends broadcasts to each session in
+ * one order, so the n-th rotation a device receives is the n-th reply the classifier sent. The classifier
+ * records its replies here in send order and each device looks up the n-th one to see whether it was for its own
+ * image. This holds for devices connected before the first reply and while they stay connected.
+ */
+final class RotationLedger {
+
+    record Image(SimulatedDevice device, long sentNanos) {
+    }
+
+    private final Map<String, Image> pending = new ConcurrentHashMap<>();
+    private final List<Image> replies = new ArrayList<>();
+
+    void imageSent(String filename, SimulatedDevice device, long sentNanos) {
+        pending.put(filename, new Image(device, sentNanos));
+    }
+
+    void imageDropped(String filename) {
+        pending.remove(filename);
+    }
+
+    /**
+     * Records the classifier's next reply; the caller sends it before recording another one.
+     */
+    synchronized void replied(String filename) {
+        // Images from real devices or from before a restart are not ours; their slot still counts
+        replies.add(filename != null ? pending.remove(filename) : null);
+    }
+
+    /**
+     * Image answered by the classifier's {@code index}-th reply, or null when it was not one of ours.
+     */
+    synchronized Image reply(long index) {
+        return index < replies.size() ? replies.get((int) index) : null;
+    }
+
+    /**
+     * Images sent that the classifier has not answered.
+     */
+    int unanswered() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,179 @@
+package com.iot.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One ESP32-CAM as in Esp32-Cam/code.ino: {@code esp32:ping} on connect, {@code esp32:image} with a base64 JPEG
+ * at a fixed rate, {@code esp32:data} bin status, and {@code ROTATE_CW}/{@code ROTATE_CCW} commands read from
+ * {@code server:data}. {@code receivedAt} is in epoch seconds like the device's NTP clock.
+ */
+final class SimulatedDevice implements RelaySocket.Handler {
+
+    // Rotations and bin status are small; other devices' images are dropped unread
+    private static final int MAX_MESSAGE_CHARS = 4096;
+
+    // One counter for the fleet keeps the device's filename format and makes every filename unique
+    private static final AtomicLong IMAGE_COUNTER = new AtomicLong();
+
+    private final int index;
+    private final String imageBase64;
+    private final RotationLedger ledger;
+    private final LatencyRecorder latencies;
+    private final Stats stats;
+    private final ObjectMapper objectMapper;
+    private volatile RelaySocket socket;
+    private volatile boolean organicFull;
+    private ScheduledFuture<?> imageTask;
+    private ScheduledFuture<?> dataTask;
+    // Only touched by the socket's listener thread
+    private long rotationsSeen;
+    private long helloSeq = -1;
+
+    SimulatedDevice(int index, String imageBase64, RotationLedger ledger, LatencyRecorder latencies, Stats stats,
+                    ObjectMapper objectMapper) {
+        this.index = index;
+        this.imageBase64 = imageBase64;
+        this.ledger = ledger;
+        this.latencies = latencies;
+        this.stats = stats;
+        this.objectMapper = objectMapper;
+    }
+
+    CompletableFuture<Void> connect(HttpClient client, URI relay) {
+        return RelaySocket.connect(client, relay, MAX_MESSAGE_CHARS, this)
+                .thenAccept(connected -> {
+                    socket = connected;
+                    stats.connected.increment();
+                    connected.send("{\"type\":\"esp32:ping\",\"payload\":{\"message\":\"hello\"}}");
+                })
+                .exceptionally(e -> {
+                    stats.connectFailures.increment();
+                    return null;
+                });
+    }
+
+    /**
+     * Starts sending at a random phase so the fleet does not send in lockstep.
+     */
+    void start(ScheduledExecutorService scheduler, double fps, int dataIntervalS) {
+        if (socket == null) {
+            return;
+        }
+        long periodMicros = (long) (1_000_000 / fps);
+        imageTask = scheduler.scheduleAtFixedRate(this::sendImage,
+                ThreadLocalRandom.current().nextLong(periodMicros), periodMicros, TimeUnit.MICROSECONDS);
+        if (dataIntervalS > 0) {
+            long periodMs = dataIntervalS * 1000L;
+            dataTask = scheduler.scheduleAtFixedRate(this::sendBinStatus,
+                    ThreadLocalRandom.current().nextLong(periodMs), periodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void stop() {
+        if (imageTask != null) {
+            imageTask.cancel(false);
+        }
+        if (dataTask != null) {
+            dataTask.cancel(false);
+        }
+    }
+
+    void close() {
+        stop();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private void sendImage() {
+        RelaySocket current = socket;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        String filename = "esp32cam_" + nowSeconds + "_" + IMAGE_COUNTER.incrementAndGet() + ".jpg";
+        String message = "{\"type\":\"esp32:image\",\"payload\":{"
+                + "\"filename\":\"" + filename + "\","
+                + "\"contentType\":\"image/jpeg\","
+                + "\"data\":\"" + imageBase64 + "\","
+                + "\"receivedAt\":" + nowSeconds
+                + "}}";
+        ledger.imageSent(filename, this, System.nanoTime());
+        if (current.trySend(message)) {
+            stats.imagesSent.increment();
+        } else {
+            ledger.imageDropped(filename);
+            stats.imagesSkipped.increment();
+        }
+    }
+
+    private void sendBinStatus() {
+        RelaySocket current = socket;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        // Alternates like a device whose bins fill in turn; the real device only sends when a bin is full
+        organicFull = !organicFull;
+        String message = "{\"type\":\"esp32:data\",\"payload\":{"
+                + "\"binType\":\"" + (organicFull ? "ORGANIC" : "INORGANIC") + "\","
+                + "\"receivedAt\":" + System.currentTimeMillis() / 1000
+                + "}}";
+        if (current.trySend(message)) {
+            stats.dataSent.increment();
+        }
+    }
+
+    @Override
+    public void onMessage(String text) {
+        long receivedNanos = System.nanoTime();
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(text);
+        } catch (IOException e) {
+            return;
+        }
+        String type = root.path("type").asText();
+        if ("server:hello".equals(type)) {
+            helloSeq = root.path("payload").path("seq").asLong(-1);
+            return;
+        }
+        // The relay resends its latest data right after the hello; that rotation answered an older image
+        if (!"server:data".equals(type) || root.path("seq").asLong(Long.MAX_VALUE) <= helloSeq) {
+            return;
+        }
+        // Same extraction as extractCommand() in code.ino: payload.data as a string
+        String command = root.path("payload").path("data").asText("").trim();
+        if (!"ROTATE_CW".equals(command) && !"ROTATE_CCW".equals(command)) {
+            return;
+        }
+        stats.rotationsReceived.increment();
+        RotationLedger.Image image = ledger.reply(rotationsSeen++);
+        if (image != null && image.device() == this) {
+            stats.rotationsMatched.increment();
+            latencies.record(receivedNanos - image.sentNanos());
+        }
+    }
+
+    @Override
+    public void onClosed(String reason) {
+        System.err.println(this + " disconnected: " + reason);
+        stats.disconnects.increment();
+        stop();
+    }
+
+    @Override
+    public String toString() {
+        return "device-" + index;
+    }
+}
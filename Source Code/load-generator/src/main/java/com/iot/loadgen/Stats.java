@@ -0,0 +1,36 @@
+package com.iot.loadgen;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run counters. {@link #snapshot()} at the end of the warm-up gives the baseline subtracted in the report.
+ */
+final class Stats {
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder imagesSent = new LongAdder();
+    final LongAdder imagesSkipped = new LongAdder();
+    final LongAdder dataSent = new LongAdder();
+    final LongAdder classifierImages = new LongAdder();
+    final LongAdder classifierReplies = new LongAdder();
+    final LongAdder rotationsReceived = new LongAdder();
+    final LongAdder rotationsMatched = new LongAdder();
+
+    Snapshot snapshot() {
+        return new Snapshot(imagesSent.sum(), imagesSkipped.sum(), dataSent.sum(), classifierImages.sum(),
+                classifierReplies.sum(), rotationsMatched.sum(), disconnects.sum());
+    }
+
+    record Snapshot(long imagesSent, long imagesSkipped, long dataSent, long classifierImages,
+                    long classifierReplies, long rotationsMatched, long disconnects) {
+
+        Snapshot minus(Snapshot base) {
+            return new Snapshot(imagesSent - base.imagesSent, imagesSkipped - base.imagesSkipped,
+                    dataSent - base.dataSent, classifierImages - base.classifierImages,
+                    classifierReplies - base.classifierReplies, rotationsMatched - base.rotationsMatched,
+                    disconnects - base.disconnects);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.iot.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for classification-garbage/Deployment/ws_client.py: decodes every {@code server:image}, waits the
+ * configured inference time and answers {@code {"type":"esp32:data","payload":"ROTATE_CW"}} (or
+ * {@code ROTATE_CCW}), and answers {@code server:ping} with {@code client:pong}. Like the Python client it
+ * handles images one at a time, so a slow model queues images instead of answering them in parallel. The image's
+ * {@code trace} is sent back with the rotation, stamped {@code classifier.received} and {@code classifier.sent}.
+ */
+final class StubClassifier implements RelaySocket.Handler {
+
+    // The relay accepts messages up to 2MB
+    private static final int MAX_MESSAGE_CHARS = 4 * 1024 * 1024;
+
+    private final RotationLedger ledger;
+    private final Stats stats;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService worker;
+    private final int classifyMs;
+    private volatile RelaySocket socket;
+
+    StubClassifier(RotationLedger ledger, Stats stats, ObjectMapper objectMapper, ExecutorService worker,
+                   int classifyMs) {
+        this.ledger = ledger;
+        this.stats = stats;
+        this.objectMapper = objectMapper;
+        this.worker = worker;
+        this.classifyMs = classifyMs;
+    }
+
+    CompletableFuture<Void> connect(HttpClient client, URI relay) {
+        return RelaySocket.connect(client, relay, MAX_MESSAGE_CHARS, this)
+                .thenAccept(connected -> {
+                    socket = connected;
+                    connected.send("{\"type\":\"client:hello\",\"payload\":{\"message\":\"Stub classifier connected\"}}");
+                });
+    }
+
+    void close() {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    @Override
+    public void onMessage(String text) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(text);
+        } catch (IOException e) {
+            return;
+        }
+        String type = root.path("type").asText();
+        JsonNode payload = root.path("payload");
+        if ("server:ping".equals(type)) {
+            socket.send("{\"type\":\"client:pong\",\"payload\":{\"receivedAt\":\"" + Instant.now() + "\"}}");
+        } else if ("server:image".equals(type) && payload.hasNonNull("data")) {
+            stats.classifierImages.increment();
+            String filename = payload.path("filename").asText(null);
+            String data = payload.get("data").asText();
+            ObjectNode trace = payload.get("trace") instanceof ObjectNode node ? node : null;
+            if (trace != null) {
+                trace.withObjectProperty("stages").put("classifier.received", System.currentTimeMillis());
+            }
+            // Single worker thread: images are classified in arrival order, one at a time
+            worker.execute(() -> classify(filename, data, trace));
+        }
+    }
+
+    private void classify(String filename, String data, ObjectNode trace) {
+        try {
+            // Decoded like ws_client.py does before running the model
+            Base64.getDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            socket.send("{\"type\":\"server:error\",\"payload\":{\"message\":\"Invalid image data\"}}");
+            return;
+        }
+        if (classifyMs > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(classifyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        String command = filename != null && (filename.hashCode() & 1) == 0 ? "ROTATE_CCW" : "ROTATE_CW";
+        // Recorded and sent by the one worker thread, so ledger order is send order
+        ledger.replied(filename);
+        if (trace == null) {
+            socket.send("{\"type\":\"esp32:data\",\"payload\":\"" + command + "\"}");
+        } else {
+            trace.withObjectProperty("stages").put("classifier.sent", System.currentTimeMillis());
+            socket.send("{\"type\":\"esp32:data\",\"payload\":\"" + command + "\",\"trace\":" + trace + "}");
+        }
+        stats.classifierReplies.increment();
+    }
+
+    @Override
+    public void onClosed(String reason) {
+        System.err.println("Stub classifier disconnected: " + reason);
+    }
+}
@@ -0,0 +1,103 @@
+package com.iot.websocket.handler;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.iot.websocket.model.Esp32Image;
+import com.iot.websocket.model.WebSocketMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relay hot paths with {@code subscribers} open sessions besides the sending device:
+ * <ul>
+ *     <li>{@code esp32Data} / {@code esp32Image}: {@link IoTWebSocketHandler#handleTextMessage} end to end
+ *     (parse, base64 decode of the image, ack, broadcast)</li>
+ *     <li>{@code broadcastImage}: serializing a {@code server:image} once and queueing it for every subscriber
+ *     (the sends run on the relay sender pool)</li>
+ * </ul>
+ * Run with {@code -prof gc} (the default {@code jmh.args}) for the allocation rate; SampleTime gives the percentiles.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IoTWebSocketHandlerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Relay {
+        @Param({"1", "10", "100", "1000"})
+        public int subscribers;
+
+        IoTWebSocketHandler handler;
+        CountingSession device;
+        TextMessage esp32Data;
+
+        @Setup
+        public void connect() throws Exception {
+            // Only the work behind the log calls is measured, not console output
+            ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+            handler = new IoTWebSocketHandler(256, 16 * 1024 * 1024, 8 * 1024 * 1024, 4);
+            device = new CountingSession("esp32");
+            handler.afterConnectionEstablished(device);
+            for (int i = 0; i < subscribers; i++) {
+                handler.afterConnectionEstablished(new CountingSession("subscriber-" + i));
+            }
+            // Bin-full status as sent by Esp32-Cam/code.ino
+            esp32Data = new TextMessage(
+                    "{\"type\":\"esp32:data\",\"payload\":{\"binType\":\"ORGANIC\",\"receivedAt\":1700000000}}");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Image {
+        // QVGA/VGA frames are 20-60KB; 2MB is the relay's message size limit
+        @Param({"20", "200", "2048"})
+        public int imageKb;
+
+        TextMessage esp32Image;
+        WebSocketMessage serverImage;
+
+        @Setup
+        public void encode() {
+            // Base64 grows the image by a third; keep the whole message under the size limit
+            byte[] jpeg = new byte[imageKb * 1024 * 3 / 4 - 256];
+            new Random(imageKb).nextBytes(jpeg);
+            String data = Base64.getEncoder().encodeToString(jpeg);
+            esp32Image = new TextMessage("{\"type\":\"esp32:image\",\"payload\":{\"filename\":\"esp32cam_1700000000_1.jpg\","
+                    + "\"contentType\":\"image/jpeg\",\"data\":\"" + data + "\"}}");
+            serverImage = new WebSocketMessage("server:image",
+                    new Esp32Image("esp32cam_1700000000_1.jpg", "image/jpeg", data, 1_700_000_000_000L, jpeg.length, null));
+        }
+    }
+
+    @Benchmark
+    public void esp32Data(Relay relay) throws Exception {
+        relay.handler.handleTextMessage(relay.device, relay.esp32Data);
+    }
+
+    @Benchmark
+    public void esp32Image(Relay relay, Image image) throws Exception {
+        relay.handler.handleTextMessage(relay.device, image.esp32Image);
+    }
+
+    @Benchmark
+    public void broadcastImage(Relay relay, Image image) {
+        relay.handler.broadcast(image.serverImage, relay.device);
+    }
+}
@@ -29,6 +29,8 @@ public class HealthController {
         response.put("status", "ok");
         response.put("timestamp", System.currentTimeMillis());
         response.put("activeConnections", webSocketHandler.getActiveSessionCount());
+        response.put("epoch", webSocketHandler.getEpoch());
+        response.put("seq", webSocketHandler.getSeq());
         
         Esp32Data latestData = webSocketHandler.getLatestEsp32Data();
         response.put("latestEsp32Data", latestData);
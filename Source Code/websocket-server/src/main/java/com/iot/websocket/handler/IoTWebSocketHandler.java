@@ -2,53 +2,121 @@ package com.iot.websocket.handler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.websocket.jfr.BroadcastEvent;
+import com.iot.websocket.jfr.RelayMessageEvent;
 import com.iot.websocket.model.Esp32Data;
 import com.iot.websocket.model.Esp32Image;
+import com.iot.websocket.model.Trace;
 import com.iot.websocket.model.WebSocketMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
 public class IoTWebSocketHandler extends TextWebSocketHandler {
 
-    private final CopyOnWriteArraySet<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    // One send queue per session, drained by the sender pool so a slow client never holds up a broadcast
+    private final Map<String, Outbox> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService senderPool;
+    private final long sessionBufferBytes;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     private volatile Esp32Data latestEsp32Data = null;
     private volatile Esp32Image latestEsp32Image = null;
+    private volatile WebSocketMessage latestDataMessage = null;
 
+    // Broadcasts are numbered per process start (epoch) so subscribers can resume after a reconnect
+    private final long epoch = System.currentTimeMillis();
+    private final ReplayBuffer replayBuffer;
+    private long seq;
+
+    public IoTWebSocketHandler(@Value("${relay.replay-buffer-size:256}") int replayBufferSize,
+                               @Value("${relay.replay-buffer-bytes:16777216}") long replayBufferBytes,
+                               @Value("${relay.session-buffer-bytes:8388608}") long sessionBufferBytes,
+                               @Value("${relay.sender-threads:4}") int senderThreads) {
+        this.replayBuffer = new ReplayBuffer(replayBufferSize, replayBufferBytes);
+        this.sessionBufferBytes = sessionBufferBytes;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.senderPool = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "relay-sender-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Sends {@code server:hello} with the epoch and current sequence number, then either replays the buffered
+     * broadcasts after {@code since} (when the client reconnects with {@code ?resumeEpoch=<epoch>&since=<seq>}
+     * for this epoch) or the latest data as before. These are queued under the broadcast lock, together with
+     * registering the session, so live broadcasts follow them in order; the sending happens on the sender pool.
+     */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
+        Outbox outbox = new Outbox(session);
         String remoteAddress = session.getRemoteAddress() != null 
                 ? session.getRemoteAddress().toString() 
                 : "unknown";
         
         log.info("WebSocket connected: {} (Session ID: {})", remoteAddress, session.getId());
-        log.debug("Total active sessions: {}", sessions.size());
 
-        // Send latest data to new connection for fast sync
-        if (latestEsp32Data != null) {
-            WebSocketMessage message = new WebSocketMessage("server:data", latestEsp32Data);
-            sendMessage(session, message);
-            log.debug("Sent latest ESP32 data to new connection: {}", session.getId());
+        Long resumeEpoch = queryLong(session.getUri(), "resumeEpoch");
+        Long since = queryLong(session.getUri(), "since");
+        synchronized (replayBuffer) {
+            sessions.put(session.getId(), outbox);
+            log.debug("Total active sessions: {}", sessions.size());
+            Map<String, Object> hello = new HashMap<>();
+            hello.put("epoch", epoch);
+            hello.put("seq", seq);
+            sendMessage(session, new WebSocketMessage("server:hello", hello));
+
+            if (resumeEpoch != null && resumeEpoch == epoch && since != null) {
+                if (since + 1 < replayBuffer.oldestSeq()) {
+                    log.warn("Session {} resumes from seq {} but buffer starts at {}; {} messages lost",
+                            session.getId(), since, replayBuffer.oldestSeq(), replayBuffer.oldestSeq() - since - 1);
+                }
+                List<String> missed = replayBuffer.since(since);
+                for (String messageJson : missed) {
+                    // Already bounded by relay.replay-buffer-bytes; the session limit is for live backlog
+                    outbox.offer(messageJson, Long.MAX_VALUE);
+                }
+                log.info("Queued replay of {} messages to session {} after seq {}", missed.size(), session.getId(), since);
+                return;
+            }
+
+            // Send latest data to new connection for fast sync
+            if (latestDataMessage != null) {
+                sendMessage(session, latestDataMessage);
+                log.debug("Sent latest ESP32 data to new connection: {}", session.getId());
+            }
         }
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        RelayMessageEvent event = new RelayMessageEvent();
+        event.begin();
         String payload = message.getPayload();
         
         log.debug("Received TEXT message from session {}: {} bytes", session.getId(), payload.length());
@@ -57,6 +125,7 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
             JsonNode jsonNode = objectMapper.readTree(payload);
             String type = jsonNode.has("type") ? jsonNode.get("type").asText() : null;
             JsonNode payloadNode = jsonNode.has("payload") ? jsonNode.get("payload") : null;
+            JsonNode traceNode = jsonNode.get("trace");
 
             if (type == null) {
                 log.warn("Missing 'type' field in message from session: {}", session.getId());
@@ -66,13 +135,17 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
             }
 
             log.debug("Received message type: {} from session: {}", type, session.getId());
+            if (event.isEnabled()) {
+                event.type = type;
+                event.deviceId = payloadNode != null ? payloadNode.path("deviceId").asText(null) : null;
+            }
 
             switch (type) {
                 case "esp32:data":
-                    handleEsp32Data(session, payloadNode);
+                    handleEsp32Data(session, payloadNode, traceNode);
                     break;
                 case "esp32:image":
-                    handleEsp32Image(session, payloadNode);
+                    handleEsp32Image(session, payloadNode, traceNode);
                     break;
                 case "esp32:ping":
                     handlePing(session);
@@ -85,6 +158,12 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
             log.debug("Raw message: {}", payload.substring(0, Math.min(200, payload.length())));
             WebSocketMessage errorMsg = new WebSocketMessage("server:error", "Invalid JSON payload: " + e.getMessage());
             sendMessage(session, errorMsg);
+        } finally {
+            if (event.shouldCommit()) {
+                event.sessionId = session.getId();
+                event.payloadBytes = payload.length();
+                event.commit();
+            }
         }
     }
 
@@ -98,10 +177,11 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
         log.warn("Binary message handling not implemented yet");
     }
 
-    private void handleEsp32Data(WebSocketSession senderSession, JsonNode payloadNode) throws IOException {
+    private void handleEsp32Data(WebSocketSession senderSession, JsonNode payloadNode, JsonNode traceNode) throws IOException {
         Esp32Data data = new Esp32Data();
         data.setData(payloadNode);
         data.setReceivedAt(System.currentTimeMillis());
+        data.setTrace(trace(traceNode, payloadNode, "relay.data", data.getReceivedAt()));
         
         latestEsp32Data = data;
         
@@ -110,9 +190,10 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
         // Broadcast to all clients except sender
         WebSocketMessage broadcastMsg = new WebSocketMessage("server:data", data);
         broadcast(broadcastMsg, senderSession);
+        latestDataMessage = broadcastMsg;
     }
 
-    private void handleEsp32Image(WebSocketSession senderSession, JsonNode payloadNode) throws IOException {
+    private void handleEsp32Image(WebSocketSession senderSession, JsonNode payloadNode, JsonNode traceNode) throws IOException {
         String filename = payloadNode.has("filename") ? payloadNode.get("filename").asText() : null;
         String contentType = payloadNode.has("contentType") ? payloadNode.get("contentType").asText() : null;
         String data = payloadNode.has("data") ? payloadNode.get("data").asText() : null;
@@ -133,6 +214,7 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
         image.setData(data);
         image.setReceivedAt(System.currentTimeMillis());
         image.setSize(size);
+        image.setTrace(trace(traceNode, payloadNode, "relay.image", image.getReceivedAt()));
         
         latestEsp32Image = image;
         
@@ -142,6 +224,7 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
         Map<String, Object> ackPayload = new HashMap<>();
         ackPayload.put("filename", filename);
         ackPayload.put("receivedAt", image.getReceivedAt());
+        ackPayload.put("traceId", image.getTrace().getId());
         WebSocketMessage ackMsg = new WebSocketMessage("server:image:ack", ackPayload);
         sendMessage(senderSession, ackMsg);
 
@@ -158,7 +241,10 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
+        Outbox outbox = sessions.remove(session.getId());
+        if (outbox != null) {
+            outbox.discard();
+        }
         String remoteAddress = session.getRemoteAddress() != null 
                 ? session.getRemoteAddress().toString() 
                 : "unknown";
@@ -173,44 +259,111 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
         log.error("WebSocket error for session {}: {}", session.getId(), exception.getMessage(), exception);
     }
 
-    private void broadcast(WebSocketMessage message, WebSocketSession exceptSession) {
-        String messageJson;
-        try {
-            messageJson = objectMapper.writeValueAsString(message);
-        } catch (IOException e) {
-            log.error("Failed to serialize broadcast message", e);
-            return;
+    /**
+     * Numbers the message, keeps it for replay and queues it for every other session. Numbering and queueing run
+     * under the replay lock so sessions see messages in sequence order; the sends themselves happen on the sender
+     * pool, outside it.
+     */
+    void broadcast(WebSocketMessage message, WebSocketSession exceptSession) {
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        synchronized (replayBuffer) {
+            message.setSeq(seq + 1);
+            String messageJson;
+            try {
+                messageJson = objectMapper.writeValueAsString(message);
+            } catch (IOException e) {
+                message.setSeq(null);
+                log.error("Failed to serialize broadcast message", e);
+                return;
+            }
+            seq++;
+            replayBuffer.append(seq, messageJson);
+            enqueue(messageJson, exceptSession, event);
+            if (event.shouldCommit()) {
+                event.type = message.getType();
+                event.seq = seq;
+                event.messageBytes = messageJson.length();
+                event.commit();
+            }
         }
+    }
 
+    private void enqueue(String messageJson, WebSocketSession exceptSession, BroadcastEvent event) {
         int successCount = 0;
         int failureCount = 0;
 
-        for (WebSocketSession session : sessions) {
-            if (session.equals(exceptSession) || !session.isOpen()) {
+        for (Outbox outbox : sessions.values()) {
+            if (outbox.session.equals(exceptSession) || !outbox.session.isOpen()) {
                 continue;
             }
 
-            try {
-                session.sendMessage(new TextMessage(messageJson));
+            if (outbox.offer(messageJson)) {
                 successCount++;
-            } catch (IOException e) {
+            } else {
                 failureCount++;
-                log.error("Failed to send message to session {}: {}", session.getId(), e.getMessage());
             }
         }
 
-        log.debug("Broadcast completed: {} successful, {} failed", successCount, failureCount);
+        log.debug("Broadcast queued: {} sessions, {} rejected", successCount, failureCount);
+        event.recipients = successCount;
+        event.failed = failureCount;
     }
 
+    /**
+     * Queues a message for one session (hello, ack, pong, error) behind whatever is already queued for it, so
+     * it never races a broadcast on the same connection.
+     */
     private void sendMessage(WebSocketSession session, WebSocketMessage message) throws IOException {
-        if (session.isOpen()) {
-            String messageJson = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(messageJson));
+        Outbox outbox = sessions.get(session.getId());
+        if (outbox != null && session.isOpen()) {
+            outbox.offer(objectMapper.writeValueAsString(message));
         } else {
             log.warn("Attempted to send message to closed session: {}", session.getId());
         }
     }
 
+    /**
+     * Continues the trace sent along with the message (the classifier answering an image copies the image's
+     * trace) or starts a new one, and stamps {@code stage}. A new trace also records the device's own
+     * {@code receivedAt} as stage {@code device}.
+     */
+    private Trace trace(JsonNode traceNode, JsonNode payloadNode, String stage, long now) {
+        Trace trace = null;
+        if (traceNode != null && traceNode.hasNonNull("id")) {
+            try {
+                trace = objectMapper.treeToValue(traceNode, Trace.class);
+            } catch (IOException | IllegalArgumentException e) {
+                log.debug("Ignoring malformed trace: {}", e.getMessage());
+            }
+        }
+        if (trace == null) {
+            trace = new Trace(String.format("%016x", ThreadLocalRandom.current().nextLong()), new LinkedHashMap<>());
+            JsonNode deviceTime = payloadNode != null ? payloadNode.path("receivedAt") : null;
+            if (deviceTime != null && deviceTime.isNumber()) {
+                // code.ino sends epoch seconds
+                long millis = deviceTime.asLong() < 100_000_000_000L ? deviceTime.asLong() * 1000 : deviceTime.asLong();
+                trace.getStages().put("device", millis);
+            }
+        } else if (trace.getStages() == null) {
+            trace.setStages(new LinkedHashMap<>());
+        }
+        trace.getStages().put(stage, now);
+        return trace;
+    }
+
+    private static Long queryLong(URI uri, String name) {
+        if (uri == null) {
+            return null;
+        }
+        String value = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst(name);
+        try {
+            return value != null ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     // Getters for health endpoint
     public Esp32Data getLatestEsp32Data() {
         return latestEsp32Data;
@@ -223,4 +376,101 @@ public class IoTWebSocketHandler extends TextWebSocketHandler {
     public int getActiveSessionCount() {
         return sessions.size();
     }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getSeq() {
+        synchronized (replayBuffer) {
+            return seq;
+        }
+    }
+
+    /**
+     * Messages waiting to be sent to one session. Over {@code relay.session-buffer-bytes} the session is closed
+     * instead of queueing without bound; the client reconnects and resumes from the replay buffer.
+     */
+    private final class Outbox {
+        private final WebSocketSession session;
+        private final ArrayDeque<String> queue = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private long queuedBytes;
+        private volatile boolean closed;
+
+        private Outbox(WebSocketSession session) {
+            this.session = session;
+        }
+
+        boolean offer(String messageJson) {
+            return offer(messageJson, sessionBufferBytes);
+        }
+
+        boolean offer(String messageJson, long maxQueuedBytes) {
+            if (closed) {
+                return false;
+            }
+            synchronized (queue) {
+                if (!queue.isEmpty() && queuedBytes + messageJson.length() > maxQueuedBytes) {
+                    log.warn("Closing slow session {}: {} bytes already queued", session.getId(), queuedBytes);
+                    close(CloseStatus.SESSION_NOT_RELIABLE);
+                    return false;
+                }
+                queue.addLast(messageJson);
+                queuedBytes += messageJson.length();
+            }
+            if (draining.compareAndSet(false, true)) {
+                senderPool.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            boolean idle = false;
+            try {
+                while (!closed) {
+                    String next;
+                    synchronized (queue) {
+                        next = queue.pollFirst();
+                        if (next == null) {
+                            draining.set(false);
+                            idle = true;
+                            return;
+                        }
+                        queuedBytes -= next.length();
+                    }
+                    try {
+                        session.sendMessage(new TextMessage(next));
+                    } catch (IOException | IllegalStateException e) {
+                        log.error("Failed to send message to session {}: {}", session.getId(), e.getMessage());
+                        close(CloseStatus.SERVER_ERROR);
+                    }
+                }
+            } finally {
+                if (!idle) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        void discard() {
+            closed = true;
+            synchronized (queue) {
+                queue.clear();
+                queuedBytes = 0;
+            }
+        }
+
+        private void close(CloseStatus status) {
+            discard();
+            // Closing writes a close frame; keep that off the broadcasting thread too
+            senderPool.execute(() -> {
+                try {
+                    session.close(status);
+                } catch (IOException e) {
+                    log.debug("Failed to close session {}: {}", session.getId(), e.getMessage());
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.iot.websocket.handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last broadcast messages, keyed by their sequence number, so a reconnecting subscriber can be sent what it
+ * missed. Bounded both in messages and in characters of JSON (images carry their base64 data), evicting the oldest
+ * first; the newest message is always kept. Not thread-safe; callers hold the broadcast lock.
+ */
+class ReplayBuffer {
+
+    private final int capacity;
+    private final long maxBytes;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long bytes;
+
+    ReplayBuffer(int capacity, long maxBytes) {
+        this.capacity = Math.max(1, capacity);
+        this.maxBytes = maxBytes;
+    }
+
+    void append(long seq, String messageJson) {
+        entries.addLast(new Entry(seq, messageJson));
+        bytes += messageJson.length();
+        while (entries.size() > capacity || (bytes > maxBytes && entries.size() > 1)) {
+            bytes -= entries.pollFirst().messageJson().length();
+        }
+    }
+
+    /**
+     * Sequence number of the oldest buffered message, or 0 when empty.
+     */
+    long oldestSeq() {
+        return entries.isEmpty() ? 0 : entries.peekFirst().seq();
+    }
+
+    /**
+     * Characters of JSON currently buffered.
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Buffered messages with a sequence number greater than {@code seq}, oldest first.
+     */
+    List<String> since(long seq) {
+        List<String> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.seq() > seq) {
+                result.add(entry.messageJson());
+            }
+        }
+        return result;
+    }
+
+    private record Entry(long seq, String messageJson) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.iot.websocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One broadcast: serializing the message and sending it to every other session.
+ */
+@Name("com.iot.websocket.Broadcast")
+@Label("Relay Broadcast")
+@Category({"IoT Relay", "WebSocket"})
+@Description("Serialization and fan-out of one broadcast message")
+@Enabled(false)
+@StackTrace(false)
+public class BroadcastEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Sequence")
+    public long seq;
+
+    @Label("Message Size")
+    @DataAmount
+    public long messageBytes;
+
+    @Label("Recipients")
+    public int recipients;
+
+    @Label("Failed Sends")
+    public int failed;
+}
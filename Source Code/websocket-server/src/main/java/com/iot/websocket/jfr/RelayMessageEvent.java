@@ -0,0 +1,36 @@
+package com.iot.websocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One text message handled by {@code IoTWebSocketHandler}, from parsing to the end of its broadcast.
+ * Disabled unless turned on in the recording settings (see relay.jfc).
+ */
+@Name("com.iot.websocket.RelayMessage")
+@Label("Relay Message")
+@Category({"IoT Relay", "WebSocket"})
+@Description("Handling of one message received from a WebSocket client")
+@Enabled(false)
+@StackTrace(false)
+public class RelayMessageEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Device")
+    public String deviceId;
+
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+}
@@ -12,4 +12,5 @@ import lombok.NoArgsConstructor;
 public class Esp32Data {
     private Object data; // ESP32 sensor data (can be flexible structure)
     private Long receivedAt;
+    private Trace trace; // trace id and stage timestamps, see Trace
 }
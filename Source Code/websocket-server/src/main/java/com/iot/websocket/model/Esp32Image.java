@@ -15,4 +15,5 @@ public class Esp32Image {
     private String data; // Base64 encoded image
     private Long receivedAt;
     private Integer size;
+    private Trace trace; // trace id and stage timestamps, see Trace
 }
@@ -0,0 +1,23 @@
+package com.iot.websocket.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Follows one image (and the rotation answering it) through the pipeline: every hop adds the epoch millis at
+ * which it handled the message to {@code stages}, e.g. {@code device}, {@code relay.image},
+ * {@code classifier.received}, {@code classifier.sent}, {@code relay.data}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Trace {
+    private String id;
+    private Map<String, Long> stages = new LinkedHashMap<>();
+}
@@ -12,4 +12,10 @@ import lombok.NoArgsConstructor;
 public class WebSocketMessage {
     private String type;
     private Object payload;
+    // Sequence number of broadcast messages, used by subscribers to resume after a reconnect
+    private Long seq;
+
+    public WebSocketMessage(String type, Object payload) {
+        this(type, payload, null);
+    }
 }
@@ -0,0 +1,101 @@
+package com.iot.websocket.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.websocket.model.WebSocketMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IoTWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private IoTWebSocketHandler handler;
+    private WebSocketSession device;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handler = new IoTWebSocketHandler(16, 1 << 20, 1 << 20, 1);
+        device = session("esp32", "ws://localhost/ws");
+        handler.afterConnectionEstablished(device);
+        for (int i = 1; i <= 3; i++) {
+            handler.broadcast(new WebSocketMessage("server:data", Map.of("n", i)), device);
+        }
+    }
+
+    @Test
+    void helloCarriesEpochAndCurrentSeq() throws Exception {
+        WebSocketSession subscriber = session("sub", "ws://localhost/ws");
+        handler.afterConnectionEstablished(subscriber);
+
+        JsonNode hello = received(subscriber, 1).get(0);
+        assertThat(hello.get("type").asText()).isEqualTo("server:hello");
+        assertThat(hello.at("/payload/epoch").asLong()).isEqualTo(handler.getEpoch());
+        assertThat(hello.at("/payload/seq").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    void resumeInSameEpochReplaysMissedMessagesThenLiveOnes() throws Exception {
+        WebSocketSession subscriber = session("sub",
+                "ws://localhost/ws?resumeEpoch=" + handler.getEpoch() + "&since=1");
+        handler.afterConnectionEstablished(subscriber);
+        handler.broadcast(new WebSocketMessage("server:data", Map.of("n", 4)), device);
+
+        List<JsonNode> messages = received(subscriber, 4);
+        assertThat(messages.get(0).get("type").asText()).isEqualTo("server:hello");
+        assertThat(messages.subList(1, 4)).extracting(m -> m.get("seq").asLong()).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void resumeFromAnotherEpochGetsNoReplay() throws Exception {
+        WebSocketSession subscriber = session("sub",
+                "ws://localhost/ws?resumeEpoch=" + (handler.getEpoch() - 1) + "&since=1");
+        handler.afterConnectionEstablished(subscriber);
+
+        verify(subscriber, after(200).times(1)).sendMessage(any());
+        assertThat(received(subscriber, 1).get(0).get("type").asText()).isEqualTo("server:hello");
+    }
+
+    @Test
+    void broadcastSkipsTheSender() throws Exception {
+        // Only the hello; the three broadcasts came from this session
+        verify(device, after(200).times(1)).sendMessage(any());
+        assertThat(handler.getSeq()).isEqualTo(3);
+    }
+
+    private List<JsonNode> received(WebSocketSession session, int count) throws Exception {
+        // Sends happen on the sender pool
+        verify(session, timeout(2000).times(count)).sendMessage(any());
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(count)).sendMessage(captor.capture());
+        List<JsonNode> messages = new ArrayList<>();
+        for (TextMessage message : captor.getAllValues()) {
+            messages.add(objectMapper.readTree(message.getPayload()));
+        }
+        return messages;
+    }
+
+    private static WebSocketSession session(String id, String uri) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getUri()).thenReturn(URI.create(uri));
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
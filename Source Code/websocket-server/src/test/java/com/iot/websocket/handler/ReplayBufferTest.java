@@ -0,0 +1,63 @@
+package com.iot.websocket.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayBufferTest {
+
+    @Test
+    void returnsMessagesAfterTheGivenSeqOldestFirst() {
+        ReplayBuffer buffer = new ReplayBuffer(8, 1024);
+        buffer.append(1, "a");
+        buffer.append(2, "b");
+        buffer.append(3, "c");
+
+        assertThat(buffer.since(1)).containsExactly("b", "c");
+        assertThat(buffer.since(3)).isEmpty();
+        assertThat(buffer.since(0)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void evictsOldestPastTheMessageCap() {
+        ReplayBuffer buffer = new ReplayBuffer(2, 1024);
+        buffer.append(1, "a");
+        buffer.append(2, "b");
+        buffer.append(3, "c");
+
+        assertThat(buffer.oldestSeq()).isEqualTo(2);
+        assertThat(buffer.since(0)).containsExactly("b", "c");
+    }
+
+    @Test
+    void evictsOldestPastTheByteCap() {
+        ReplayBuffer buffer = new ReplayBuffer(100, 10);
+        buffer.append(1, "aaaa");
+        buffer.append(2, "bbbb");
+        buffer.append(3, "cccc");
+
+        assertThat(buffer.oldestSeq()).isEqualTo(2);
+        assertThat(buffer.bytes()).isEqualTo(8);
+        assertThat(buffer.since(0)).containsExactly("bbbb", "cccc");
+    }
+
+    @Test
+    void keepsTheNewestMessageEvenWhenItAloneExceedsTheByteCap() {
+        ReplayBuffer buffer = new ReplayBuffer(100, 10);
+        buffer.append(1, "aaaa");
+        buffer.append(2, "b".repeat(64));
+
+        assertThat(buffer.oldestSeq()).isEqualTo(2);
+        assertThat(buffer.since(1)).isEqualTo(List.of("b".repeat(64)));
+    }
+
+    @Test
+    void emptyBufferHasNoOldestSeq() {
+        ReplayBuffer buffer = new ReplayBuffer(4, 1024);
+
+        assertThat(buffer.oldestSeq()).isZero();
+        assertThat(buffer.since(0)).isEmpty();
+    }
+}